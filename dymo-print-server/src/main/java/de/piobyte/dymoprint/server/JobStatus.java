@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.server;
+
+/**
+ * State of a {@link PrintJob}.
+ */
+public enum JobStatus {
+    /**
+     * Waiting for the batch window or the printer.
+     */
+    QUEUED,
+    /**
+     * Batch of the job is sent to the printer.
+     */
+    PRINTING,
+    /**
+     * Label was printed.
+     */
+    DONE,
+    /**
+     * Label was not printed (or the batch broke off), see {@link PrintJob#getError()}.
+     */
+    FAILED;
+
+    boolean isFinished() {
+        return this == DONE || this == FAILED;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.server;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.service.print.BatchPrintException;
+import de.piobyte.dymoprint.service.print.PrintService;
+import de.piobyte.dymoprint.service.print.Printer;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Collects jobs of the same printer and tape into batches, each printed in one device session.
+ * <p>
+ * The first job of a batch waits for the batch window, so jobs arriving shortly after it join the batch. While a
+ * batch is printed, new jobs of the printer are collected and sent right after it. A batch is closed early when it
+ * reaches the maximum size.
+ */
+@Slf4j
+class LabelBatcher implements Closeable {
+
+    private final PrintService printService;
+    private final long batchWindowNanos;
+    private final int maxBatchSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<BatchKey, Pending> pending = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService printers;
+    private final AtomicLong batchCount = new AtomicLong();
+
+    LabelBatcher(PrintService printService, Duration batchWindow, int maxBatchSize) {
+        if (batchWindow.isNegative()) {
+            throw new IllegalArgumentException("Batch window must not be negative!");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Maximum batch size must be positive!");
+        }
+        this.printService = printService;
+        this.batchWindowNanos = batchWindow.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dymo-print-batch-window");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.printers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "dymo-print-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Add job to the open batch of its printer and tape.
+     *
+     * @param job queued job
+     */
+    void submit(PrintJob job) {
+        BatchKey key = new BatchKey(job.getSerialNumber().toUpperCase(Locale.ROOT), job.getTape());
+        lock.lock();
+        try {
+            Pending batch = pending.computeIfAbsent(key, Pending::new);
+            batch.jobs.add(job);
+            if (batch.printing) {
+                return;
+            }
+            if (batch.jobs.size() >= maxBatchSize || batchWindowNanos == 0) {
+                dispatch(batch);
+            } else if (batch.windowClose == null) {
+                batch.windowClose = scheduler.schedule(() -> closeWindow(batch), batchWindowNanos,
+                        TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get number of printed batches (device sessions).
+     *
+     * @return number of batches
+     */
+    long getBatchCount() {
+        return batchCount.get();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        printers.shutdown();
+        lock.lock();
+        try {
+            pending.values().forEach(batch -> batch.jobs.forEach(job -> job.failed("Server stopped!")));
+            pending.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeWindow(Pending batch) {
+        lock.lock();
+        try {
+            batch.windowClose = null;
+            if (!batch.printing && !batch.jobs.isEmpty()) {
+                dispatch(batch);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // called with lock held
+    private void dispatch(Pending batch) {
+        if (batch.windowClose != null) {
+            batch.windowClose.cancel(false);
+            batch.windowClose = null;
+        }
+        int size = Math.min(batch.jobs.size(), maxBatchSize);
+        List<PrintJob> jobs = new ArrayList<>(batch.jobs.subList(0, size));
+        batch.jobs.subList(0, size).clear();
+        batch.printing = true;
+        jobs.forEach(job -> job.printing(size));
+        try {
+            printers.execute(() -> print(batch, jobs));
+        } catch (RejectedExecutionException e) {
+            batch.printing = false;
+            jobs.forEach(job -> job.failed("Server stopped!"));
+        }
+    }
+
+    private void print(Pending batch, List<PrintJob> jobs) {
+        try {
+            List<PrintJob> printing = validate(batch.key, jobs);
+            if (!printing.isEmpty()) {
+                printService.printLabels(batch.key.serialNumber, batch.key.tape,
+                        printing.stream().map(PrintJob::getLabel));
+                batchCount.incrementAndGet();
+            }
+            printing.forEach(PrintJob::done);
+        } catch (Exception e) {
+            // labels sent before the failure have been printed, only the others fail
+            List<PrintJob> printing = jobs.stream()
+                    .filter(job -> job.getStatus() == JobStatus.PRINTING)
+                    .collect(Collectors.toList());
+            int sent = e instanceof BatchPrintException ? ((BatchPrintException) e).getResult().getLabelCount() : 0;
+            log.error("Batch failed! serialNumber={}, tape={}, labels={}, sent={}, error={}", batch.key.serialNumber,
+                    batch.key.tape, printing.size(), sent, e.getMessage());
+            printing.subList(0, sent).forEach(PrintJob::done);
+            printing.subList(sent, printing.size()).forEach(job ->
+                    job.failed(Objects.toString(e.getMessage(), e.getClass().getSimpleName())));
+        } finally {
+            lock.lock();
+            try {
+                batch.printing = false;
+                if (!batch.jobs.isEmpty()) {
+                    // waited for the running batch, so the window is already over
+                    dispatch(batch);
+                } else if (batch.windowClose == null) {
+                    pending.remove(batch.key);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Fail jobs with a wrong image height before the batch is sent, so a bad label does not break off the
+     * labels after it.
+     *
+     * @return jobs to print
+     */
+    private List<PrintJob> validate(BatchKey key, List<PrintJob> jobs) {
+        Optional<Integer> labelHeight = printService.listAvailablePrinters().stream()
+                .filter(printer -> printer.getSerialNumber().equalsIgnoreCase(key.serialNumber))
+                .findFirst()
+                .map(Printer::getLabelHeight)
+                .map(heights -> heights.get(key.tape));
+        List<PrintJob> printing = new ArrayList<>(jobs.size());
+        for (PrintJob job : jobs) {
+            BufferedImage label = job.getLabel();
+            if (labelHeight.isPresent() && label.getHeight() != labelHeight.get()) {
+                job.failed("Wrong image height! imageHeight=" + label.getHeight()
+                        + ", targetHeight=" + labelHeight.get());
+            } else {
+                printing.add(job);
+            }
+        }
+        return printing;
+    }
+
+    @Value
+    private static class BatchKey {
+        String serialNumber;
+        Tape tape;
+    }
+
+    private static class Pending {
+        private final BatchKey key;
+        private final List<PrintJob> jobs = new ArrayList<>();
+        private ScheduledFuture<?> windowClose;
+        private boolean printing;
+
+        Pending(BatchKey key) {
+            this.key = key;
+        }
+    }
+}
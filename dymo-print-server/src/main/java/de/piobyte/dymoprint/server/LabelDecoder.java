@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.server;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decodes uploaded label images: PNG (and the other formats of {@link ImageIO}) and PBM (plain {@code P1} and raw
+ * {@code P4}, as written by the print tracer).
+ */
+final class LabelDecoder {
+
+    private LabelDecoder() {
+    }
+
+    /**
+     * Decode label image. The size is checked before any pixels are allocated.
+     *
+     * @param data image file
+     * @param maxHeight maximum image height in pixels, i.e. the height of the widest tape
+     * @param maxLabelBytes maximum label size; an image must not have more pixels than a raw PBM of this size
+     * @return image
+     * @throws IllegalArgumentException unknown or broken image format, or image too large
+     */
+    static BufferedImage decode(byte[] data, int maxHeight, int maxLabelBytes) {
+        if (data.length >= 2 && data[0] == 'P' && (data[1] == '1' || data[1] == '4')) {
+            return decodePbm(data, maxHeight, maxLabelBytes);
+        }
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IllegalArgumentException("Unknown image format!");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                checkSize(reader.getWidth(0), reader.getHeight(0), maxHeight, maxLabelBytes);
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not read image! error=" + e.getMessage(), e);
+        }
+    }
+
+    private static void checkSize(int width, int height, int maxHeight, int maxLabelBytes) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size! width=" + width + ", height=" + height);
+        }
+        if (height > maxHeight) {
+            throw new IllegalArgumentException("Image too high! height=" + height + ", maxHeight=" + maxHeight);
+        }
+        if ((long) width * height > 8L * maxLabelBytes) {
+            throw new IllegalArgumentException("Image too large! width=" + width + ", height=" + height);
+        }
+    }
+
+    private static BufferedImage decodePbm(byte[] data, int maxHeight, int maxLabelBytes) {
+        PbmReader reader = new PbmReader(data);
+        boolean raw = data[1] == '4';
+        reader.position = 2;
+        int width = reader.readInt();
+        int height = reader.readInt();
+        checkSize(width, height, maxHeight, maxLabelBytes);
+        int rowBytes = (width + 7) / 8;
+        if (raw) {
+            reader.position++;
+            if ((long) rowBytes * height > data.length - reader.position) {
+                throw new IllegalArgumentException("PBM data too short!");
+            }
+        } else if ((long) width * height > data.length - reader.position) {
+            // every pixel of a plain PBM takes at least one byte
+            throw new IllegalArgumentException("PBM data too short!");
+        }
+
+        // PBM and BYTE_BINARY both pack 8 pixels per byte, MSB first, rows padded to full bytes; only the colors of
+        // the bits are swapped (PBM: 1 = black, BYTE_BINARY: 0 = black)
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        if (raw) {
+            for (int i = 0; i < rowBytes * height; i++) {
+                pixels[i] = (byte) ~data[reader.position + i];
+            }
+        } else {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (reader.readBit() == 0) {
+                        pixels[y * rowBytes + x / 8] |= 0x80 >>> (x % 8);
+                    }
+                }
+            }
+        }
+        return image;
+    }
+
+    private static class PbmReader {
+        private final byte[] data;
+        private int position;
+
+        PbmReader(byte[] data) {
+            this.data = data;
+        }
+
+        int readInt() {
+            skipWhitespaceAndComments();
+            int value = 0;
+            int digits = 0;
+            while (position < data.length && data[position] >= '0' && data[position] <= '9') {
+                value = value * 10 + data[position++] - '0';
+                if (++digits > 7) {
+                    throw new IllegalArgumentException("PBM size too large!");
+                }
+            }
+            if (digits == 0) {
+                throw new IllegalArgumentException("Invalid PBM header!");
+            }
+            return value;
+        }
+
+        int readBit() {
+            skipWhitespaceAndComments();
+            if (position >= data.length || (data[position] != '0' && data[position] != '1')) {
+                throw new IllegalArgumentException("PBM data too short!");
+            }
+            return data[position++] - '0';
+        }
+
+        private void skipWhitespaceAndComments() {
+            while (position < data.length) {
+                if (data[position] == '#') {
+                    while (position < data.length && data[position] != '\n') {
+                        position++;
+                    }
+                } else if (Character.isWhitespace(data[position])) {
+                    position++;
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+}
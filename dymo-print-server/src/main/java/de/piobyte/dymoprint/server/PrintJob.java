@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.server;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import lombok.Getter;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Label submitted over HTTP.
+ */
+@Getter
+public class PrintJob {
+    private final String id;
+    private final String serialNumber;
+    private final Tape tape;
+    @Getter(lombok.AccessLevel.NONE)
+    private volatile BufferedImage label;
+    private volatile JobStatus status = JobStatus.QUEUED;
+    private volatile String error;
+    private volatile int batchSize;
+
+    PrintJob(String id, String serialNumber, Tape tape, BufferedImage label) {
+        this.id = id;
+        this.serialNumber = serialNumber;
+        this.tape = tape;
+        this.label = label;
+    }
+
+    BufferedImage getLabel() {
+        return label;
+    }
+
+    void printing(int batchSize) {
+        this.batchSize = batchSize;
+        status = JobStatus.PRINTING;
+    }
+
+    void done() {
+        label = null;
+        status = JobStatus.DONE;
+    }
+
+    void failed(String error) {
+        label = null;
+        this.error = error;
+        status = JobStatus.FAILED;
+    }
+
+    String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        Json.field(json, "id", id).append(',');
+        Json.field(json, "serialNumber", serialNumber).append(',');
+        Json.field(json, "tape", tape.name()).append(',');
+        Json.field(json, "status", status.name());
+        if (batchSize > 0) {
+            json.append(",\"batchSize\":").append(batchSize);
+        }
+        if (error != null) {
+            json.append(',');
+            Json.field(json, "error", error);
+        }
+        return json.append('}').toString();
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.server;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.print.PrintService;
+import de.piobyte.dymoprint.service.print.PrintServiceOptions;
+import de.piobyte.dymoprint.service.print.Printer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * HTTP daemon owning the label printers of a host, so several applications can share them without opening the
+ * USB devices themselves.
+ * <p>
+ * API (JSON responses):
+ * <ul>
+ *     <li>{@code GET /printers} lists the available printers</li>
+ *     <li>{@code POST /printers/{serialNumber}/labels?tape=D1_12_MM} queues the PNG or PBM label in the request
+ *     body and answers {@code 202 Accepted} with the job ID</li>
+ *     <li>{@code GET /jobs/{id}} returns the job status: {@code QUEUED}, {@code PRINTING}, {@code DONE} or
+ *     {@code FAILED}</li>
+ * </ul>
+ * Labels arriving within the batch window are printed in one device session per printer and tape, see
+ * {@link LabelBatcher}.
+ */
+@Slf4j
+public class PrintServer implements Closeable {
+
+    private static final String JSON = "application/json";
+    // height of the widest tape in pixels, larger uploads are rejected before they are decoded
+    private static final int MAX_LABEL_HEIGHT = new LabelManagerPnPConfiguration().getSupportedTapes().values()
+            .stream().mapToInt(bytes -> bytes * 8).max().orElseThrow();
+
+    private final PrintService printService;
+    private final PrintServerOptions options;
+    private final HttpServer httpServer;
+    private final ExecutorService requestExecutor;
+    private final LabelBatcher batcher;
+    private final Map<String, PrintJob> jobs = new ConcurrentHashMap<>();
+    private final Deque<String> jobOrder = new ArrayDeque<>();
+    private final ReentrantLock jobOrderLock = new ReentrantLock();
+
+    /**
+     * Create server and bind the listen address. Requests are served after {@link #start()}.
+     *
+     * @param printService service used to print the labels, not closed by the server
+     * @param options settings
+     * @throws IOException address not available
+     */
+    public PrintServer(@NonNull PrintService printService, @NonNull PrintServerOptions options) throws IOException {
+        if (options.getRetainedJobs() < 1 || options.getRequestThreads() < 1 || options.getMaxLabelBytes() < 1) {
+            throw new IllegalArgumentException("Retained jobs, request threads and label size must be positive!");
+        }
+        this.printService = printService;
+        this.options = options;
+        this.batcher = new LabelBatcher(printService, options.getBatchWindow(), options.getMaxBatchSize());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.requestExecutor = Executors.newFixedThreadPool(options.getRequestThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "dymo-print-http-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpServer = HttpServer.create(options.getAddress(), 0);
+        httpServer.setExecutor(requestExecutor);
+        httpServer.createContext("/printers", this::handlePrinters);
+        httpServer.createContext("/jobs/", this::handleJob);
+    }
+
+    /**
+     * Start serving requests.
+     */
+    public void start() {
+        httpServer.start();
+        log.info("Print server started. address={}", getAddress());
+    }
+
+    /**
+     * Get bound address, e.g. the port chosen for port 0.
+     *
+     * @return listen address
+     */
+    public InetSocketAddress getAddress() {
+        return httpServer.getAddress();
+    }
+
+    /**
+     * Get number of printed batches, i.e. device sessions.
+     *
+     * @return number of batches
+     */
+    public long getBatchCount() {
+        return batcher.getBatchCount();
+    }
+
+    /**
+     * Stop serving requests. Queued jobs which have not been sent fail.
+     */
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        requestExecutor.shutdownNow();
+        batcher.close();
+    }
+
+    /**
+     * Run the server on the attached USB printers until the JVM is stopped.
+     *
+     * @param args optional port (default 8631) and bind address (default loopback)
+     * @throws IOException address not available
+     * @throws InterruptedException interrupted while running
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8631;
+        InetAddress bindAddress = args.length > 1 ? InetAddress.getByName(args[1]) : InetAddress.getLoopbackAddress();
+
+        PrintService printService = new PrintService(List.of(new LabelManagerPnPConfiguration()),
+                PrintServiceOptions.builder().keepConnectionOpen(true).build());
+        PrintServer server = new PrintServer(printService, PrintServerOptions.builder()
+                .address(new InetSocketAddress(bindAddress, port))
+                .build());
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            printService.close();
+            stopped.countDown();
+        }, "dymo-print-shutdown"));
+        server.start();
+        stopped.await();
+    }
+
+    private void handlePrinters(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            // "", "printers" [, serialNumber, "labels"]
+            if (path.length == 2 && "GET".equals(exchange.getRequestMethod())) {
+                listPrinters(exchange);
+            } else if (path.length == 4 && "labels".equals(path[3]) && !path[2].isEmpty()) {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    sendError(exchange, 405, "Method not allowed!");
+                    return;
+                }
+                submitLabel(exchange, path[2]);
+            } else {
+                sendError(exchange, 404, "Not found!");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleJob(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Method not allowed!");
+                return;
+            }
+            String id = exchange.getRequestURI().getPath().substring("/jobs/".length());
+            PrintJob job = jobs.get(id);
+            if (job == null) {
+                sendError(exchange, 404, "Job not found! id=" + id);
+                return;
+            }
+            send(exchange, 200, job.toJson());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void listPrinters(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (Printer printer : printService.listAvailablePrinters()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('{');
+            Json.field(json, "serialNumber", printer.getSerialNumber()).append(',');
+            Json.field(json, "name", printer.getName()).append('}');
+        }
+        send(exchange, 200, json.append(']').toString());
+    }
+
+    private void submitLabel(HttpExchange exchange, String serialNumber) throws IOException {
+        Tape tape;
+        try {
+            tape = Tape.valueOf(queryParameter(exchange, "tape", Tape.D1_12_MM.name()));
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, "Unknown tape!");
+            return;
+        }
+
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readNBytes(options.getMaxLabelBytes() + 1);
+        }
+        if (body.length > options.getMaxLabelBytes()) {
+            sendError(exchange, 413, "Label too large! maxLabelBytes=" + options.getMaxLabelBytes());
+            return;
+        }
+
+        BufferedImage label;
+        try {
+            label = LabelDecoder.decode(body, MAX_LABEL_HEIGHT, options.getMaxLabelBytes());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+            return;
+        }
+
+        PrintJob job = new PrintJob(UUID.randomUUID().toString(), serialNumber, tape, label);
+        register(job);
+        batcher.submit(job);
+        exchange.getResponseHeaders().set("Location", "/jobs/" + job.getId());
+        send(exchange, 202, job.toJson());
+    }
+
+    private void register(PrintJob job) {
+        jobs.put(job.getId(), job);
+        jobOrderLock.lock();
+        try {
+            jobOrder.addLast(job.getId());
+            // forget the oldest finished jobs; running jobs are kept, even if there are more than retained
+            while (jobOrder.size() > options.getRetainedJobs()) {
+                PrintJob oldest = jobs.get(jobOrder.peekFirst());
+                if (oldest != null && !oldest.getStatus().isFinished()) {
+                    break;
+                }
+                jobs.remove(jobOrder.removeFirst());
+            }
+        } finally {
+            jobOrderLock.unlock();
+        }
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name, String defaultValue) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0 && parameter.substring(0, separator).equals(name)) {
+                    return parameter.substring(separator + 1);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, Json.field(new StringBuilder("{"), "error", message).append('}').toString());
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] response = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+}
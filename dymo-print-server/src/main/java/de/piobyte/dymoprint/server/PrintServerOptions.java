@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.server;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+
+/**
+ * Settings of a {@link PrintServer}.
+ */
+@Value
+@Builder
+public class PrintServerOptions {
+
+    /**
+     * Listen address. Loopback by default, so only local processes can print.
+     */
+    @NonNull
+    @Builder.Default
+    InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 8631);
+
+    /**
+     * Time a label waits for further labels of the same printer and tape. The labels collected in this window are
+     * printed in one device session.
+     */
+    @NonNull
+    @Builder.Default
+    Duration batchWindow = Duration.ofMillis(20);
+
+    /**
+     * Maximum number of labels printed in one device session.
+     */
+    @Builder.Default
+    int maxBatchSize = 32;
+
+    /**
+     * Maximum size of an uploaded label image in bytes.
+     */
+    @Builder.Default
+    int maxLabelBytes = 4 * 1024 * 1024;
+
+    /**
+     * Number of finished jobs kept for status requests. Older jobs are forgotten.
+     */
+    @Builder.Default
+    int retainedJobs = 10_000;
+
+    /**
+     * Number of threads handling HTTP requests.
+     */
+    @Builder.Default
+    int requestThreads = 16;
+
+    /**
+     * Get default settings.
+     *
+     * @return settings
+     */
+    public static PrintServerOptions defaults() {
+        return PrintServerOptions.builder().build();
+    }
+}
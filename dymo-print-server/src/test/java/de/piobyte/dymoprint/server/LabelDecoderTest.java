@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.imageio.ImageIO;
+
+class LabelDecoderTest {
+
+    private static final int MAX_HEIGHT = 64;
+    private static final int MAX_LABEL_BYTES = 1024;
+
+    @Test
+    void decodePlainPbm() {
+        BufferedImage image = LabelDecoder.decode("P1\n# comment\n3 2\n1 0 1\n0 1 0\n"
+                .getBytes(StandardCharsets.US_ASCII), MAX_HEIGHT, MAX_LABEL_BYTES);
+
+        assertEquals(3, image.getWidth());
+        assertEquals(2, image.getHeight());
+        assertEquals(0xff000000, image.getRGB(0, 0));
+        assertEquals(0xffffffff, image.getRGB(1, 0));
+        assertEquals(0xffffffff, image.getRGB(0, 1));
+        assertEquals(0xff000000, image.getRGB(1, 1));
+    }
+
+    @Test
+    void decodeRawPbm() {
+        byte[] header = "P4 10 2\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] data = new byte[header.length + 4];
+        System.arraycopy(header, 0, data, 0, header.length);
+        data[header.length] = (byte) 0x80;
+        data[header.length + 3] = 0x40;
+
+        BufferedImage image = LabelDecoder.decode(data, MAX_HEIGHT, MAX_LABEL_BYTES);
+
+        assertEquals(10, image.getWidth());
+        assertEquals(0xff000000, image.getRGB(0, 0));
+        assertEquals(0xffffffff, image.getRGB(1, 0));
+        assertEquals(0xff000000, image.getRGB(9, 1));
+    }
+
+    @Test
+    void rejectBrokenImages() {
+        assertThrows(IllegalArgumentException.class, () -> LabelDecoder.decode(new byte[]{'P', '4', ' ', '8'},
+                MAX_HEIGHT, MAX_LABEL_BYTES));
+        assertThrows(IllegalArgumentException.class, () -> LabelDecoder.decode("P1 2 1 1"
+                .getBytes(StandardCharsets.US_ASCII), MAX_HEIGHT, MAX_LABEL_BYTES));
+        assertThrows(IllegalArgumentException.class, () -> LabelDecoder.decode(new byte[]{1, 2, 3},
+                MAX_HEIGHT, MAX_LABEL_BYTES));
+    }
+
+    @Test
+    void rejectOversizedImagesBeforeDecoding() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> LabelDecoder.decode("P4 100000 60000\n"
+                .getBytes(StandardCharsets.US_ASCII), MAX_HEIGHT, MAX_LABEL_BYTES));
+        assertThrows(IllegalArgumentException.class, () -> LabelDecoder.decode("P4 128 64\n"
+                .getBytes(StandardCharsets.US_ASCII), MAX_HEIGHT, MAX_LABEL_BYTES));
+        assertThrows(IllegalArgumentException.class, () -> LabelDecoder.decode("P4 9000 64\n"
+                .getBytes(StandardCharsets.US_ASCII), MAX_HEIGHT, MAX_LABEL_BYTES));
+        assertThrows(IllegalArgumentException.class, () -> LabelDecoder.decode("P1 8 65\n"
+                .getBytes(StandardCharsets.US_ASCII), MAX_HEIGHT, MAX_LABEL_BYTES));
+        assertThrows(IllegalArgumentException.class, () -> LabelDecoder.decode("P1 100 64\n"
+                .getBytes(StandardCharsets.US_ASCII), MAX_HEIGHT, MAX_LABEL_BYTES));
+
+        assertThrows(IllegalArgumentException.class, () -> LabelDecoder.decode(png(10, 65), MAX_HEIGHT,
+                MAX_LABEL_BYTES));
+        assertThrows(IllegalArgumentException.class, () -> LabelDecoder.decode(png(200, 64), MAX_HEIGHT,
+                MAX_LABEL_BYTES));
+        assertEquals(128, LabelDecoder.decode(png(128, 64), MAX_HEIGHT, MAX_LABEL_BYTES).getWidth());
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY), "png", out);
+        return out.toByteArray();
+    }
+}
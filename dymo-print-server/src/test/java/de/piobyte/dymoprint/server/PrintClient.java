@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal client of the print server API for the tests.
+ */
+class PrintClient {
+
+    private static final Pattern FIELD = Pattern.compile("\"(\\w+)\":\"([^\"]*)\"");
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final String baseUri;
+
+    PrintClient(PrintServer server) {
+        this.baseUri = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    HttpResponse<String> submit(String serialNumber, String tape, byte[] label)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUri + "/printers/" + serialNumber
+                        + "/labels?tape=" + tape))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(label))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return httpClient.send(HttpRequest.newBuilder(URI.create(baseUri + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Poll the job until it is finished.
+     *
+     * @param id job ID
+     * @return final status
+     */
+    String awaitJob(String id) throws IOException, InterruptedException {
+        while (true) {
+            String status = field(get("/jobs/" + id).body(), "status");
+            if ("DONE".equals(status) || "FAILED".equals(status)) {
+                return status;
+            }
+            Thread.sleep(2);
+        }
+    }
+
+    static String field(String json, String name) {
+        Matcher matcher = FIELD.matcher(json);
+        while (matcher.find()) {
+            if (matcher.group(1).equals(name)) {
+                return matcher.group(2);
+            }
+        }
+        return null;
+    }
+}
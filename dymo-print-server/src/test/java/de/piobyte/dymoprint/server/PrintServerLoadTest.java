@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.sim.SimulatedHidDevice;
+import de.piobyte.dymoprint.service.hid.sim.SimulatedHidService;
+import de.piobyte.dymoprint.service.hid.sim.SimulationSettings;
+import de.piobyte.dymoprint.service.print.PrintService;
+import de.piobyte.dymoprint.service.print.PrintServiceOptions;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many concurrent clients on loopback printing on a few simulated printers. Reports throughput and latency
+ * percentiles of complete jobs (submit until the status poll returns {@code DONE}).
+ */
+@Slf4j
+class PrintServerLoadTest {
+
+    private static final int PRINTERS = 4;
+    private static final int CLIENTS = 32;
+    private static final int JOBS_PER_CLIENT = 25;
+    // simulated printers running 200 times faster than real ones
+    private static final double TIME_SCALE = 0.005;
+
+    @Test
+    void loadOnLoopback() throws Exception {
+        SimulatedHidService hidService = SimulatedHidService.create(PRINTERS, new LabelManagerPnPConfiguration(),
+                SimulationSettings.builder().timeScale(TIME_SCALE).build());
+        PrintService printService = new PrintService(hidService,
+                PrintServiceOptions.builder().keepConnectionOpen(true).build());
+        PrintServer server = new PrintServer(printService, PrintServerOptions.builder()
+                .address(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .batchWindow(Duration.ofMillis(10))
+                .build());
+        server.start();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            PrintClient client = new PrintClient(server);
+            byte[] label = PrintServerTest.png(60, 64);
+
+            long start = System.nanoTime();
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                String serialNumber = String.format("SIM-%04d", c % PRINTERS + 1);
+                results.add(clients.submit(() -> {
+                    long[] latencies = new long[JOBS_PER_CLIENT];
+                    for (int j = 0; j < JOBS_PER_CLIENT; j++) {
+                        long submitted = System.nanoTime();
+                        String id = PrintClient.field(client.submit(serialNumber, "D1_12_MM", label).body(), "id");
+                        assertEquals("DONE", client.awaitJob(id));
+                        latencies[j] = System.nanoTime() - submitted;
+                    }
+                    return latencies;
+                }));
+            }
+            long[] latencies = new long[CLIENTS * JOBS_PER_CLIENT];
+            for (int c = 0; c < CLIENTS; c++) {
+                System.arraycopy(results.get(c).get(60, TimeUnit.SECONDS), 0, latencies, c * JOBS_PER_CLIENT,
+                        JOBS_PER_CLIENT);
+            }
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            double throughput = latencies.length / (elapsed / 1e9);
+            log.info("Load test: jobs={}, clients={}, printers={}, batches={}, throughput={} jobs/s, "
+                            + "p50={} ms, p99={} ms, max={} ms", latencies.length, CLIENTS, PRINTERS,
+                    server.getBatchCount(), String.format("%.0f", throughput), millis(latencies, 0.50),
+                    millis(latencies, 0.99), millis(latencies, 1.0));
+
+            assertEquals(latencies.length, hidService.getDevices().stream()
+                    .mapToLong(SimulatedHidDevice::getLabelCount)
+                    .sum());
+            assertTrue(server.getBatchCount() < latencies.length, "labels were batched");
+        } finally {
+            clients.shutdownNow();
+            server.close();
+            printService.close();
+        }
+    }
+
+    private static String millis(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return String.format("%.1f", sortedNanos[Math.max(index, 0)] / 1e6);
+    }
+}
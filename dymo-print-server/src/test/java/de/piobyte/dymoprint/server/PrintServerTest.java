@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.sim.SimulatedHidDevice;
+import de.piobyte.dymoprint.service.hid.sim.SimulatedHidService;
+import de.piobyte.dymoprint.service.hid.sim.SimulationSettings;
+import de.piobyte.dymoprint.service.print.PrintService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.imageio.ImageIO;
+
+class PrintServerTest {
+
+    private final SimulatedHidService hidService = SimulatedHidService.create(1, new LabelManagerPnPConfiguration(),
+            SimulationSettings.instant());
+    private final SimulatedHidDevice device = hidService.getDevices().get(0);
+    private final PrintService printService = new PrintService(hidService);
+    private PrintServer server;
+    private PrintClient client;
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        printService.close();
+    }
+
+    @Test
+    void printPngLabel() throws Exception {
+        start(Duration.ZERO);
+
+        HttpResponse<String> response = client.submit("sim-0001", "D1_12_MM", png(40, 64));
+
+        assertEquals(202, response.statusCode());
+        String id = PrintClient.field(response.body(), "id");
+        assertEquals("/jobs/" + id, response.headers().firstValue("Location").orElse(null));
+        assertEquals("DONE", client.awaitJob(id));
+        assertEquals(1, device.getLabelCount());
+    }
+
+    @Test
+    void printPbmLabel() throws Exception {
+        start(Duration.ZERO);
+        byte[] pbm = ("P4\n# label\n16 64\n").getBytes(StandardCharsets.US_ASCII);
+        byte[] label = new byte[pbm.length + 2 * 64];
+        System.arraycopy(pbm, 0, label, 0, pbm.length);
+
+        HttpResponse<String> response = client.submit("SIM-0001", "D1_12_MM", label);
+
+        assertEquals(202, response.statusCode());
+        assertEquals("DONE", client.awaitJob(PrintClient.field(response.body(), "id")));
+    }
+
+    @Test
+    void labelsWithinBatchWindowShareDeviceSession() throws Exception {
+        start(Duration.ofMillis(300));
+        byte[] label = png(40, 64);
+
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            responses.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return client.submit("SIM-0001", "D1_12_MM", label);
+                } catch (IOException | InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals("DONE", client.awaitJob(PrintClient.field(response.get().body(), "id")));
+        }
+
+        assertEquals(5, device.getLabelCount());
+        assertEquals(1, server.getBatchCount());
+    }
+
+    @Test
+    void wrongHeightFailsOnlyItsJob() throws Exception {
+        start(Duration.ofMillis(200));
+
+        String wrong = PrintClient.field(client.submit("SIM-0001", "D1_12_MM", png(40, 32)).body(), "id");
+        String right = PrintClient.field(client.submit("SIM-0001", "D1_12_MM", png(40, 64)).body(), "id");
+
+        assertEquals("FAILED", client.awaitJob(wrong));
+        assertEquals("DONE", client.awaitJob(right));
+        assertTrue(client.get("/jobs/" + wrong).body().contains("Wrong image height!"));
+    }
+
+    @Test
+    void failedBatchFailsOnlyUnsentJobs() throws Exception {
+        // printer unplugged when the third label of the batch is requested
+        SimulatedHidDevice unplugged = new SimulatedHidDevice("SIM-0002", new LabelManagerPnPConfiguration(),
+                SimulationSettings.instant()) {
+            @Override
+            public void write(Tape tape, Iterator<byte[]> labels) throws IOException {
+                super.write(tape, new Iterator<>() {
+                    private int requested;
+
+                    @Override
+                    public boolean hasNext() {
+                        return labels.hasNext();
+                    }
+
+                    @Override
+                    public byte[] next() {
+                        if (++requested == 3) {
+                            detach();
+                        }
+                        return labels.next();
+                    }
+                });
+            }
+        };
+        hidService.addDevice(unplugged);
+        start(Duration.ofMillis(300));
+        byte[] label = png(40, 64);
+
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            responses.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return client.submit("SIM-0002", "D1_12_MM", label);
+                } catch (IOException | InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        List<String> states = new ArrayList<>();
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            states.add(client.awaitJob(PrintClient.field(response.get().body(), "id")));
+        }
+
+        assertEquals(2, unplugged.getLabelCount());
+        assertEquals(2, states.stream().filter("DONE"::equals).count(), "states=" + states);
+        assertEquals(3, states.stream().filter("FAILED"::equals).count(), "states=" + states);
+    }
+
+    @Test
+    void unknownPrinterFailsJob() throws Exception {
+        start(Duration.ZERO);
+
+        HttpResponse<String> response = client.submit("OTHER", "D1_12_MM", png(40, 64));
+
+        assertEquals(202, response.statusCode());
+        assertEquals("FAILED", client.awaitJob(PrintClient.field(response.body(), "id")));
+    }
+
+    @Test
+    void invalidRequestsAreRejected() throws Exception {
+        start(Duration.ZERO);
+
+        assertEquals(400, client.submit("SIM-0001", "D1_99_MM", png(40, 64)).statusCode());
+        assertEquals(400, client.submit("SIM-0001", "D1_12_MM", new byte[]{1, 2, 3}).statusCode());
+        assertEquals(404, client.get("/jobs/unknown").statusCode());
+        assertEquals(405, client.get("/printers/SIM-0001/labels").statusCode());
+    }
+
+    @Test
+    void listPrinters() throws Exception {
+        start(Duration.ZERO);
+
+        HttpResponse<String> response = client.get("/printers");
+
+        assertEquals(200, response.statusCode());
+        assertEquals("SIM-0001", PrintClient.field(response.body(), "serialNumber"));
+    }
+
+    private void start(Duration batchWindow) throws IOException {
+        server = new PrintServer(printService, PrintServerOptions.builder()
+                .address(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .batchWindow(batchWindow)
+                .build());
+        server.start();
+        client = new PrintClient(server);
+    }
+
+    static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return png.toByteArray();
+    }
+}
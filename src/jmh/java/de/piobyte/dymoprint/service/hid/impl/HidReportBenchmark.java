@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.impl;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding of the printer command stream into HID reports. The {@code reports} and {@code labels} counters give the
+ * number of HID reports per label, {@code text} labels are mostly blank like real labels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HidReportBenchmark {
+
+    @Param({"D1_6_MM", "D1_9_MM", "D1_12_MM"})
+    public Tape tape;
+
+    @Param({"64", "512", "4096"})
+    public int labelLength;
+
+    @Param({"random", "text"})
+    public String content;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    private PureJavaHidApiDevice device;
+    private byte[] labelData;
+
+    @Setup
+    public void setUp() {
+        PrinterConfiguration configuration = new LabelManagerPnPConfiguration();
+        device = new PureJavaHidApiDevice(RecordingHidDevice.deviceInfo(configuration, "BENCHMARK"), configuration,
+                new RecordingHidDevice(false), compact);
+
+        int bytesPerLine = configuration.getSupportedTapes().get(tape);
+        labelData = new byte[labelLength * bytesPerLine];
+        Random random = new Random(labelLength);
+        if ("random".equals(content)) {
+            random.nextBytes(labelData);
+        } else {
+            // characters of 5-7 inked lines in the upper half, separated by 3 blank lines, words by 12
+            int line = 8;
+            while (line < labelLength - 16) {
+                int characters = 3 + random.nextInt(6);
+                for (int c = 0; c < characters && line < labelLength - 8; c++) {
+                    int width = 5 + random.nextInt(3);
+                    for (int x = 0; x < width && line < labelLength - 8; x++, line++) {
+                        for (int b = 0; b < (bytesPerLine + 1) / 2; b++) {
+                            labelData[line * bytesPerLine + b] = (byte) random.nextInt();
+                        }
+                    }
+                    line += 3;
+                }
+                line += 12;
+            }
+        }
+    }
+
+    @Benchmark
+    public PureJavaHidApiDevice write(Reports reports) throws IOException {
+        long before = device.getReportCount();
+        device.write(tape, labelData);
+        reports.reports += device.getReportCount() - before;
+        reports.labels++;
+        return device;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Reports {
+        public long reports;
+        public long labels;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Synthetic labels for benchmarks: a barcode-like bar pattern followed by text.
+ */
+final class BenchmarkLabels {
+
+    private BenchmarkLabels() {
+    }
+
+    static int imageType(String name) {
+        switch (name) {
+            case "INT_RGB":
+                return BufferedImage.TYPE_INT_RGB;
+            case "INT_ARGB":
+                return BufferedImage.TYPE_INT_ARGB;
+            case "BYTE_GRAY":
+                return BufferedImage.TYPE_BYTE_GRAY;
+            case "BYTE_BINARY":
+                return BufferedImage.TYPE_BYTE_BINARY;
+            default:
+                throw new IllegalArgumentException("Unknown image type: " + name);
+        }
+    }
+
+    static BufferedImage create(int width, int height, int imageType) {
+        BufferedImage label = new BufferedImage(width, height, imageType);
+        Graphics2D graphic = label.createGraphics();
+        graphic.setColor(Color.WHITE);
+        graphic.fillRect(0, 0, width, height);
+
+        Random random = new Random(width * 31L + height);
+        graphic.setColor(Color.DARK_GRAY);
+        int barcodeWidth = Math.min(width / 3, 200);
+        for (int x = 0; x < barcodeWidth; x += 1 + random.nextInt(3)) {
+            int barWidth = 1 + random.nextInt(3);
+            graphic.fillRect(x, 0, barWidth, height);
+            x += barWidth;
+        }
+
+        graphic.setColor(Color.BLACK);
+        graphic.setFont(new Font(Font.SANS_SERIF, Font.BOLD, Math.max(8, height / 3)));
+        for (int x = barcodeWidth + 5; x < width; x += 120) {
+            graphic.drawString("P-" + random.nextInt(100000), x, height - height / 4);
+        }
+        graphic.dispose();
+
+        return label;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of grayscale and color labels with the different binarizations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinarizationBenchmark {
+
+    @Param({"AWT", "THRESHOLD", "OTSU", "BAYER", "FLOYD_STEINBERG"})
+    public Binarization binarization;
+
+    @Param({"512", "4096"})
+    public int labelLength;
+
+    @Param({"BYTE_GRAY", "INT_ARGB", "INT_RGB"})
+    public String imageType;
+
+    private LabelConverter converter;
+    private BufferedImage label;
+
+    @Setup
+    public void setUp() {
+        converter = new LabelConverter(binarization);
+        label = BenchmarkLabels.create(labelLength, 32, BenchmarkLabels.imageType(imageType));
+    }
+
+    @Benchmark
+    public byte[] convertLabel() {
+        return converter.convert(label);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of label images into the bit-matrix sent to the printer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LabelConversionBenchmark {
+
+    @Param({"D1_6_MM", "D1_9_MM", "D1_12_MM"})
+    public Tape tape;
+
+    @Param({"64", "512", "4096"})
+    public int labelLength;
+
+    @Param({"INT_RGB", "INT_ARGB", "BYTE_GRAY", "BYTE_BINARY"})
+    public String imageType;
+
+    private final LabelConverter converter = new LabelConverter();
+    private BufferedImage label;
+
+    @Setup
+    public void setUp() {
+        int height = new LabelManagerPnPConfiguration().getSupportedTapes().get(tape) * 8;
+        label = BenchmarkLabels.create(labelLength, height, BenchmarkLabels.imageType(imageType));
+    }
+
+    @Benchmark
+    public BufferedImage convertToBinaryImage() {
+        return converter.toBinaryImage(label);
+    }
+
+    @Benchmark
+    public byte[] convertLabel() {
+        return converter.convert(label);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Labels with a static background and a changing serial number: rendering and converting the whole label compared
+ * to filling a {@link LabelTemplate}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LabelTemplateBenchmark {
+
+    private static final Rectangle FIELD = new Rectangle(0, 8, 200, 48);
+    private static final Font FONT = new Font(Font.SANS_SERIF, Font.BOLD, 28);
+
+    @Param({"512", "2048"})
+    public int labelLength;
+
+    @Param({"INT_RGB", "BYTE_BINARY"})
+    public String imageType;
+
+    private final LabelConverter converter = new LabelConverter();
+    private BufferedImage background;
+    private LabelTemplate template;
+    private byte[] buffer;
+    private int serial;
+
+    @Setup
+    public void setUp() {
+        background = BenchmarkLabels.create(labelLength, 64, BenchmarkLabels.imageType(imageType));
+        template = LabelTemplate.builder(background).field("serial", FIELD).build();
+        buffer = new byte[LabelConverter.packedSize(labelLength, 64)];
+    }
+
+    @Benchmark
+    public byte[] renderFullLabel() {
+        BufferedImage label = new BufferedImage(labelLength, 64, background.getType());
+        Graphics2D graphics = label.createGraphics();
+        graphics.drawImage(background, 0, 0, null);
+        graphics.setColor(Color.WHITE);
+        graphics.fill(FIELD);
+        graphics.setColor(Color.BLACK);
+        graphics.setFont(FONT);
+        graphics.drawString("SN-" + serial++, FIELD.x + 2, FIELD.y + 36);
+        graphics.dispose();
+        return converter.convert(label);
+    }
+
+    @Benchmark
+    public byte[] fillTemplate() throws IOException {
+        String text = "SN-" + serial++;
+        template.fill("serial", (graphics, width, height) -> {
+            graphics.setFont(FONT);
+            graphics.drawString(text, 2, 36);
+        }).readLines(buffer);
+        return buffer;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.sim.SimulatedHidService;
+import de.piobyte.dymoprint.service.hid.sim.SimulationSettings;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Complete print path from image to decoded HID reports on a simulated printer without waiting for the simulated
+ * hardware, i.e. the host-side overhead per label.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrintThroughputBenchmark {
+
+    @Param({"64", "512"})
+    public int labelLength;
+
+    @Param({"false", "true"})
+    public boolean keepConnectionOpen;
+
+    private PrintService printService;
+    private BufferedImage label;
+
+    @Setup
+    public void setUp() {
+        SimulatedHidService hidService = SimulatedHidService.create(1, new LabelManagerPnPConfiguration(),
+                SimulationSettings.builder().timeScale(0).retainedLabels(1).build());
+        printService = new PrintService(hidService, PrintServiceOptions.builder()
+                .keepConnectionOpen(keepConnectionOpen)
+                .build());
+        label = BenchmarkLabels.create(labelLength, 64, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @TearDown
+    public void tearDown() {
+        printService.close();
+    }
+
+    @Benchmark
+    public void printLabel() throws IOException, InvalidParameterException, PrinterNotFoundException {
+        printService.printLabel("SIM-0001", Tape.D1_12_MM, label);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.service.hid.EncodedLabel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable spooling of an encoded 12 mm label (about 4 KB) and marking it as done, from one and from eight threads.
+ * With several threads the flushes of the journal are shared (group commit), so the throughput should grow with
+ * the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpoolJournalBenchmark {
+
+    private Path directory;
+    private SpoolJournal journal;
+    private EncodedLabel label;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("spool-benchmark");
+        journal = new SpoolJournal(directory.resolve("spool.journal"));
+        label = new EncodedLabel(Tape.D1_12_MM, new byte[4096]);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        Files.deleteIfExists(directory.resolve("spool.journal"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void spoolSingleThread() throws IOException {
+        spool();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void spoolEightThreads() throws IOException {
+        spool();
+    }
+
+    private void spool() throws IOException {
+        SpoolJournal.Entry entry = journal.append("SIM-0001", label);
+        journal.sync(entry.getSequence());
+        journal.complete(entry);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.HidDevice;
+import de.piobyte.dymoprint.service.hid.HidService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Many callers printing at once on a few slow printers, each caller on its own platform or virtual thread. Most
+ * callers wait for the lock of their printer, so the time per round is dominated by creating, parking and
+ * scheduling the waiting threads. Virtual threads need Java 21, older runtimes measure platform threads twice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VirtualThreadDispatchBenchmark {
+
+    private static final int PRINTERS = 16;
+    private static final long WRITE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"256", "4096"})
+    public int callers;
+
+    private PrintService printService;
+    private ThreadFactory threadFactory;
+    private BufferedImage label;
+
+    @Setup
+    public void setUp() {
+        List<HidDevice> devices = new ArrayList<>();
+        for (int i = 0; i < PRINTERS; i++) {
+            devices.add(new SleepingHidDevice("FAKE-" + i));
+        }
+        HidService hidService = () -> devices;
+        printService = new PrintService(hidService);
+        threadFactory = JobThreads.factory("dymo-print-caller", threads.equals("virtual"));
+        label = BenchmarkLabels.create(16, 64, BufferedImage.TYPE_BYTE_BINARY);
+    }
+
+    @TearDown
+    public void tearDown() {
+        printService.close();
+    }
+
+    @Benchmark
+    public int printConcurrently() throws InterruptedException {
+        AtomicInteger printed = new AtomicInteger();
+        Thread[] callerThreads = new Thread[callers];
+        for (int i = 0; i < callers; i++) {
+            String serialNumber = "FAKE-" + (i % PRINTERS);
+            callerThreads[i] = threadFactory.newThread(() -> {
+                try {
+                    printService.printLabel(serialNumber, Tape.D1_12_MM, label);
+                    printed.incrementAndGet();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            callerThreads[i].start();
+        }
+        for (Thread callerThread : callerThreads) {
+            callerThread.join();
+        }
+        return printed.get();
+    }
+
+    /**
+     * Printer which blocks the writing thread like a USB transfer.
+     */
+    private static class SleepingHidDevice implements HidDevice {
+        private final String serialNumber;
+        private final PrinterConfiguration configuration = new LabelManagerPnPConfiguration();
+
+        SleepingHidDevice(String serialNumber) {
+            this.serialNumber = serialNumber;
+        }
+
+        @Override
+        public String getSerialNumber() {
+            return serialNumber;
+        }
+
+        @Override
+        public PrinterConfiguration getPrinterConfiguration() {
+            return configuration;
+        }
+
+        @Override
+        public String getPath() {
+            return "/dev/fake-" + serialNumber;
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void write(Tape tape, byte[] bytes) throws IOException {
+            try {
+                TimeUnit.NANOSECONDS.sleep(WRITE_NANOS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted!", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print.layout;
+
+import de.piobyte.dymoprint.service.print.LabelConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of distinct text and barcode labels, compared with drawing them through an AWT image.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class LabelRenderBenchmark {
+
+    private final LabelRenderer renderer = new LabelRenderer();
+    private final LabelConverter converter = new LabelConverter();
+    private final Font font = new Font(Font.SANS_SERIF, Font.BOLD, 20);
+    private int counter;
+
+    @Benchmark
+    public byte[] renderText() {
+        return renderer.render(LabelLayout.builder(64)
+                .text("Item #" + counter++ + " Shelf B", font)
+                .build()).getData();
+    }
+
+    @Benchmark
+    public byte[] renderTextAndBarcode() {
+        String number = "p" + (100000 + counter++);
+        return renderer.render(LabelLayout.builder(64)
+                .code128(number)
+                .text(number, font)
+                .build()).getData();
+    }
+
+    @Benchmark
+    public byte[] renderTextWithAwt() {
+        String text = "Item #" + counter++ + " Shelf B";
+        int width = (int) Math.ceil(font.getStringBounds(text, new BufferedImage(1, 1,
+                BufferedImage.TYPE_BYTE_BINARY).createGraphics().getFontRenderContext()).getWidth());
+        BufferedImage image = new BufferedImage(width, 64, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, 64);
+        graphics.setColor(Color.BLACK);
+        graphics.setFont(font);
+        graphics.drawString(text, 0, 40);
+        graphics.dispose();
+        return converter.convert(image);
+    }
+}
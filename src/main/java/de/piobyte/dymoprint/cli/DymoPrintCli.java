@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.cli;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.impl.CommandEncoder;
+import de.piobyte.dymoprint.service.print.InvalidParameterException;
+import de.piobyte.dymoprint.service.print.LabelConverter;
+import de.piobyte.dymoprint.service.print.PackedLabel;
+import de.piobyte.dymoprint.service.print.PrintService;
+import de.piobyte.dymoprint.service.print.PrintServiceOptions;
+import de.piobyte.dymoprint.service.print.Printer;
+import de.piobyte.dymoprint.service.print.PrinterNotFoundException;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Command line entry point for short-lived print jobs, e.g. on label kiosks.
+ * <pre>
+ * dymo-print list
+ * dymo-print print [--compact] &lt;serialNumber&gt; &lt;tape&gt; &lt;label&gt;
+ * dymo-print encode [--compact] &lt;tape&gt; &lt;label&gt; [&lt;output&gt;]
+ * </pre>
+ * Labels are read from raw PBM files (P4, image width = tape height, one row per tape line), from files of packed
+ * tape lines ({@code .bin}) and from images like PNG. Only images load AWT, the other formats are mapped into
+ * memory and sent as they are, see {@link PackedLabel}. {@code encode} writes the print job of a LabelManager PnP
+ * without a printer (to stdout without output file), which makes it the reference for startup measurements.
+ */
+public final class DymoPrintCli {
+
+    private static final int EXIT_OK = 0;
+    private static final int EXIT_FAILURE = 1;
+    private static final int EXIT_USAGE = 2;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage:",
+            "  dymo-print list",
+            "  dymo-print print [--compact] <serialNumber> <tape> <label>",
+            "  dymo-print encode [--compact] <tape> <label> [<output>]",
+            "tape: " + Arrays.toString(Tape.values()),
+            "label: .pbm (raw PBM, width = tape height), .bin (packed tape lines) or image (e.g. PNG)");
+
+    private DymoPrintCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Execute command.
+     *
+     * @param args command line arguments
+     * @param out output of the command
+     * @param err error messages
+     * @return exit code, 0 on success
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        boolean compact = arguments.remove("--compact");
+        if (arguments.isEmpty()) {
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        try {
+            String command = arguments.remove(0);
+            switch (command) {
+                case "list":
+                    if (!arguments.isEmpty()) {
+                        break;
+                    }
+                    list(out);
+                    return EXIT_OK;
+                case "print":
+                    if (arguments.size() != 3) {
+                        break;
+                    }
+                    print(arguments.get(0), parseTape(arguments.get(1)), Path.of(arguments.get(2)), compact);
+                    return EXIT_OK;
+                case "encode":
+                    if (arguments.size() != 2 && arguments.size() != 3) {
+                        break;
+                    }
+                    Tape tape = parseTape(arguments.get(0));
+                    Path label = Path.of(arguments.get(1));
+                    if (arguments.size() == 3) {
+                        try (OutputStream output = new BufferedOutputStream(
+                                Files.newOutputStream(Path.of(arguments.get(2))))) {
+                            encode(tape, label, compact, output);
+                        }
+                    } else {
+                        encode(tape, label, compact, out);
+                        out.flush();
+                    }
+                    return EXIT_OK;
+                default:
+                    err.println("Unknown command! command=" + command);
+            }
+            err.println(USAGE);
+            return EXIT_USAGE;
+        } catch (IOException | InvalidParameterException | PrinterNotFoundException | IllegalArgumentException e) {
+            err.println("Failed! " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+
+    private static void list(PrintStream out) {
+        try (PrintService printService = newPrintService(false)) {
+            for (Printer printer : printService.listAvailablePrinters()) {
+                out.println(printer.getSerialNumber() + "\t" + printer.getName() + "\t" + printer.getPath());
+            }
+        }
+    }
+
+    private static void print(String serialNumber, Tape tape, Path file, boolean compact)
+            throws IOException, InvalidParameterException, PrinterNotFoundException {
+        PrinterConfiguration printer = new LabelManagerPnPConfiguration();
+        PackedLabel label = readLabel(file, tapeHeight(printer, tape));
+        try (PrintService printService = newPrintService(compact)) {
+            printService.printLabel(serialNumber, tape, label);
+        }
+    }
+
+    private static void encode(Tape tape, Path file, boolean compact, OutputStream output)
+            throws IOException, InvalidParameterException {
+        PrinterConfiguration printer = new LabelManagerPnPConfiguration();
+        int tapeHeight = tapeHeight(printer, tape);
+        PackedLabel label = readLabel(file, tapeHeight);
+        if (label.getHeight() != tapeHeight) {
+            throw new InvalidParameterException("Wrong image height!");
+        }
+        new CommandEncoder(printer, (report, length) -> output.write(report, 0, length), compact)
+                .writeLabel(tape, label.newSource());
+    }
+
+    private static PrintService newPrintService(boolean compact) {
+        // a single lookup, no background scans of the device registry
+        return new PrintService(List.of(new LabelManagerPnPConfiguration()), PrintServiceOptions.builder()
+                .deviceRefreshInterval(Duration.ZERO)
+                .compactEncoding(compact)
+                .build());
+    }
+
+    private static PackedLabel readLabel(Path file, int tapeHeight) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".pbm")) {
+            return PackedLabel.mapPbm(file);
+        }
+        if (name.endsWith(".bin")) {
+            return PackedLabel.map(file, tapeHeight);
+        }
+        return ImageLabels.read(file);
+    }
+
+    private static Tape parseTape(String tape) {
+        try {
+            return Tape.valueOf(tape.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown tape! tape=" + tape);
+        }
+    }
+
+    private static int tapeHeight(PrinterConfiguration printer, Tape tape) {
+        Integer bytesPerLine = printer.getSupportedTapes().get(tape);
+        if (bytesPerLine == null) {
+            throw new IllegalArgumentException("Tape not supported! tape=" + tape);
+        }
+        return bytesPerLine * Byte.SIZE;
+    }
+
+    /**
+     * Image labels, in a class of their own so AWT is only loaded when an image is printed.
+     */
+    private static final class ImageLabels {
+
+        static PackedLabel read(Path file) throws IOException {
+            BufferedImage image = ImageIO.read(file.toFile());
+            if (image == null) {
+                throw new IOException("Unsupported image format! file=" + file);
+            }
+            return PackedLabel.of(new LabelConverter().convert(image), image.getHeight());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Label in the format of the device which encoded it (see {@link HidDevice#encode(Tape, byte[])}). It can be
+ * written several times without encoding it again. The data must not be modified.
+ */
+@Value
+public class EncodedLabel {
+    @NonNull
+    Tape tape;
+    @NonNull
+    byte[] data;
+
+    /**
+     * Get size of encoded data.
+     *
+     * @return size in bytes
+     */
+    public int getSize() {
+        return data.length;
+    }
+}
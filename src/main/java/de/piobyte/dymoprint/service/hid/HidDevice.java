@@ -18,7 +18,10 @@ package de.piobyte.dymoprint.service.hid;
 import de.piobyte.dymoprint.printer.PrinterConfiguration;
 import de.piobyte.dymoprint.printer.Tape;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.Consumer;
 
 public interface HidDevice {
     /**
@@ -54,6 +57,15 @@ public interface HidDevice {
      */
     void close();
 
+    /**
+     * Connection is open and the device has not been detached.
+     *
+     * @return connection state
+     */
+    default boolean isOpen() {
+        return false;
+    }
+
     /**
      * Write label data matrix.
      *
@@ -62,4 +74,86 @@ public interface HidDevice {
      * @throws IOException communication problem
      */
     void write(Tape tape, byte[] bytes) throws IOException;
+
+    /**
+     * Get number of HID reports sent since the device was created.
+     *
+     * @return report count, 0 if not counted by the device
+     */
+    default long getReportCount() {
+        return 0;
+    }
+
+    /**
+     * Encode label data matrix into the format written by {@link #write(EncodedLabel)}. Devices which do not
+     * support encoding in advance keep the bit-matrix.
+     *
+     * @param tape installed tape
+     * @param bytes bit-matrix of label
+     * @return encoded label
+     */
+    default EncodedLabel encode(Tape tape, byte[] bytes) {
+        return new EncodedLabel(tape, bytes);
+    }
+
+    /**
+     * Write label encoded by {@link #encode(Tape, byte[])}.
+     *
+     * @param label encoded label
+     * @throws IOException communication problem
+     */
+    default void write(EncodedLabel label) throws IOException {
+        write(label.getTape(), label.getData());
+    }
+
+    /**
+     * Write label read line by line. Implementations should encode the lines as they are read, so the label never
+     * exists as a whole in memory.
+     *
+     * @param tape installed tape
+     * @param labelSource source of label lines
+     * @throws IOException communication problem
+     */
+    default void write(Tape tape, LabelSource labelSource) throws IOException {
+        int bytesPerLine = labelSource.getHeight() / 8;
+        byte[] lines = new byte[64 * bytesPerLine];
+        ByteArrayOutputStream labelData = new ByteArrayOutputStream();
+        int lineCount;
+        while ((lineCount = labelSource.readLines(lines)) > 0) {
+            labelData.write(lines, 0, lineCount * bytesPerLine);
+        }
+        write(tape, labelData.toByteArray());
+    }
+
+    /**
+     * Write several label data matrices in one session. The labels are requested from the iterator one after
+     * another, so the next label can be prepared while the current one is sent.
+     *
+     * @param tape installed tape
+     * @param labels bit-matrices of labels
+     * @throws IOException communication problem
+     */
+    default void write(Tape tape, Iterator<byte[]> labels) throws IOException {
+        while (labels.hasNext()) {
+            write(tape, labels.next());
+        }
+    }
+
+    /**
+     * Request the state of the printer. The connection must be open. <b>Experimental</b>, see {@link PrinterStatus}.
+     *
+     * @return status, {@link PrinterStatus#UNKNOWN} if not supported by the device
+     * @throws IOException communication problem
+     */
+    default PrinterStatus getStatus() throws IOException {
+        return PrinterStatus.UNKNOWN;
+    }
+
+    /**
+     * Set listener which is called when the device has been detached while the connection is open.
+     *
+     * @param listener listener or {@code null}
+     */
+    default void setRemovalListener(Consumer<HidDevice> listener) {
+    }
 }
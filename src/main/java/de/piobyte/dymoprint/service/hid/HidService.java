@@ -16,8 +16,28 @@
 package de.piobyte.dymoprint.service.hid;
 
 import java.util.List;
+import java.util.Optional;
 
-public interface HidService {
+public interface HidService extends AutoCloseable {
 
     List<HidDevice> listPrinterDevices();
+
+    /**
+     * Find printer by serial number (case insensitive).
+     *
+     * @param serialNumber serial number of printer
+     * @return printer device
+     */
+    default Optional<HidDevice> findPrinterDevice(String serialNumber) {
+        return listPrinterDevices().stream()
+                .filter(hidDevice -> serialNumber.equalsIgnoreCase(hidDevice.getSerialNumber()))
+                .findFirst();
+    }
+
+    /**
+     * Release resources (e.g. background threads).
+     */
+    @Override
+    default void close() {
+    }
 }
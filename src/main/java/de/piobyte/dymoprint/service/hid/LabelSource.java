@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid;
+
+import java.io.IOException;
+
+/**
+ * Label which is read tape line by tape line, so it never has to exist as a whole in memory.
+ * <p>
+ * A tape line is one column of the label image with {@code height / 8} bytes from top to bottom, the most
+ * significant bit being the topmost pixel. Lines are read in print order, i.e. starting with the rightmost column
+ * of the label image. A source can be read once.
+ */
+public interface LabelSource {
+
+    /**
+     * Label height.
+     *
+     * @return height in pixel, a multiple of 8
+     */
+    int getHeight();
+
+    /**
+     * Read the next lines.
+     *
+     * @param buffer target buffer, its length is a multiple of the bytes per line
+     * @return number of lines written to the start of the buffer, 0 if there are no more lines
+     * @throws IOException problem reading the label
+     */
+    int readLines(byte[] buffer) throws IOException;
+}
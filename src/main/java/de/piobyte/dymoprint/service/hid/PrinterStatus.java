@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid;
+
+/**
+ * State of a printer as reported in reply to a status request ({@code ESC A}).
+ * <p>
+ * <b>Experimental:</b> the layout of the reply has not been verified against a LabelManager yet. It is assumed to be
+ * a bit field in the first byte, one bit set while the print buffer is full and one while no tape is inserted.
+ */
+public enum PrinterStatus {
+
+    /**
+     * Printer accepts data.
+     */
+    READY,
+
+    /**
+     * Print buffer is full, data sent now has to wait for the print head.
+     */
+    BUSY,
+
+    /**
+     * No tape or an empty cassette is inserted.
+     */
+    TAPE_OUT,
+
+    /**
+     * Device does not report its state.
+     */
+    UNKNOWN;
+
+    // assumed bits of the first reply byte, not verified on hardware
+    private static final int BUSY_BIT = 0x01;
+    private static final int TAPE_OUT_BIT = 0x02;
+
+    /**
+     * Parse reply to a status request.
+     *
+     * @param report input report
+     * @param length number of valid bytes
+     * @return status, {@link #UNKNOWN} for empty reports
+     */
+    public static PrinterStatus parse(byte[] report, int length) {
+        if (length < 1) {
+            return UNKNOWN;
+        }
+        if ((report[0] & TAPE_OUT_BIT) != 0) {
+            return TAPE_OUT;
+        }
+        return (report[0] & BUSY_BIT) != 0 ? BUSY : READY;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.impl;
+
+import de.piobyte.dymoprint.service.hid.HidDevice;
+import de.piobyte.dymoprint.service.hid.HidService;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Device registry which caches the printers found by another {@link HidService}.
+ * <p>
+ * The devices are scanned on first use and then refreshed in the background. Lookups of unknown serial numbers
+ * trigger an immediate scan, so newly attached printers are found without waiting for the next refresh. These scans
+ * are rate-limited: misses shortly after a scan are answered from the registry, so repeated lookups of serial numbers
+ * which are not attached do not serialize on USB enumerations. Devices
+ * reporting their removal are dropped from the registry right away. Device objects are kept across refreshes as
+ * long as the printer stays attached.
+ * <p>
+ * The USB enumeration runs without holding the registry lock, only the merge of its result into the registry is
+ * locked. A scan which finishes after a later started one is discarded.
+ */
+@Slf4j
+public class CachingHidService implements HidService {
+
+    private static final Duration DEFAULT_MISS_REFRESH_INTERVAL = Duration.ofSeconds(1);
+
+    private final HidService delegate;
+    private final Duration refreshInterval;
+    private final long missRefreshIntervalNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder totalRefreshNanos = new LongAdder();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile long lastRefreshNanos;
+    private volatile long lastScanStart;
+
+    private volatile Map<String, HidDevice> devices;
+    private long lastMergedScanStart;
+    private ScheduledExecutorService scheduler;
+    private boolean closed;
+
+    /**
+     * Create registry.
+     *
+     * @param delegate service used to scan for devices
+     * @param refreshInterval interval of background scans
+     */
+    public CachingHidService(@NonNull HidService delegate, @NonNull Duration refreshInterval) {
+        this(delegate, refreshInterval, DEFAULT_MISS_REFRESH_INTERVAL);
+    }
+
+    /**
+     * Create registry.
+     *
+     * @param delegate service used to scan for devices
+     * @param refreshInterval interval of background scans
+     * @param missRefreshInterval minimum time between the start of the last scan and a scan triggered by a lookup
+     *                            of an unknown serial number, {@link Duration#ZERO} scans on every miss
+     */
+    public CachingHidService(@NonNull HidService delegate, @NonNull Duration refreshInterval,
+                             @NonNull Duration missRefreshInterval) {
+        if (refreshInterval.isNegative() || refreshInterval.isZero()) {
+            throw new IllegalArgumentException("Refresh interval must be positive!");
+        }
+        if (missRefreshInterval.isNegative()) {
+            throw new IllegalArgumentException("Miss refresh interval must not be negative!");
+        }
+        this.delegate = delegate;
+        this.refreshInterval = refreshInterval;
+        this.missRefreshIntervalNanos = missRefreshInterval.toNanos();
+        this.lastScanStart = System.nanoTime() - missRefreshIntervalNanos;
+    }
+
+    @Override
+    public List<HidDevice> listPrinterDevices() {
+        return List.copyOf(getDevices().values());
+    }
+
+    @Override
+    public Optional<HidDevice> findPrinterDevice(@NonNull String serialNumber) {
+        String key = key(serialNumber);
+        HidDevice device = getDevices().get(key);
+        if (device != null) {
+            hits.increment();
+            return Optional.of(device);
+        }
+
+        misses.increment();
+        refreshAfterMiss();
+        return Optional.ofNullable(devices.get(key));
+    }
+
+    /**
+     * Scan for devices now.
+     */
+    public void refresh() {
+        long start = System.nanoTime();
+        lastScanStart = start;
+        List<HidDevice> scannedDevices = delegate.listPrinterDevices();
+        lock.lock();
+        try {
+            if (devices != null && start - lastMergedScanStart < 0) {
+                log.debug("Discarding result of outdated scan.");
+                return;
+            }
+            lastMergedScanStart = start;
+            merge(scannedDevices);
+        } finally {
+            lock.unlock();
+        }
+
+        long duration = System.nanoTime() - start;
+        lastRefreshNanos = duration;
+        totalRefreshNanos.add(duration);
+        refreshes.increment();
+    }
+
+    /**
+     * Get counters of lookups and device scans.
+     *
+     * @return statistics
+     */
+    public RegistryStatistics getStatistics() {
+        return RegistryStatistics.builder()
+                .hits(hits.sum())
+                .misses(misses.sum())
+                .refreshes(refreshes.sum())
+                .lastRefreshTime(Duration.ofNanos(lastRefreshNanos))
+                .totalRefreshTime(Duration.ofNanos(totalRefreshNanos.sum()))
+                .build();
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+            }
+        } finally {
+            lock.unlock();
+        }
+        delegate.close();
+    }
+
+    private Map<String, HidDevice> getDevices() {
+        Map<String, HidDevice> currentDevices = devices;
+        if (currentDevices == null) {
+            start();
+            currentDevices = devices;
+        }
+        return currentDevices;
+    }
+
+    private void start() {
+        refresh();
+        lock.lock();
+        try {
+            if (scheduler == null && !closed) {
+                scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "dymo-print-device-registry");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                long intervalMillis = refreshInterval.toMillis();
+                scheduler.scheduleWithFixedDelay(this::backgroundRefresh, intervalMillis, intervalMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refreshAfterMiss() {
+        // lookups arriving during a scan do not start another one, the scan sets lastScanStart when it begins
+        if (!isRecentlyScanned()) {
+            refresh();
+        }
+    }
+
+    private boolean isRecentlyScanned() {
+        return missRefreshIntervalNanos > 0 && System.nanoTime() - lastScanStart < missRefreshIntervalNanos;
+    }
+
+    private void backgroundRefresh() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.error("Could not scan for devices! error={}", e.getMessage());
+        }
+    }
+
+    private void merge(List<HidDevice> scannedDevices) {
+        Map<String, HidDevice> previousDevices = devices == null ? Map.of() : devices;
+        Map<String, HidDevice> refreshedDevices = new LinkedHashMap<>();
+        for (HidDevice scannedDevice : scannedDevices) {
+            if (scannedDevice.getSerialNumber() == null) {
+                continue;
+            }
+            String key = key(scannedDevice.getSerialNumber());
+            HidDevice knownDevice = previousDevices.get(key);
+            if (knownDevice != null && Objects.equals(knownDevice.getPath(), scannedDevice.getPath())) {
+                refreshedDevices.put(key, knownDevice);
+            } else {
+                scannedDevice.setRemovalListener(this::invalidate);
+                refreshedDevices.put(key, scannedDevice);
+            }
+        }
+        previousDevices.forEach((key, device) -> {
+            if (refreshedDevices.get(key) != device) {
+                log.debug("Device detached. serialNumber={}", device.getSerialNumber());
+                device.setRemovalListener(null);
+                device.close();
+            }
+        });
+        devices = refreshedDevices;
+    }
+
+    private void invalidate(HidDevice device) {
+        String key = key(device.getSerialNumber());
+        lock.lock();
+        try {
+            if (devices != null && devices.get(key) == device) {
+                Map<String, HidDevice> remainingDevices = new LinkedHashMap<>(devices);
+                remainingDevices.remove(key);
+                devices = remainingDevices;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String key(String serialNumber) {
+        return serialNumber.toUpperCase(Locale.ROOT);
+    }
+}
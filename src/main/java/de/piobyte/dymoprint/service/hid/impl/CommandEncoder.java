@@ -0,0 +1,406 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.impl;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.service.hid.LabelSource;
+import de.piobyte.dymoprint.service.hid.PrinterStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes the printer commands (ESC/SYN command stream) into HID output reports.
+ * <p>
+ * Commands are written into a single report buffer, which is passed to the sink as soon as it is full. Hence the
+ * memory footprint does not depend on the label length. Instances are not thread-safe.
+ * <p>
+ * In compact mode blank lines are sent as empty lines ({@code ESC D 0} + {@code SYN}), trailing blank bytes of a
+ * line are dropped and the bytes per line ({@code ESC D n}) are only sent when they change. This reduces the
+ * number of reports for labels with white space, e.g. text labels.
+ * <p>
+ * With a {@link StatusReader} the encoder requests the printer status every few reports, between two commands,
+ * and waits for the reply. So data is sent as fast as the printer takes it, a busy printer is polled until it is
+ * ready and a missing tape stops the job.
+ */
+public class CommandEncoder {
+
+    public final static int REPORT_SIZE = 64;
+
+    final static byte CMD_ESC = 0x1B;
+    final static byte CMD_SYN = 0x16;
+    final static byte CMD_A = 0x41;
+    final static byte CMD_B = 0x42;
+    final static byte CMD_C = 0x43;
+    final static byte CMD_D = 0x44;
+    final static byte CMD_E = 0x45;
+
+    private final static int LABEL_START_EMPTY_LINES = 2;
+    private final static int SOURCE_BUFFER_LINES = 64;
+    private final static long BUSY_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final PrinterConfiguration printer;
+    private final ReportSink sink;
+    private final boolean compact;
+    private final StatusReader statusReader;
+    private final int statusInterval;
+    private final byte[] report = new byte[REPORT_SIZE];
+    private int position;
+    private long reportCount;
+    private int lineBytes = -1;
+    private long statusReportCount;
+
+    public CommandEncoder(PrinterConfiguration printer, ReportSink sink) {
+        this(printer, sink, false);
+    }
+
+    /**
+     * Create encoder.
+     *
+     * @param printer printer configuration
+     * @param sink receiver of the reports
+     * @param compact use compact encoding of blank lines
+     */
+    public CommandEncoder(PrinterConfiguration printer, ReportSink sink, boolean compact) {
+        this(printer, sink, compact, null, 0);
+    }
+
+    /**
+     * Create encoder with flow control.
+     *
+     * @param printer printer configuration
+     * @param sink receiver of the reports
+     * @param compact use compact encoding of blank lines
+     * @param statusReader source of status replies, {@code null} disables the flow control
+     * @param statusInterval number of reports between status requests
+     */
+    public CommandEncoder(PrinterConfiguration printer, ReportSink sink, boolean compact, StatusReader statusReader,
+                          int statusInterval) {
+        if (statusReader != null && statusInterval < 1) {
+            throw new IllegalArgumentException("Status interval must be positive! statusInterval=" + statusInterval);
+        }
+        this.printer = printer;
+        this.sink = sink;
+        this.compact = compact;
+        this.statusReader = statusReader;
+        this.statusInterval = statusInterval;
+    }
+
+    /**
+     * Encode a single label as a complete print job into memory, see {@link #writeLabel(Tape, byte[])}.
+     *
+     * @param printer printer configuration
+     * @param tape installed tape
+     * @param labelData bit-matrix of label
+     * @return command stream
+     */
+    public static byte[] encode(PrinterConfiguration printer, Tape tape, byte[] labelData) {
+        return encode(printer, tape, labelData, false);
+    }
+
+    /**
+     * Encode a single label as a complete print job into memory, see {@link #writeLabel(Tape, byte[])}.
+     *
+     * @param printer printer configuration
+     * @param tape installed tape
+     * @param labelData bit-matrix of label
+     * @param compact use compact encoding of blank lines
+     * @return command stream
+     */
+    public static byte[] encode(PrinterConfiguration printer, Tape tape, byte[] labelData, boolean compact) {
+        ByteArrayOutputStream commands = new ByteArrayOutputStream();
+        try {
+            new CommandEncoder(printer, (report, length) -> commands.write(report, 0, length), compact)
+                    .writeLabel(tape, labelData);
+        } catch (IOException e) {
+            // not thrown by the in-memory sink
+            throw new UncheckedIOException(e);
+        }
+        return commands.toByteArray();
+    }
+
+    /**
+     * Send a single label as a complete print job: tape settings, label and the partially filled report.
+     *
+     * @param tape installed tape
+     * @param labelData bit-matrix of label
+     * @throws IOException communication problem
+     */
+    public void writeLabel(Tape tape, byte[] labelData) throws IOException {
+        printTapeSettings(tape);
+        printLabel(tape, labelData);
+        flush();
+    }
+
+    /**
+     * Send a label read line by line as a complete print job, see {@link #writeLabel(Tape, byte[])}.
+     *
+     * @param tape installed tape
+     * @param labelSource source of label lines
+     * @throws IOException communication problem
+     */
+    public void writeLabel(Tape tape, LabelSource labelSource) throws IOException {
+        printTapeSettings(tape);
+        printLabel(tape, labelSource);
+        flush();
+    }
+
+    /**
+     * Send several labels as one print job. The tape settings are sent once and every label is flushed on its own,
+     * so the printer can start with the first label while the next one is prepared.
+     *
+     * @param tape installed tape
+     * @param labels bit-matrices of labels
+     * @throws IOException communication problem
+     */
+    public void writeLabels(Tape tape, Iterator<byte[]> labels) throws IOException {
+        printTapeSettings(tape);
+        while (labels.hasNext()) {
+            printLabel(tape, labels.next());
+            flush();
+        }
+        flush();
+    }
+
+    /**
+     * Encode tape color and height.
+     *
+     * @param tape installed tape
+     * @throws IOException communication problem
+     */
+    public void printTapeSettings(Tape tape) throws IOException {
+        // tape color
+        write(CMD_ESC, CMD_C, (byte) printer.getColor());
+
+        // height
+        byte height;
+        if (tape == Tape.D1_6_MM) {
+            height = 2;
+        } else if (tape == Tape.D1_9_MM) {
+            height = 1;
+        } else {
+            height = 0;
+        }
+        write(CMD_ESC, CMD_B, height);
+        lineBytes = -1;
+    }
+
+    /**
+     * Encode label including the leading empty lines, the left margin and the cut command.
+     *
+     * @param tape installed tape
+     * @param labelData bit-matrix of label
+     * @throws IOException communication problem
+     */
+    public void printLabel(Tape tape, byte[] labelData) throws IOException {
+        int bytesPerLine = printer.getSupportedTapes().get(tape);
+
+        printEmptyLines(LABEL_START_EMPTY_LINES);
+
+        if (!compact) {
+            setBytesPerLine(bytesPerLine);
+        }
+        printLines(labelData, labelData.length, bytesPerLine);
+
+        // left margin
+        printEmptyLines(printer.getLeftMargin());
+
+        if (printer.supportsCutting()) {
+            cutTape();
+        }
+    }
+
+    /**
+     * Encode label read line by line, see {@link #printLabel(Tape, byte[])}.
+     *
+     * @param tape installed tape
+     * @param labelSource source of label lines
+     * @throws IOException communication problem
+     */
+    public void printLabel(Tape tape, LabelSource labelSource) throws IOException {
+        int bytesPerLine = printer.getSupportedTapes().get(tape);
+        byte[] lines = new byte[SOURCE_BUFFER_LINES * bytesPerLine];
+
+        printEmptyLines(LABEL_START_EMPTY_LINES);
+
+        if (!compact) {
+            setBytesPerLine(bytesPerLine);
+        }
+        int lineCount;
+        while ((lineCount = labelSource.readLines(lines)) > 0) {
+            printLines(lines, lineCount * bytesPerLine, bytesPerLine);
+        }
+
+        // left margin
+        printEmptyLines(printer.getLeftMargin());
+
+        if (printer.supportsCutting()) {
+            cutTape();
+        }
+    }
+
+    /**
+     * Encode empty lines.
+     *
+     * @param count number of lines
+     * @throws IOException communication problem
+     */
+    public void printEmptyLines(int count) throws IOException {
+        setBytesPerLine(0);
+        for (int i = 0; i < count; i++) {
+            write(CMD_SYN);
+        }
+    }
+
+    /**
+     * Encode cut command.
+     *
+     * @throws IOException communication problem
+     */
+    public void cutTape() throws IOException {
+        write(CMD_ESC, CMD_E);
+    }
+
+    /**
+     * Encode status request.
+     *
+     * @throws IOException communication problem
+     */
+    public void requestStatus() throws IOException {
+        write(CMD_ESC, CMD_A);
+    }
+
+    /**
+     * Send an already encoded command stream and the partially filled report.
+     *
+     * @param commands encoded commands
+     * @throws IOException communication problem
+     */
+    public void write(byte[] commands) throws IOException {
+        write(commands, 0, commands.length);
+        flush();
+        lineBytes = -1;
+    }
+
+    /**
+     * Send the partially filled report.
+     *
+     * @throws IOException communication problem
+     */
+    public void flush() throws IOException {
+        if (position > 0) {
+            int length = position;
+            position = 0;
+            sink.send(report, length);
+            reportCount++;
+        }
+    }
+
+    /**
+     * Discard the partially filled report, e.g. after a failed transfer.
+     */
+    public void reset() {
+        position = 0;
+        lineBytes = -1;
+        statusReportCount = reportCount;
+    }
+
+    /**
+     * Get number of reports the sink accepted, failed transfers are not counted.
+     *
+     * @return report count
+     */
+    public long getReportCount() {
+        return reportCount;
+    }
+
+    private void printLines(byte[] lines, int length, int bytesPerLine) throws IOException {
+        for (int lineStart = 0; lineStart < length; lineStart += bytesPerLine) {
+            if (statusReader != null && reportCount - statusReportCount >= statusInterval) {
+                awaitPrinter();
+            }
+            int lineLength = Math.min(bytesPerLine, length - lineStart);
+            if (compact) {
+                while (lineLength > 0 && lines[lineStart + lineLength - 1] == 0) {
+                    lineLength--;
+                }
+                setBytesPerLine(lineLength);
+            }
+            write(CMD_SYN);
+            write(lines, lineStart, lineLength);
+        }
+    }
+
+    private void awaitPrinter() throws IOException {
+        long start = System.nanoTime();
+        PrinterStatus status;
+        do {
+            requestStatus();
+            flush();
+            status = statusReader.readStatus();
+            if (status == PrinterStatus.TAPE_OUT) {
+                throw new IOException("Tape out!");
+            }
+            if (System.nanoTime() - start > BUSY_TIMEOUT_NANOS) {
+                throw new IOException("Printer is busy for too long! status=" + status);
+            }
+        } while (status == PrinterStatus.BUSY);
+        statusReportCount = reportCount;
+    }
+
+    private void setBytesPerLine(int bytesPerLine) throws IOException {
+        // the full encoding repeats the command, as the first releases did
+        if (!compact || bytesPerLine != lineBytes) {
+            write(CMD_ESC, CMD_D, (byte) bytesPerLine);
+            lineBytes = bytesPerLine;
+        }
+    }
+
+    private void write(byte value) throws IOException {
+        report[position++] = value;
+        if (position == REPORT_SIZE) {
+            flush();
+        }
+    }
+
+    private void write(byte first, byte second) throws IOException {
+        write(first);
+        write(second);
+    }
+
+    private void write(byte first, byte second, byte third) throws IOException {
+        write(first);
+        write(second);
+        write(third);
+    }
+
+    private void write(byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            int chunk = Math.min(length, REPORT_SIZE - position);
+            System.arraycopy(data, offset, report, position, chunk);
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+            if (position == REPORT_SIZE) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.impl;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Settings of the devices created by a {@link PureJavaHidApiService}.
+ */
+@Value
+@Builder
+public class DeviceOptions {
+
+    /**
+     * Use compact encoding of blank lines, see {@link CommandEncoder}.
+     */
+    boolean compactEncoding;
+
+    /**
+     * Request the printer status every {@link #statusInterval} reports and wait for the reply before sending more
+     * data. Sending stops with an error when the tape runs out. <b>Experimental</b>, see
+     * {@link de.piobyte.dymoprint.service.hid.PrinterStatus}.
+     */
+    boolean flowControl;
+
+    /**
+     * Number of reports sent between two status requests of the flow control.
+     */
+    @Builder.Default
+    int statusInterval = 16;
+
+    /**
+     * Maximum time to wait for the reply to a status request.
+     */
+    @NonNull
+    @Builder.Default
+    Duration statusTimeout = Duration.ofSeconds(2);
+
+    /**
+     * Get default settings.
+     *
+     * @return settings
+     */
+    public static DeviceOptions defaults() {
+        return DeviceOptions.builder().build();
+    }
+}
@@ -17,38 +17,90 @@ package de.piobyte.dymoprint.service.hid.impl;
 
 import de.piobyte.dymoprint.printer.PrinterConfiguration;
 import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.service.hid.EncodedLabel;
 import de.piobyte.dymoprint.service.hid.HidDevice;
+import de.piobyte.dymoprint.service.hid.LabelSource;
+import de.piobyte.dymoprint.service.hid.PrinterStatus;
 import io.github.jna4usb.purejavahidapi.HidDeviceInfo;
 import io.github.jna4usb.purejavahidapi.PureJavaHidApi;
-import lombok.RequiredArgsConstructor;
+import lombok.NonNull;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.IntStream;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 @Slf4j
 @ToString
-@RequiredArgsConstructor
 public class PureJavaHidApiDevice implements HidDevice {
 
-    private final static byte CMD_ESC = 0x1B;
-    private final static byte CMD_SYN = 0x16;
-    private final static byte CMD_A = 0x41;
-    private final static byte CMD_B = 0x42;
-    private final static byte CMD_C = 0x43;
-    private final static byte CMD_D = 0x44;
-    private final static byte CMD_E = 0x45;
-
     private final HidDeviceInfo hidDeviceInfo;
     private final PrinterConfiguration printer;
-    private boolean open;
+    private final DeviceOptions options;
+    @ToString.Exclude
+    private final StatusMonitor statusMonitor;
+    // not synchronized: virtual threads waiting for the lock unmount from their carrier thread, the thread holding it
+    // stays pinned while the write runs in native code
+    @ToString.Exclude
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean open;
+    @ToString.Exclude
+    private volatile Consumer<HidDevice> removalListener;
 
     private io.github.jna4usb.purejavahidapi.HidDevice pureJavaHidDevice;
+    @ToString.Exclude
+    private CommandEncoder commandEncoder;
+
+    public PureJavaHidApiDevice(HidDeviceInfo hidDeviceInfo, PrinterConfiguration printer) {
+        this(hidDeviceInfo, printer, DeviceOptions.defaults());
+    }
+
+    /**
+     * Create device.
+     *
+     * @param hidDeviceInfo HID device
+     * @param printer printer configuration
+     * @param compactEncoding use compact encoding of blank lines, see {@link CommandEncoder}
+     */
+    public PureJavaHidApiDevice(HidDeviceInfo hidDeviceInfo, PrinterConfiguration printer, boolean compactEncoding) {
+        this(hidDeviceInfo, printer, DeviceOptions.builder().compactEncoding(compactEncoding).build());
+    }
+
+    /**
+     * Create device.
+     *
+     * @param hidDeviceInfo HID device
+     * @param printer printer configuration
+     * @param options encoding and flow control settings
+     */
+    public PureJavaHidApiDevice(HidDeviceInfo hidDeviceInfo, PrinterConfiguration printer,
+                                @NonNull DeviceOptions options) {
+        this.hidDeviceInfo = hidDeviceInfo;
+        this.printer = printer;
+        this.options = options;
+        this.statusMonitor = new StatusMonitor(options.getStatusTimeout());
+    }
+
+    PureJavaHidApiDevice(HidDeviceInfo hidDeviceInfo, PrinterConfiguration printer,
+                         io.github.jna4usb.purejavahidapi.HidDevice pureJavaHidDevice) {
+        this(hidDeviceInfo, printer, pureJavaHidDevice, DeviceOptions.defaults());
+    }
+
+    PureJavaHidApiDevice(HidDeviceInfo hidDeviceInfo, PrinterConfiguration printer,
+                         io.github.jna4usb.purejavahidapi.HidDevice pureJavaHidDevice, boolean compactEncoding) {
+        this(hidDeviceInfo, printer, pureJavaHidDevice,
+                DeviceOptions.builder().compactEncoding(compactEncoding).build());
+    }
+
+    PureJavaHidApiDevice(HidDeviceInfo hidDeviceInfo, PrinterConfiguration printer,
+                         io.github.jna4usb.purejavahidapi.HidDevice pureJavaHidDevice, DeviceOptions options) {
+        this(hidDeviceInfo, printer, options);
+        this.pureJavaHidDevice = pureJavaHidDevice;
+        this.open = true;
+        pureJavaHidDevice.setInputReportListener(this::receiveReport);
+    }
 
     @Override
     public String getSerialNumber() {
@@ -66,101 +118,151 @@ public class PureJavaHidApiDevice implements HidDevice {
     }
 
     @Override
-    public synchronized void write(Tape tape, byte[] labelData) throws IOException {
-        if (pureJavaHidDevice != null) {
-            byte bytesPerLine = printer.getSupportedTapes().get(tape).byteValue();
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-
-            // tape color
-            byteArrayOutputStream.write(new byte[]{CMD_ESC, CMD_C, (byte) printer.getColor()});
-
-            // height
-            byte height;
-            if (tape == Tape.D1_6_MM) {
-                height = 2;
-            } else if (tape == Tape.D1_9_MM) {
-                height = 1;
-            } else {
-                height = 0;
-            }
-            byteArrayOutputStream.write(new byte[]{CMD_ESC, CMD_B, height});
+    public void write(Tape tape, byte[] labelData) throws IOException {
+        lock.lock();
+        try {
+            getCommandEncoder().writeLabel(tape, labelData);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // 2 empty lines
-            printEmptyLines(2, byteArrayOutputStream);
+    @Override
+    public EncodedLabel encode(Tape tape, byte[] labelData) {
+        return new EncodedLabel(tape, CommandEncoder.encode(printer, tape, labelData, options.isCompactEncoding()));
+    }
 
-            // label
-            byteArrayOutputStream.write(new byte[]{CMD_ESC, CMD_D, bytesPerLine});
-            for (int i = 0; i < labelData.length; i++) {
-                if (i % bytesPerLine == 0) {
-                    byteArrayOutputStream.write(CMD_SYN);
-                }
-                byteArrayOutputStream.write(labelData[i]);
-            }
+    @Override
+    public void write(EncodedLabel label) throws IOException {
+        lock.lock();
+        try {
+            getCommandEncoder().write(label.getData());
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // left margin
-            printEmptyLines(printer.getLeftMargin(), byteArrayOutputStream);
+    @Override
+    public void write(Tape tape, LabelSource labelSource) throws IOException {
+        lock.lock();
+        try {
+            getCommandEncoder().writeLabel(tape, labelSource);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            // cut tape
-            if (printer.supportsCutting()) {
-                cutTape(byteArrayOutputStream);
-            }
+    @Override
+    public void write(Tape tape, Iterator<byte[]> labels) throws IOException {
+        lock.lock();
+        try {
+            getCommandEncoder().writeLabels(tape, labels);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            byte[] rawData = byteArrayOutputStream.toByteArray();
-            divideArray(rawData, 64).forEach(bytes -> {
-                pureJavaHidDevice.setOutputReport((byte) 0, bytes, bytes.length);
+    @Override
+    public void open() throws IOException {
+        lock.lock();
+        try {
+            close();
+            pureJavaHidDevice = PureJavaHidApi.openDevice(hidDeviceInfo);
+            open = true;
+            pureJavaHidDevice.setInputReportListener(this::receiveReport);
+            pureJavaHidDevice.setDeviceRemovalListener(source -> {
+                log.info("removed: {}", source);
+                open = false;
+                Consumer<HidDevice> listener = removalListener;
+                if (listener != null) {
+                    listener.accept(this);
+                }
             });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (pureJavaHidDevice != null) {
+                pureJavaHidDevice.setInputReportListener(null);
+                pureJavaHidDevice.close();
+                pureJavaHidDevice = null;
+                open = false;
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
-    public synchronized void open() throws IOException {
-        close();
-        pureJavaHidDevice = PureJavaHidApi.openDevice(hidDeviceInfo);
-        open = true;
-        pureJavaHidDevice.setInputReportListener((source, reportID, reportData, reportLength) -> {
-            log.info("source={}, reportID={}, reportData={}, reportLength={}", source, reportID, reportData, reportLength);
-        });
-        pureJavaHidDevice.setDeviceRemovalListener(source -> {
-            log.info("removed: {}", source);
-            open = false;
-        });
+    public long getReportCount() {
+        lock.lock();
+        try {
+            return commandEncoder == null ? 0 : commandEncoder.getReportCount();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-    public synchronized void close() {
-        if (pureJavaHidDevice != null) {
-            pureJavaHidDevice.setInputReportListener(null);
-            pureJavaHidDevice.close();
-            open = false;
+    public PrinterStatus getStatus() throws IOException {
+        lock.lock();
+        try {
+            CommandEncoder commandEncoder = getCommandEncoder();
+            commandEncoder.requestStatus();
+            commandEncoder.flush();
+            return statusMonitor.readStatus();
+        } finally {
+            lock.unlock();
         }
     }
 
-    private void printEmptyLines(int count, ByteArrayOutputStream byteArrayOutputStream) throws IOException {
-        byteArrayOutputStream.write(new byte[]{CMD_ESC, CMD_D, 0});
-        IntStream.range(0, count).forEach(value -> byteArrayOutputStream.write(CMD_SYN));
+    /**
+     * Get status of the last reply, e.g. for monitoring. The printer is not asked.
+     *
+     * @return last received status, {@link PrinterStatus#UNKNOWN} before the first reply
+     */
+    public PrinterStatus getLastStatus() {
+        return statusMonitor.getLastStatus();
     }
 
-    private void cutTape(ByteArrayOutputStream byteArrayOutputStream) throws IOException {
-        byteArrayOutputStream.write(new byte[]{CMD_ESC, CMD_E});
+    @Override
+    public boolean isOpen() {
+        return open;
     }
 
-    private void sentStatusCommand() {
-        if (pureJavaHidDevice != null) {
-            var command = new byte[]{CMD_ESC, CMD_A};
-            pureJavaHidDevice.setOutputReport((byte) 0, command, command.length);
-        }
+    @Override
+    public void setRemovalListener(Consumer<HidDevice> listener) {
+        removalListener = listener;
     }
 
-    private List<byte[]> divideArray(byte[] source, int chunkSize) {
+    private CommandEncoder getCommandEncoder() throws IOException {
+        if (pureJavaHidDevice == null || !open) {
+            throw new IOException("Connection is not open! serialNumber=" + getSerialNumber());
+        }
+        if (commandEncoder == null) {
+            commandEncoder = new CommandEncoder(printer, this::sendReport, options.isCompactEncoding(),
+                    options.isFlowControl() ? statusMonitor : null, options.getStatusInterval());
+        }
+        commandEncoder.reset();
+        statusMonitor.clear();
+        return commandEncoder;
+    }
 
-        List<byte[]> result = new ArrayList<byte[]>();
-        int start = 0;
-        while (start < source.length) {
-            int end = Math.min(source.length, start + chunkSize);
-            result.add(Arrays.copyOfRange(source, start, end));
-            start += chunkSize;
+    private void sendReport(byte[] report, int length) throws IOException {
+        if (pureJavaHidDevice.setOutputReport((byte) 0, report, length) < 0) {
+            throw new IOException("Could not send report! serialNumber=" + getSerialNumber());
         }
+    }
 
-        return result;
+    private void receiveReport(io.github.jna4usb.purejavahidapi.HidDevice source, byte reportId, byte[] reportData,
+                               int reportLength) {
+        log.trace("Received input report. serialNumber={}, reportId={}, reportLength={}", getSerialNumber(),
+                reportId, reportLength);
+        statusMonitor.accept(reportData, reportLength);
     }
 }
@@ -21,17 +21,44 @@ import de.piobyte.dymoprint.service.hid.HidService;
 
 import io.github.jna4usb.purejavahidapi.HidDeviceInfo;
 import io.github.jna4usb.purejavahidapi.PureJavaHidApi;
+import lombok.NonNull;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+/**
+ * USB printers found by purejavahidapi. Creating the service is cheap: JNA and the native HID backend are only
+ * loaded by the first scan, so code paths which never look up a printer (e.g. encoding jobs) do not pay for them.
+ */
 public class PureJavaHidApiService implements HidService {
 
     private final List<PrinterConfiguration> printerConfigurations;
+    private final DeviceOptions options;
 
     public PureJavaHidApiService(List<PrinterConfiguration> printerConfigurations) {
+        this(printerConfigurations, false);
+    }
+
+    /**
+     * Create service.
+     *
+     * @param printerConfigurations configurations of supported printers
+     * @param compactEncoding use compact encoding of blank lines, see {@link CommandEncoder}
+     */
+    public PureJavaHidApiService(List<PrinterConfiguration> printerConfigurations, boolean compactEncoding) {
+        this(printerConfigurations, DeviceOptions.builder().compactEncoding(compactEncoding).build());
+    }
+
+    /**
+     * Create service.
+     *
+     * @param printerConfigurations configurations of supported printers
+     * @param options settings of the created devices
+     */
+    public PureJavaHidApiService(List<PrinterConfiguration> printerConfigurations, @NonNull DeviceOptions options) {
         this.printerConfigurations = printerConfigurations;
+        this.options = options;
     }
 
     @Override
@@ -54,7 +81,7 @@ public class PureJavaHidApiService implements HidService {
 
     private HidDevice map(HidDeviceInfo hidDeviceInfo) {
         PrinterConfiguration printer = findPrinterMatch(hidDeviceInfo).orElse(null);
-        return new PureJavaHidApiDevice(hidDeviceInfo, printer);
+        return new PureJavaHidApiDevice(hidDeviceInfo, printer, options);
     }
 
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.impl;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+
+@Value
+@Builder
+public class RegistryStatistics {
+    /**
+     * Lookups answered from the registry.
+     */
+    long hits;
+    /**
+     * Lookups which required a device scan.
+     */
+    long misses;
+    /**
+     * Number of device scans.
+     */
+    long refreshes;
+    /**
+     * Duration of the last device scan.
+     */
+    Duration lastRefreshTime;
+    /**
+     * Duration of all device scans.
+     */
+    Duration totalRefreshTime;
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.impl;
+
+import de.piobyte.dymoprint.service.hid.PrinterStatus;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the status replies received as HID input reports. Every status request is answered by one input
+ * report, so replies are handed out in the order they arrived.
+ */
+class StatusMonitor implements StatusReader {
+
+    private final BlockingQueue<PrinterStatus> replies = new LinkedBlockingQueue<>();
+    private final long timeoutNanos;
+    private volatile PrinterStatus lastStatus = PrinterStatus.UNKNOWN;
+
+    StatusMonitor(Duration timeout) {
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * Receive input report, called by the HID reader thread.
+     *
+     * @param report input report
+     * @param length number of valid bytes
+     */
+    void accept(byte[] report, int length) {
+        PrinterStatus status = PrinterStatus.parse(report, length);
+        lastStatus = status;
+        replies.offer(status);
+    }
+
+    /**
+     * Drop replies of earlier requests, e.g. before a new print job.
+     */
+    void clear() {
+        replies.clear();
+    }
+
+    PrinterStatus getLastStatus() {
+        return lastStatus;
+    }
+
+    @Override
+    public PrinterStatus readStatus() throws IOException {
+        try {
+            PrinterStatus status = replies.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+            if (status == null) {
+                throw new IOException("No reply to status request!");
+            }
+            return status;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for printer status!");
+        }
+    }
+}
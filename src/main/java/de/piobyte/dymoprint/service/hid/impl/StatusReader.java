@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.impl;
+
+import de.piobyte.dymoprint.service.hid.PrinterStatus;
+
+import java.io.IOException;
+
+/**
+ * Source of replies to status requests ({@code ESC A}).
+ */
+@FunctionalInterface
+public interface StatusReader {
+
+    /**
+     * Wait for the reply to the last status request.
+     *
+     * @return printer status
+     * @throws IOException no reply or communication problem
+     */
+    PrinterStatus readStatus() throws IOException;
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.sim;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Decodes the ESC/SYN command stream sent to a printer and assembles the printed labels.
+ * <p>
+ * A label starts with the first line containing data ({@code ESC D n} with {@code n > 0}). Empty lines
+ * ({@code ESC D 0}) within a label are kept, a label ends with a cut command or with the empty lines of the left
+ * margin. Instances are not thread-safe.
+ * <p>
+ * Blank lines sent as empty lines (compact encoding, see
+ * {@link de.piobyte.dymoprint.service.hid.impl.CommandEncoder}) cannot be told apart from tape feed: blank lines at
+ * the start and the end of such a label are not part of the decoded label, and a run of blank lines as long as the
+ * left margin ends the label.
+ */
+public class CommandDecoder {
+
+    private static final byte ESC = 0x1B;
+    private static final byte SYN = 0x16;
+
+    private final PrinterConfiguration printer;
+    private final Consumer<SimulatedLabel> labelConsumer;
+    private final ByteArrayOutputStream label = new ByteArrayOutputStream();
+    private State state = State.COMMAND;
+    private byte command;
+    private Tape tape = Tape.D1_12_MM;
+    private int color;
+    private int bytesPerLine;
+    private byte[] line = new byte[0];
+    private int linePosition;
+    private int labelBytesPerLine;
+    private int pendingEmptyLines;
+    private long lineCount;
+    private long statusRequests;
+
+    /**
+     * Create decoder.
+     *
+     * @param printer configuration of the simulated printer
+     * @param labelConsumer receives every completed label
+     */
+    public CommandDecoder(PrinterConfiguration printer, Consumer<SimulatedLabel> labelConsumer) {
+        this.printer = printer;
+        this.labelConsumer = labelConsumer;
+    }
+
+    /**
+     * Decode part of the command stream, e.g. a HID report.
+     *
+     * @param data command bytes
+     * @param length number of valid bytes
+     * @return number of tape lines fed by the decoded commands
+     * @throws IOException invalid command
+     */
+    public int accept(byte[] data, int length) throws IOException {
+        long linesBefore = lineCount;
+        for (int i = 0; i < length; i++) {
+            byte value = data[i];
+            switch (state) {
+                case COMMAND:
+                    if (value == ESC) {
+                        state = State.ESCAPE;
+                    } else if (value == SYN) {
+                        startLine();
+                    } else {
+                        throw new IOException("Invalid command! value=" + value);
+                    }
+                    break;
+                case ESCAPE:
+                    command = value;
+                    state = executeCommand();
+                    break;
+                case ARGUMENT:
+                    state = State.COMMAND;
+                    executeCommand(value & 0xFF);
+                    break;
+                case LINE:
+                    line[linePosition++] = value;
+                    if (linePosition == bytesPerLine) {
+                        state = State.COMMAND;
+                        contentLine();
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown state! state=" + state);
+            }
+        }
+        return (int) (lineCount - linesBefore);
+    }
+
+    /**
+     * Get tape of the last tape settings.
+     *
+     * @return tape
+     */
+    public Tape getTape() {
+        return tape;
+    }
+
+    public int getColor() {
+        return color;
+    }
+
+    /**
+     * Get number of fed tape lines including empty lines.
+     *
+     * @return line count
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Get number of received status requests ({@code ESC A}).
+     *
+     * @return request count
+     */
+    public long getStatusRequests() {
+        return statusRequests;
+    }
+
+    private State executeCommand() throws IOException {
+        switch (command) {
+            case 'A':
+                statusRequests++;
+                return State.COMMAND;
+            case 'E':
+                finishLabel();
+                return State.COMMAND;
+            case 'B':
+            case 'C':
+            case 'D':
+                return State.ARGUMENT;
+            default:
+                throw new IOException("Unknown command! command=ESC " + command);
+        }
+    }
+
+    private void executeCommand(int argument) throws IOException {
+        switch (command) {
+            case 'B':
+                tape = toTape(argument);
+                break;
+            case 'C':
+                color = argument;
+                break;
+            case 'D':
+                bytesPerLine = argument;
+                if (line.length < bytesPerLine) {
+                    line = new byte[bytesPerLine];
+                }
+                break;
+            default:
+                throw new IllegalStateException("Command without argument! command=ESC " + command);
+        }
+    }
+
+    private void startLine() {
+        lineCount++;
+        if (bytesPerLine == 0) {
+            emptyLine();
+        } else {
+            linePosition = 0;
+            state = State.LINE;
+        }
+    }
+
+    private void emptyLine() {
+        if (label.size() == 0) {
+            // leading lines
+            return;
+        }
+        pendingEmptyLines++;
+        if (pendingEmptyLines >= printer.getLeftMargin()) {
+            finishLabel();
+        }
+    }
+
+    private void contentLine() throws IOException {
+        if (label.size() == 0) {
+            Integer tapeBytesPerLine = printer.getSupportedTapes().get(tape);
+            if (tapeBytesPerLine == null) {
+                throw new IOException("Tape is not supported! tape=" + tape);
+            }
+            labelBytesPerLine = tapeBytesPerLine;
+        }
+        if (bytesPerLine > labelBytesPerLine) {
+            throw new IOException("Line is longer than the tape! bytesPerLine=" + bytesPerLine + ", tape=" + tape);
+        }
+        byte[] empty = new byte[labelBytesPerLine];
+        for (; pendingEmptyLines > 0; pendingEmptyLines--) {
+            label.write(empty, 0, labelBytesPerLine);
+        }
+        label.write(line, 0, bytesPerLine);
+        // shorter lines are filled up at the bottom
+        label.write(empty, 0, labelBytesPerLine - bytesPerLine);
+    }
+
+    private void finishLabel() {
+        if (label.size() > 0) {
+            labelConsumer.accept(new SimulatedLabel(tape, label.toByteArray(), labelBytesPerLine));
+        }
+        label.reset();
+        pendingEmptyLines = 0;
+    }
+
+    private static Tape toTape(int height) throws IOException {
+        switch (height) {
+            case 0:
+                return Tape.D1_12_MM;
+            case 1:
+                return Tape.D1_9_MM;
+            case 2:
+                return Tape.D1_6_MM;
+            default:
+                throw new IOException("Unknown tape height! height=" + height);
+        }
+    }
+
+    private enum State {
+        COMMAND, ESCAPE, ARGUMENT, LINE
+    }
+}
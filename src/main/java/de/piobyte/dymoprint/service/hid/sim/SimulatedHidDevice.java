@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.sim;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.service.hid.EncodedLabel;
+import de.piobyte.dymoprint.service.hid.HidDevice;
+import de.piobyte.dymoprint.service.hid.LabelSource;
+import de.piobyte.dymoprint.service.hid.PrinterStatus;
+import de.piobyte.dymoprint.service.hid.impl.CommandEncoder;
+
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Printer without hardware. The device encodes labels like a
+ * {@link de.piobyte.dymoprint.service.hid.impl.PureJavaHidApiDevice}, decodes the received HID reports and keeps
+ * the printed labels.
+ * <p>
+ * Every report takes the configured report latency. Fed tape lines are printed at the print speed of the tape;
+ * once the printer buffer is full, sending waits for the print head. With flow control the printer answers status
+ * requests instead: {@code BUSY} while the buffer is full, {@code TAPE_OUT} after {@link #setTapeOut(boolean)}.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class SimulatedHidDevice implements HidDevice {
+
+    private static final long MIN_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int STATUS_INTERVAL = 16;
+
+    @ToString.Include
+    private final String serialNumber;
+    private final PrinterConfiguration printer;
+    private final SimulationSettings settings;
+    private final Deque<SimulatedLabel> labels = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean open;
+    private volatile boolean attached = true;
+    private volatile boolean tapeOut;
+    private volatile Consumer<HidDevice> removalListener;
+    private CommandEncoder commandEncoder;
+    private CommandDecoder commandDecoder;
+    private long hostClock;
+    private long printClock;
+    private long labelCount;
+    private long reportCount;
+
+    public SimulatedHidDevice(@NonNull String serialNumber, @NonNull PrinterConfiguration printer,
+                              @NonNull SimulationSettings settings) {
+        this.serialNumber = serialNumber;
+        this.printer = printer;
+        this.settings = settings;
+    }
+
+    @Override
+    public String getSerialNumber() {
+        return serialNumber;
+    }
+
+    @Override
+    public PrinterConfiguration getPrinterConfiguration() {
+        return printer;
+    }
+
+    @Override
+    public String getPath() {
+        return "simulated:" + serialNumber;
+    }
+
+    @Override
+    public void open() throws IOException {
+        lock.lock();
+        try {
+            if (!attached) {
+                throw new IOException("Device is not connected! serialNumber=" + serialNumber);
+            }
+            commandDecoder = new CommandDecoder(printer, this::receive);
+            commandEncoder = new CommandEncoder(printer, this::sendReport, settings.isCompactEncoding(),
+                    settings.isFlowControl() ? this::replyStatus : null, STATUS_INTERVAL);
+            open = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            open = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void setRemovalListener(Consumer<HidDevice> listener) {
+        removalListener = listener;
+    }
+
+    @Override
+    public void write(Tape tape, byte[] bytes) throws IOException {
+        lock.lock();
+        try {
+            getCommandEncoder().writeLabel(tape, bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public EncodedLabel encode(Tape tape, byte[] bytes) {
+        return new EncodedLabel(tape, CommandEncoder.encode(printer, tape, bytes, settings.isCompactEncoding()));
+    }
+
+    @Override
+    public void write(EncodedLabel label) throws IOException {
+        lock.lock();
+        try {
+            getCommandEncoder().write(label.getData());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void write(Tape tape, LabelSource labelSource) throws IOException {
+        lock.lock();
+        try {
+            getCommandEncoder().writeLabel(tape, labelSource);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void write(Tape tape, Iterator<byte[]> labels) throws IOException {
+        lock.lock();
+        try {
+            getCommandEncoder().writeLabels(tape, labels);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public PrinterStatus getStatus() throws IOException {
+        lock.lock();
+        try {
+            CommandEncoder commandEncoder = getCommandEncoder();
+            commandEncoder.requestStatus();
+            commandEncoder.flush();
+            return replyStatus();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Simulate running out of tape. Status replies report {@link PrinterStatus#TAPE_OUT}.
+     *
+     * @param tapeOut tape is missing
+     */
+    public void setTapeOut(boolean tapeOut) {
+        this.tapeOut = tapeOut;
+    }
+
+    /**
+     * Get number of status requests received since the connection was opened.
+     *
+     * @return request count
+     */
+    public long getStatusRequests() {
+        lock.lock();
+        try {
+            return commandDecoder == null ? 0 : commandDecoder.getStatusRequests();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Simulate unplugging the printer. The connection is closed and the removal listener is notified.
+     */
+    public void detach() {
+        attached = false;
+        open = false;
+        Consumer<HidDevice> listener = removalListener;
+        if (listener != null) {
+            listener.accept(this);
+        }
+    }
+
+    /**
+     * Simulate plugging the printer in again.
+     */
+    public void attach() {
+        attached = true;
+    }
+
+    public boolean isAttached() {
+        return attached;
+    }
+
+    /**
+     * Get the most recent labels, see {@link SimulationSettings#getRetainedLabels()}.
+     *
+     * @return labels in print order
+     */
+    public List<SimulatedLabel> getLabels() {
+        lock.lock();
+        try {
+            return new ArrayList<>(labels);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get number of all printed labels.
+     *
+     * @return label count
+     */
+    public long getLabelCount() {
+        lock.lock();
+        try {
+            return labelCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getReportCount() {
+        lock.lock();
+        try {
+            return reportCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CommandEncoder getCommandEncoder() throws IOException {
+        if (!open) {
+            throw new IOException("Connection is not open! serialNumber=" + serialNumber);
+        }
+        commandEncoder.reset();
+        return commandEncoder;
+    }
+
+    private void sendReport(byte[] report, int length) throws IOException {
+        if (!open) {
+            throw new IOException("Could not send report! serialNumber=" + serialNumber);
+        }
+        reportCount++;
+        int lines = commandDecoder.accept(report, length);
+        if (settings.getTimeScale() > 0) {
+            pace(lines);
+        }
+    }
+
+    private void pace(int lines) throws IOException {
+        long now = System.nanoTime();
+        hostClock = Math.max(now, hostClock) + scale(settings.getReportLatency().toNanos());
+
+        long lineNanos = scale(TimeUnit.SECONDS.toNanos(1) / settings.getPrintSpeed().get(commandDecoder.getTape()));
+        printClock = Math.max(hostClock, printClock) + lines * lineNanos;
+
+        // with flow control the host waits for the buffer by polling the status
+        long waitUntil = settings.isFlowControl()
+                ? hostClock
+                : Math.max(hostClock, printClock - settings.getBufferLines() * lineNanos);
+        sleepUntil(now, waitUntil);
+    }
+
+    private PrinterStatus replyStatus() throws IOException {
+        if (tapeOut) {
+            return PrinterStatus.TAPE_OUT;
+        }
+        if (settings.getTimeScale() <= 0) {
+            return PrinterStatus.READY;
+        }
+        // the reply is an input report
+        long now = System.nanoTime();
+        hostClock = Math.max(now, hostClock) + scale(settings.getReportLatency().toNanos());
+        sleepUntil(now, hostClock);
+
+        long lineNanos = scale(TimeUnit.SECONDS.toNanos(1) / settings.getPrintSpeed().get(commandDecoder.getTape()));
+        long bufferedLines = (printClock - hostClock) / Math.max(lineNanos, 1);
+        return bufferedLines >= settings.getBufferLines() ? PrinterStatus.BUSY : PrinterStatus.READY;
+    }
+
+    private void sleepUntil(long now, long until) throws IOException {
+        long waitNanos = until - now;
+        if (waitNanos >= MIN_SLEEP_NANOS) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while sending report!");
+            }
+        }
+    }
+
+    private long scale(long nanos) {
+        return (long) (nanos * settings.getTimeScale());
+    }
+
+    private void receive(SimulatedLabel label) {
+        labelCount++;
+        labels.addLast(label);
+        while (labels.size() > settings.getRetainedLabels()) {
+            labels.removeFirst();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.sim;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.service.hid.HidDevice;
+import de.piobyte.dymoprint.service.hid.HidService;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * HID backend with simulated printers, e.g. for load tests without hardware:
+ * <pre>
+ * SimulatedHidService hidService = SimulatedHidService.create(4, new LabelManagerPnPConfiguration(),
+ *         SimulationSettings.defaults());
+ * PrintService printService = new PrintService(hidService);
+ * </pre>
+ */
+public class SimulatedHidService implements HidService {
+
+    private final List<SimulatedHidDevice> devices = new CopyOnWriteArrayList<>();
+
+    public SimulatedHidService(@NonNull List<SimulatedHidDevice> devices) {
+        this.devices.addAll(devices);
+    }
+
+    /**
+     * Create backend with identical printers named {@code SIM-0001}, {@code SIM-0002}, ...
+     *
+     * @param count number of printers
+     * @param printer printer configuration
+     * @param settings timing of the printers
+     * @return backend
+     */
+    public static SimulatedHidService create(int count, @NonNull PrinterConfiguration printer,
+                                             @NonNull SimulationSettings settings) {
+        List<SimulatedHidDevice> devices = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            devices.add(new SimulatedHidDevice(String.format("SIM-%04d", i), printer, settings));
+        }
+        return new SimulatedHidService(devices);
+    }
+
+    /**
+     * Get all devices, including detached ones.
+     *
+     * @return devices
+     */
+    public List<SimulatedHidDevice> getDevices() {
+        return List.copyOf(devices);
+    }
+
+    public void addDevice(@NonNull SimulatedHidDevice device) {
+        devices.add(device);
+    }
+
+    @Override
+    public List<HidDevice> listPrinterDevices() {
+        return devices.stream()
+                .filter(SimulatedHidDevice::isAttached)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.sim;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+
+/**
+ * Label received by a {@link SimulatedHidDevice}.
+ */
+@Value
+public class SimulatedLabel {
+    @NonNull
+    Tape tape;
+    /**
+     * Received tape lines in the format of {@link de.piobyte.dymoprint.service.print.LabelConverter}, the first
+     * line is the rightmost column of the label.
+     */
+    @NonNull
+    byte[] data;
+    int bytesPerLine;
+
+    public int getWidth() {
+        return data.length / bytesPerLine;
+    }
+
+    public int getHeight() {
+        return bytesPerLine * Byte.SIZE;
+    }
+
+    /**
+     * Render the label as it would be printed.
+     *
+     * @return black and white image
+     */
+    public BufferedImage toImage() {
+        int width = getWidth();
+        BufferedImage image = new BufferedImage(Math.max(width, 1), getHeight(), BufferedImage.TYPE_BYTE_BINARY);
+        WritableRaster raster = image.getRaster();
+        for (int line = 0; line < width; line++) {
+            int x = width - 1 - line;
+            for (int y = 0; y < getHeight(); y++) {
+                boolean ink = (data[line * bytesPerLine + y / Byte.SIZE] & 0x80 >>> y % Byte.SIZE) != 0;
+                raster.setSample(x, y, 0, ink ? 0 : 1);
+            }
+        }
+        return image;
+    }
+}
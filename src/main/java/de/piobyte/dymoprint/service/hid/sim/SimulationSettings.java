@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.sim;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Timing of a {@link SimulatedHidDevice}. The default values are rough assumptions for a LabelManager PnP and
+ * should be replaced by measurements when exact numbers matter.
+ */
+@Value
+@Builder
+public class SimulationSettings {
+
+    /**
+     * Transfer time of one HID output report. Interrupt transfers of full-speed USB devices are polled once per
+     * frame, i.e. every millisecond.
+     */
+    @Builder.Default
+    Duration reportLatency = Duration.ofMillis(1);
+
+    /**
+     * Printed tape lines per second by tape.
+     */
+    @Builder.Default
+    Map<Tape, Integer> printSpeed = Map.of(
+            Tape.D1_6_MM, 110,
+            Tape.D1_9_MM, 100,
+            Tape.D1_12_MM, 90);
+
+    /**
+     * Number of lines the printer buffers before the host has to wait for the print head.
+     */
+    @Builder.Default
+    int bufferLines = 256;
+
+    /**
+     * Factor applied to all simulated times, 0 disables waiting.
+     */
+    @Builder.Default
+    double timeScale = 1;
+
+    /**
+     * Encode labels like a {@link de.piobyte.dymoprint.service.hid.impl.PureJavaHidApiService} with compact
+     * encoding of blank lines.
+     */
+    boolean compactEncoding;
+
+    /**
+     * Use status requests for flow control like a {@link de.piobyte.dymoprint.service.hid.impl.PureJavaHidApiService}
+     * with {@link de.piobyte.dymoprint.service.hid.impl.DeviceOptions#isFlowControl()}. The simulated printer then
+     * accepts reports without waiting and reports {@code BUSY} while its buffer is full.
+     */
+    boolean flowControl;
+
+    /**
+     * Number of most recent labels kept by a device.
+     */
+    @Builder.Default
+    int retainedLabels = 100;
+
+    /**
+     * Get default settings.
+     *
+     * @return settings
+     */
+    public static SimulationSettings defaults() {
+        return SimulationSettings.builder().build();
+    }
+
+    /**
+     * Get settings without any waiting, e.g. for functional tests.
+     *
+     * @return settings
+     */
+    public static SimulationSettings instant() {
+        return SimulationSettings.builder().timeScale(0).build();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import java.io.IOException;
+
+/**
+ * Communication problem during a batch. The labels before the failed one have been sent completely, see
+ * {@link #getResult()}.
+ */
+public class BatchPrintException extends IOException {
+
+    private final transient BatchPrintResult result;
+
+    public BatchPrintException(final String message, final IOException cause, final BatchPrintResult result) {
+        super(message, cause);
+        this.result = result;
+    }
+
+    /**
+     * Get the labels sent before the failure.
+     *
+     * @return result covering the sent labels only
+     */
+    public BatchPrintResult getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.List;
+
+@Value
+@Builder
+public class BatchPrintResult {
+    String serialNumber;
+    Tape tape;
+    /**
+     * Time of every label from the start of its transfer to the start of the next one.
+     */
+    List<Duration> labelTimes;
+    /**
+     * Size of all label bit-matrices.
+     */
+    long labelBytes;
+    /**
+     * Time of the whole batch including device open and close.
+     */
+    Duration batchTime;
+
+    public int getLabelCount() {
+        return labelTimes.size();
+    }
+
+    /**
+     * Throughput of the whole batch.
+     *
+     * @return labels per second
+     */
+    public double getLabelsPerSecond() {
+        return perSecond(getLabelCount(), batchTime);
+    }
+
+    /**
+     * Throughput of a single label.
+     *
+     * @param index position of label in batch
+     * @return labels per second
+     */
+    public double getLabelsPerSecond(int index) {
+        return perSecond(1, labelTimes.get(index));
+    }
+
+    private static double perSecond(long count, Duration duration) {
+        return duration.isZero() ? 0 : count * 1_000_000_000d / duration.toNanos();
+    }
+}
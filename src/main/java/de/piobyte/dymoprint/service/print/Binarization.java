@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+/**
+ * Conversion of color and grayscale images into black and white labels. Images which are already black and white
+ * are not converted.
+ */
+public enum Binarization {
+
+    /**
+     * Let AWT draw the image into a black and white image (nearest color).
+     */
+    AWT(true),
+
+    /**
+     * Pixels darker than 50% gray are black.
+     */
+    THRESHOLD(true),
+
+    /**
+     * Pixels darker than a threshold computed from the histogram of the image (Otsu's method) are black. Suits
+     * scans and photos of text with low contrast.
+     */
+    OTSU(false),
+
+    /**
+     * Ordered dithering with an 8x8 Bayer matrix. Gray areas become regular patterns, which print well on small
+     * tapes.
+     */
+    BAYER(true),
+
+    /**
+     * Error diffusion dithering (Floyd-Steinberg). Keeps the most detail of photos and logos with gradients.
+     */
+    FLOYD_STEINBERG(false);
+
+    private final boolean columnIndependent;
+
+    Binarization(boolean columnIndependent) {
+        this.columnIndependent = columnIndependent;
+    }
+
+    /**
+     * Check if the color of a pixel depends only on its column and not on other columns, so labels can be
+     * converted in column stripes.
+     */
+    boolean isColumnIndependent() {
+        return columnIndependent;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.util.Arrays;
+
+/**
+ * Binarization of images working on rows of gray values. Every algorithm is a plain loop over arrays, so the JIT
+ * can unroll and vectorize it.
+ * <p>
+ * Gray values are computed from the pixels in sRGB (ITU-R BT.601 weights), transparent pixels are composited over
+ * white. The gray values of {@link BufferedImage#TYPE_BYTE_GRAY} images are used as they are.
+ */
+final class Binarizer {
+
+    private static final int WHITE = 255;
+    private static final int HALF = 128;
+    private static final int[] BAYER = {
+            0, 32, 8, 40, 2, 34, 10, 42,
+            48, 16, 56, 24, 50, 18, 58, 26,
+            12, 44, 4, 36, 14, 46, 6, 38,
+            60, 28, 52, 20, 62, 30, 54, 22,
+            3, 35, 11, 43, 1, 33, 9, 41,
+            51, 19, 59, 27, 49, 17, 57, 25,
+            15, 47, 7, 39, 13, 45, 5, 37,
+            63, 31, 55, 23, 61, 29, 53, 21
+    };
+
+    private Binarizer() {
+    }
+
+    /**
+     * Convert the columns {@code [fromX, toX)} of an image into a black and white image.
+     *
+     * @param image image of label
+     * @param fromX first column (inclusive)
+     * @param toX last column (exclusive)
+     * @param binarization algorithm, not {@link Binarization#AWT}
+     * @return image of type {@link BufferedImage#TYPE_BYTE_BINARY}
+     */
+    static BufferedImage binarize(BufferedImage image, int fromX, int toX, Binarization binarization) {
+        int width = toX - fromX;
+        int height = image.getHeight();
+        byte[] gray = gray(image, fromX, width);
+        BufferedImage binaryImage = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        // palette index 0 is black, so the new image is black and white pixels are set
+        byte[] target = ((DataBufferByte) binaryImage.getRaster().getDataBuffer()).getData();
+        switch (binarization) {
+            case THRESHOLD:
+                threshold(gray, width, height, HALF, target);
+                break;
+            case OTSU:
+                threshold(gray, width, height, otsuThreshold(gray), target);
+                break;
+            case BAYER:
+                bayer(gray, width, height, fromX, target);
+                break;
+            case FLOYD_STEINBERG:
+                floydSteinberg(gray, width, height, target);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported binarization! binarization=" + binarization);
+        }
+        return binaryImage;
+    }
+
+    /**
+     * Get gray values of the image, row by row.
+     */
+    static byte[] gray(BufferedImage image, int fromX, int width) {
+        int height = image.getHeight();
+        byte[] gray = new byte[width * height];
+        Raster raster = image.getRaster();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY:
+                for (int y = 0; y < height; y++) {
+                    byte[] row = (byte[]) raster.getDataElements(fromX, y, width, 1, null);
+                    System.arraycopy(row, 0, gray, y * width, width);
+                }
+                break;
+            case BufferedImage.TYPE_INT_RGB:
+                int[] rgbRow = new int[width];
+                for (int y = 0; y < height; y++) {
+                    raster.getDataElements(fromX, y, width, 1, rgbRow);
+                    opaqueGray(rgbRow, gray, y * width);
+                }
+                break;
+            case BufferedImage.TYPE_INT_ARGB:
+                int[] argbRow = new int[width];
+                for (int y = 0; y < height; y++) {
+                    raster.getDataElements(fromX, y, width, 1, argbRow);
+                    translucentGray(argbRow, gray, y * width);
+                }
+                break;
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+                int[] premultipliedRow = new int[width];
+                for (int y = 0; y < height; y++) {
+                    raster.getDataElements(fromX, y, width, 1, premultipliedRow);
+                    premultipliedGray(premultipliedRow, gray, y * width);
+                }
+                break;
+            default:
+                int[] row = new int[width];
+                for (int y = 0; y < height; y++) {
+                    image.getRGB(fromX, y, width, 1, row, 0, width);
+                    translucentGray(row, gray, y * width);
+                }
+        }
+        return gray;
+    }
+
+    private static void opaqueGray(int[] rgb, byte[] gray, int offset) {
+        for (int i = 0; i < rgb.length; i++) {
+            gray[offset + i] = (byte) luminance(rgb[i]);
+        }
+    }
+
+    private static void premultipliedGray(int[] argb, byte[] gray, int offset) {
+        for (int i = 0; i < argb.length; i++) {
+            // premultiplied colors are already composited over black, adding the transparency composites over white
+            gray[offset + i] = (byte) Math.min(WHITE, luminance(argb[i]) + WHITE - (argb[i] >>> 24));
+        }
+    }
+
+    private static void translucentGray(int[] argb, byte[] gray, int offset) {
+        for (int i = 0; i < argb.length; i++) {
+            int alpha = argb[i] >>> 24;
+            gray[offset + i] = (byte) (WHITE - ((WHITE - luminance(argb[i])) * alpha + 127) / WHITE);
+        }
+    }
+
+    private static int luminance(int rgb) {
+        return (77 * ((rgb >> 16) & 0xFF) + 150 * ((rgb >> 8) & 0xFF) + 29 * (rgb & 0xFF)) >> 8;
+    }
+
+    private static void threshold(byte[] gray, int width, int height, int threshold, byte[] target) {
+        int stride = (width + 7) >> 3;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int targetRow = y * stride;
+            for (int x = 0; x < width; x++) {
+                if ((gray[row + x] & 0xFF) >= threshold) {
+                    target[targetRow + (x >> 3)] |= 0x80 >>> (x & 7);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the threshold which maximizes the variance between black and white pixels.
+     *
+     * @return smallest gray value of white pixels
+     */
+    static int otsuThreshold(byte[] gray) {
+        long[] histogram = new long[WHITE + 1];
+        for (byte value : gray) {
+            histogram[value & 0xFF]++;
+        }
+        long total = gray.length;
+        long sum = 0;
+        for (int value = 0; value <= WHITE; value++) {
+            sum += value * histogram[value];
+        }
+
+        int threshold = HALF;
+        double maxVariance = 0;
+        long blackCount = 0;
+        long blackSum = 0;
+        for (int value = 0; value < WHITE; value++) {
+            blackCount += histogram[value];
+            blackSum += value * histogram[value];
+            long whiteCount = total - blackCount;
+            if (blackCount == 0 || whiteCount == 0) {
+                continue;
+            }
+            double meanDifference = (double) blackSum / blackCount - (double) (sum - blackSum) / whiteCount;
+            double variance = (double) blackCount * whiteCount * meanDifference * meanDifference;
+            if (variance > maxVariance) {
+                maxVariance = variance;
+                threshold = value + 1;
+            }
+        }
+        return threshold;
+    }
+
+    private static void bayer(byte[] gray, int width, int height, int originX, byte[] target) {
+        int stride = (width + 7) >> 3;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int targetRow = y * stride;
+            int matrixRow = (y & 7) << 3;
+            for (int x = 0; x < width; x++) {
+                // thresholds 2, 6, ..., 254 spread evenly over the gray values
+                int threshold = BAYER[matrixRow + ((originX + x) & 7)] * 4 + 2;
+                if ((gray[row + x] & 0xFF) >= threshold) {
+                    target[targetRow + (x >> 3)] |= 0x80 >>> (x & 7);
+                }
+            }
+        }
+    }
+
+    private static void floydSteinberg(byte[] gray, int width, int height, byte[] target) {
+        int stride = (width + 7) >> 3;
+        // errors of the current and next row, shifted by one column to avoid bounds checks at the edges
+        int[] errors = new int[width + 2];
+        int[] nextErrors = new int[width + 2];
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int targetRow = y * stride;
+            for (int x = 0; x < width; x++) {
+                int value = (gray[row + x] & 0xFF) + errors[x + 1] / 16;
+                int error;
+                if (value >= HALF) {
+                    target[targetRow + (x >> 3)] |= 0x80 >>> (x & 7);
+                    error = value - WHITE;
+                } else {
+                    error = value;
+                }
+                errors[x + 2] += error * 7;
+                nextErrors[x] += error * 3;
+                nextErrors[x + 1] += error * 5;
+                nextErrors[x + 2] += error;
+            }
+            int[] swap = errors;
+            errors = nextErrors;
+            nextErrors = swap;
+            Arrays.fill(nextErrors, 0);
+        }
+    }
+}
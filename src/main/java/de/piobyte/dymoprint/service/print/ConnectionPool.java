@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.service.hid.HidDevice;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps device connections open between print jobs.
+ * <p>
+ * A connection is opened on first use and closed after the idle timeout. Connections which were closed by the
+ * device (e.g. detached printer) are reopened before the next job. If a retryable job fails on a reused
+ * connection before any report reached the device, the connection is reopened and the job is retried once. Jobs
+ * which failed after reports were sent are not retried, as the printer may have printed part of the label.
+ * <p>
+ * Connections are tracked by serial number. A connection is dropped when it is closed after the idle timeout or
+ * after a failure, or when another device object with the same serial number (e.g. reattached printer) is used.
+ */
+@Slf4j
+class ConnectionPool implements Closeable {
+
+    private final long idleTimeoutNanos;
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final PrintMetrics metrics;
+
+    ConnectionPool(Duration idleTimeout) {
+        this(idleTimeout, PrintMetrics.NONE);
+    }
+
+    ConnectionPool(Duration idleTimeout, PrintMetrics metrics) {
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("Idle timeout must be positive!");
+        }
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.metrics = metrics;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dymo-print-connection-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Execute operation on an open connection.
+     *
+     * @param device printer device
+     * @param operation operation to execute
+     * @param retryable operation can be executed again (e.g. does not consume a stream)
+     * @throws IOException communication problem
+     */
+    void execute(HidDevice device, DeviceOperation operation, boolean retryable) throws IOException {
+        Connection connection = lock(device);
+        try {
+            connection.cancelIdleClose();
+            try {
+                boolean reused = device.isOpen();
+                if (!reused) {
+                    open(device);
+                }
+                long reports = device.getReportCount();
+                try {
+                    operation.execute(device);
+                } catch (IOException e) {
+                    if (!reused || !retryable || device.getReportCount() != reports) {
+                        throw e;
+                    }
+                    log.warn("Reopening connection after failure! serialNumber={}, error={}",
+                            device.getSerialNumber(), e.getMessage());
+                    close(device);
+                    open(device);
+                    operation.execute(device);
+                }
+            } catch (IOException | RuntimeException e) {
+                connection.closeAndRemove();
+                throw e;
+            } finally {
+                if (!connection.removed) {
+                    connection.scheduleIdleClose();
+                }
+            }
+        } finally {
+            connection.lock.unlock();
+        }
+    }
+
+    /**
+     * Get number of tracked connections.
+     *
+     * @return number of connections
+     */
+    int getConnectionCount() {
+        return connections.size();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        connections.values().forEach(Connection::close);
+        connections.clear();
+    }
+
+    private Connection lock(HidDevice device) {
+        String serialNumber = device.getSerialNumber().toUpperCase(Locale.ROOT);
+        while (true) {
+            Connection[] replaced = new Connection[1];
+            Connection connection = connections.compute(serialNumber, (key, existing) -> {
+                if (existing != null && existing.device == device) {
+                    return existing;
+                }
+                replaced[0] = existing;
+                return new Connection(key, device);
+            });
+            if (replaced[0] != null) {
+                log.debug("Replacing connection of reattached device. serialNumber={}", device.getSerialNumber());
+                replaced[0].close();
+            }
+            connection.lock.lock();
+            if (!connection.removed) {
+                return connection;
+            }
+            // closed while waiting for the lock, the next attempt uses a new connection
+            connection.lock.unlock();
+        }
+    }
+
+    private void open(HidDevice device) throws IOException {
+        long start = System.nanoTime();
+        device.open();
+        metrics.recordTime(PrintMetrics.Stage.OPEN, device.getSerialNumber(), null, System.nanoTime() - start);
+    }
+
+    private void close(HidDevice device) {
+        long start = System.nanoTime();
+        device.close();
+        metrics.recordTime(PrintMetrics.Stage.CLOSE, device.getSerialNumber(), null, System.nanoTime() - start);
+    }
+
+    @FunctionalInterface
+    interface DeviceOperation {
+        void execute(HidDevice device) throws IOException;
+    }
+
+    private class Connection {
+        private final String key;
+        private final HidDevice device;
+        private final ReentrantLock lock = new ReentrantLock();
+        private ScheduledFuture<?> idleClose;
+        private boolean removed;
+
+        Connection(String key, HidDevice device) {
+            this.key = key;
+            this.device = device;
+        }
+
+        void cancelIdleClose() {
+            if (idleClose != null) {
+                idleClose.cancel(false);
+                idleClose = null;
+            }
+        }
+
+        void scheduleIdleClose() {
+            if (!scheduler.isShutdown()) {
+                idleClose = scheduler.schedule(this::close, idleTimeoutNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                if (device.isOpen()) {
+                    log.debug("Closing idle connection. serialNumber={}", device.getSerialNumber());
+                }
+                closeAndRemove();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void closeAndRemove() {
+            cancelIdleClose();
+            removed = true;
+            connections.remove(key, this);
+            ConnectionPool.this.close(device);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.service.hid.EncodedLabel;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of encoded labels, bounded by the size of the encoded data. Labels larger than the
+ * cache are not stored.
+ */
+class EncodedLabelCache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<LabelCacheKey, EncodedLabel> labels = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    EncodedLabelCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive! maxBytes=" + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get cached label and count the hit or miss.
+     *
+     * @param key key of label
+     * @return encoded label, null if not cached
+     */
+    synchronized EncodedLabel get(LabelCacheKey key) {
+        EncodedLabel label = labels.get(key);
+        if (label == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return label;
+    }
+
+    /**
+     * Store label and evict least recently used labels until the cache fits its size.
+     *
+     * @param key key of label
+     * @param label encoded label
+     */
+    synchronized void put(LabelCacheKey key, EncodedLabel label) {
+        if (label.getSize() > maxBytes) {
+            return;
+        }
+        EncodedLabel previous = labels.put(key, label);
+        if (previous != null) {
+            bytes -= previous.getSize();
+        }
+        bytes += label.getSize();
+
+        Iterator<Map.Entry<LabelCacheKey, EncodedLabel>> eldest = labels.entrySet().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().getValue().getSize();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    synchronized LabelCacheStatistics getStatistics() {
+        return LabelCacheStatistics.builder()
+                .hits(hits)
+                .misses(misses)
+                .evictions(evictions)
+                .labels(labels.size())
+                .bytes(bytes)
+                .maxBytes(maxBytes)
+                .build();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.service.hid.LabelSource;
+
+import lombok.NonNull;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Label source reading an image in narrow stripes. Only the current stripe is converted into a binary image, so
+ * no full-size copy of the label is created. Binarizations which look at the whole image ({@link Binarization#OTSU},
+ * {@link Binarization#FLOYD_STEINBERG}) are applied per stripe.
+ */
+public class ImageLabelSource implements LabelSource {
+
+    private final LabelConverter labelConverter;
+    private final Binarization binarization;
+    private final BufferedImage label;
+    private final int bytesPerLine;
+    private final boolean packable;
+    private int remainingColumns;
+
+    public ImageLabelSource(@NonNull BufferedImage label) {
+        this(label, Binarization.AWT);
+    }
+
+    /**
+     * Create label source.
+     *
+     * @param label image of label, height must be a multiple of 8
+     * @param binarization conversion of color and grayscale images, e.g. the one configured for the print service
+     */
+    public ImageLabelSource(@NonNull BufferedImage label, @NonNull Binarization binarization) {
+        this.labelConverter = new LabelConverter(binarization);
+        this.binarization = binarization;
+        this.label = label;
+        this.bytesPerLine = LabelConverter.bytesPerLine(label.getHeight());
+        this.packable = LabelConverter.isPackable(label);
+        this.remainingColumns = label.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return label.getHeight();
+    }
+
+    @Override
+    public int readLines(byte[] buffer) {
+        int lines = Math.min(buffer.length / bytesPerLine, remainingColumns);
+        if (lines == 0) {
+            return 0;
+        }
+
+        int fromX = remainingColumns - lines;
+        if (packable) {
+            labelConverter.pack(label, fromX, remainingColumns, buffer, 0);
+        } else if (binarization != Binarization.AWT) {
+            BufferedImage stripe = Binarizer.binarize(label, fromX, remainingColumns, binarization);
+            labelConverter.pack(stripe, 0, lines, buffer, 0);
+        } else {
+            BufferedImage stripe = labelConverter.toBinaryImage(label.getSubimage(fromX, 0, lines, label.getHeight()));
+            labelConverter.pack(stripe, 0, lines, buffer, 0);
+        }
+        remainingColumns = fromX;
+        return lines;
+    }
+}
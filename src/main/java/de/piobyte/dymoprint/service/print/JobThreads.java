@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads which dispatch print jobs.
+ * <p>
+ * This is the Java 11 version, it only creates platform threads. The multi-release JAR contains a Java 21 version
+ * in {@code META-INF/versions/21} which creates virtual threads.
+ */
+final class JobThreads {
+
+    private JobThreads() {
+    }
+
+    /**
+     * Check if virtual threads are supported by the running JVM.
+     *
+     * @return {@code true} on Java 21 and later
+     */
+    static boolean isVirtualAvailable() {
+        return false;
+    }
+
+    /**
+     * Create thread factory.
+     *
+     * @param name thread name
+     * @param virtual create virtual threads if available, daemon platform threads otherwise
+     * @return thread factory
+     */
+    static ThreadFactory factory(String name, boolean virtual) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
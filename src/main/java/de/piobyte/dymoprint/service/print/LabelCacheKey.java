@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+
+import lombok.ToString;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Key of the {@link EncodedLabelCache}: a 128 bit hash of the label raster together with the tape, the printer
+ * configuration and the device type which encoded the label.
+ * <p>
+ * The hash covers the data of the raster's own region (for subimages not the rest of the parent image) and its
+ * layout, so equal keys mean equal pixels unless two rasters collide in both 64 bit lanes.
+ */
+@ToString
+final class LabelCacheKey {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final long SEED_1 = 0x9E3779B97F4A7C15L;
+    private static final long SEED_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_1 = 0xFF51AFD7ED558CCDL;
+    private static final long PRIME_2 = 0xC4CEB9FE1A85EC53L;
+
+    private final long hash1;
+    private final long hash2;
+    private final Tape tape;
+    @ToString.Exclude
+    private final PrinterConfiguration configuration;
+    private final Class<?> deviceType;
+
+    private LabelCacheKey(long hash1, long hash2, Tape tape, PrinterConfiguration configuration,
+                          Class<?> deviceType) {
+        this.hash1 = hash1;
+        this.hash2 = hash2;
+        this.tape = tape;
+        this.configuration = configuration;
+        this.deviceType = deviceType;
+    }
+
+    /**
+     * Create key of label.
+     *
+     * @param label image of label
+     * @param tape installed tape
+     * @param configuration printer configuration, compared by identity
+     * @param deviceType type of device encoding the label
+     * @return cache key
+     */
+    static LabelCacheKey of(BufferedImage label, Tape tape, PrinterConfiguration configuration, Class<?> deviceType) {
+        Hasher hasher = new Hasher();
+        Raster raster = label.getRaster();
+        hasher.add(label.getType());
+        hasher.add(label.getWidth());
+        hasher.add(label.getHeight());
+        hashColorModel(hasher, label.getColorModel());
+        if (!hashRegion(hasher, raster)) {
+            int[] row = new int[label.getWidth()];
+            for (int y = 0; y < label.getHeight(); y++) {
+                hasher.add(label.getRGB(0, y, row.length, 1, row, 0, row.length));
+            }
+        }
+        return new LabelCacheKey(hasher.finish(hasher.hash1), hasher.finish(hasher.hash2), tape, configuration,
+                deviceType);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof LabelCacheKey)) {
+            return false;
+        }
+        LabelCacheKey key = (LabelCacheKey) other;
+        return hash1 == key.hash1 && hash2 == key.hash2 && tape == key.tape
+                && configuration == key.configuration && deviceType == key.deviceType;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash1) * 31 + tape.hashCode();
+    }
+
+    /**
+     * Hash the data elements of the raster's own region row by row, so subimages do not hash the data buffer of
+     * their parent.
+     *
+     * @return false if the layout of the raster is not supported
+     */
+    private static boolean hashRegion(Hasher hasher, Raster raster) {
+        SampleModel sampleModel = raster.getSampleModel();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        if (dataBuffer.getNumBanks() != 1) {
+            return false;
+        }
+        // position of the raster's first pixel in the sample model
+        int x = raster.getMinX() - raster.getSampleModelTranslateX();
+        int y = raster.getMinY() - raster.getSampleModelTranslateY();
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        hasher.add(sampleModel.getClass().hashCode());
+        if (width == 0 || height == 0) {
+            return true;
+        }
+
+        int scanlineStride;
+        int start;
+        int length;
+        if (sampleModel instanceof ComponentSampleModel) {
+            ComponentSampleModel componentSampleModel = (ComponentSampleModel) sampleModel;
+            int[] bandOffsets = componentSampleModel.getBandOffsets();
+            int pixelStride = componentSampleModel.getPixelStride();
+            int minOffset = Arrays.stream(bandOffsets).min().orElse(0);
+            int maxOffset = Arrays.stream(bandOffsets).max().orElse(0);
+            hasher.add(bandOffsets);
+            hasher.add(pixelStride);
+            scanlineStride = componentSampleModel.getScanlineStride();
+            start = x * pixelStride + minOffset;
+            length = (width - 1) * pixelStride + maxOffset - minOffset + 1;
+        } else if (sampleModel instanceof SinglePixelPackedSampleModel) {
+            SinglePixelPackedSampleModel packedSampleModel = (SinglePixelPackedSampleModel) sampleModel;
+            hasher.add(packedSampleModel.getBitMasks());
+            scanlineStride = packedSampleModel.getScanlineStride();
+            start = x;
+            length = width;
+        } else if (sampleModel instanceof MultiPixelPackedSampleModel) {
+            MultiPixelPackedSampleModel packedSampleModel = (MultiPixelPackedSampleModel) sampleModel;
+            int pixelBits = packedSampleModel.getPixelBitStride();
+            int startBit = packedSampleModel.getDataBitOffset() + x * pixelBits;
+            // rows of binary images are hashed in whole bytes: regions must start at a byte and fill their bytes
+            if (dataBuffer.getDataType() != DataBuffer.TYPE_BYTE || startBit % 8 != 0
+                    || width * pixelBits % 8 != 0) {
+                return false;
+            }
+            hasher.add(pixelBits);
+            scanlineStride = packedSampleModel.getScanlineStride();
+            start = startBit / 8;
+            length = width * pixelBits / 8;
+        } else {
+            return false;
+        }
+
+        int offset = dataBuffer.getOffset() + y * scanlineStride + start;
+        if (dataBuffer instanceof DataBufferByte) {
+            byte[] data = ((DataBufferByte) dataBuffer).getData();
+            for (int row = 0; row < height; row++) {
+                hasher.add(data, offset + row * scanlineStride, length);
+            }
+        } else if (dataBuffer instanceof DataBufferInt) {
+            int[] data = ((DataBufferInt) dataBuffer).getData();
+            for (int row = 0; row < height; row++) {
+                hasher.add(data, offset + row * scanlineStride, length);
+            }
+        } else if (dataBuffer instanceof DataBufferUShort) {
+            short[] data = ((DataBufferUShort) dataBuffer).getData();
+            for (int row = 0; row < height; row++) {
+                int rowStart = offset + row * scanlineStride;
+                for (int i = rowStart; i < rowStart + length; i++) {
+                    hasher.add(data[i]);
+                }
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static void hashColorModel(Hasher hasher, ColorModel colorModel) {
+        hasher.add(colorModel.getClass().hashCode());
+        hasher.add(colorModel.getPixelSize());
+        if (colorModel instanceof IndexColorModel) {
+            IndexColorModel indexColorModel = (IndexColorModel) colorModel;
+            int[] palette = new int[indexColorModel.getMapSize()];
+            indexColorModel.getRGBs(palette);
+            hasher.add(palette);
+        }
+    }
+
+    /**
+     * Two independent multiply-rotate lanes over 64 bit words.
+     */
+    private static final class Hasher {
+        private long hash1 = SEED_1;
+        private long hash2 = SEED_2;
+
+        void add(long value) {
+            hash1 = Long.rotateLeft(hash1 ^ value * PRIME_1, 31) * PRIME_2;
+            hash2 = Long.rotateLeft(hash2 ^ value * PRIME_2, 27) * PRIME_1;
+        }
+
+        void add(byte[] data, int from, int length) {
+            add(length);
+            int end = from + length;
+            int i = from;
+            for (; i + Long.BYTES <= end; i += Long.BYTES) {
+                add((long) LONGS.get(data, i));
+            }
+            for (; i < end; i++) {
+                add(data[i]);
+            }
+        }
+
+        void add(int[] data) {
+            add(data, 0, data.length);
+        }
+
+        void add(int[] data, int from, int length) {
+            add(length);
+            int end = from + length;
+            int i = from;
+            for (; i + 1 < end; i += 2) {
+                add((long) data[i] << 32 | data[i + 1] & 0xFFFFFFFFL);
+            }
+            if (i < end) {
+                add(data[i]);
+            }
+        }
+
+        long finish(long hash) {
+            hash ^= hash >>> 33;
+            hash *= PRIME_1;
+            hash ^= hash >>> 33;
+            hash *= PRIME_2;
+            return hash ^ hash >>> 33;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class LabelCacheStatistics {
+    /**
+     * Labels found in the cache.
+     */
+    long hits;
+    /**
+     * Labels which had to be converted and encoded.
+     */
+    long misses;
+    /**
+     * Labels removed to keep the cache within its size.
+     */
+    long evictions;
+    /**
+     * Number of cached labels.
+     */
+    int labels;
+    /**
+     * Size of cached labels in bytes.
+     */
+    long bytes;
+    /**
+     * Maximum size of cached labels in bytes.
+     */
+    long maxBytes;
+}
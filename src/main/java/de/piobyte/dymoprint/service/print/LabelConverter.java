@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import lombok.NonNull;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts label images into the bit-matrix expected by the printer.
+ * <p>
+ * The bit-matrix contains one tape line per image column, starting with the rightmost column. Every line consists
+ * of {@code height / 8} bytes from top to bottom, the most significant bit being the topmost pixel. A set bit
+ * means ink.
+ * <p>
+ * A converter created with a {@link ForkJoinPool} converts labels of at least the parallel width in column stripes
+ * on the pool. Every stripe is converted on its own and packed into its region of the bit-matrix, so the result is
+ * the same as of a sequential conversion.
+ * <p>
+ * Color and grayscale images are converted to black and white as configured by the {@link Binarization}.
+ */
+public class LabelConverter {
+
+    private final static int BITS_IN_BYTE = 8;
+    private final static int BLACK = 0xFF000000;
+    private final static int WHITE = 0xFFFFFFFF;
+    private final static int MIN_STRIPE_WIDTH = 256;
+    private final static int STRIPES_PER_THREAD = 4;
+
+    private final Binarization binarization;
+    private final ForkJoinPool pool;
+    private final int parallelWidth;
+
+    /**
+     * Create sequential converter using {@link Binarization#AWT}.
+     */
+    public LabelConverter() {
+        this(Binarization.AWT);
+    }
+
+    /**
+     * Create sequential converter.
+     *
+     * @param binarization conversion of color and grayscale images
+     */
+    public LabelConverter(@NonNull Binarization binarization) {
+        this.binarization = binarization;
+        this.pool = null;
+        this.parallelWidth = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Create converter which converts wide labels in parallel using {@link Binarization#AWT}.
+     *
+     * @param pool pool executing the stripes
+     * @param parallelWidth minimum label width in pixel for a parallel conversion
+     */
+    public LabelConverter(@NonNull ForkJoinPool pool, int parallelWidth) {
+        this(Binarization.AWT, pool, parallelWidth);
+    }
+
+    /**
+     * Create converter which converts wide labels in parallel. Labels using a {@link Binarization} which looks at
+     * the whole image ({@link Binarization#OTSU}, {@link Binarization#FLOYD_STEINBERG}) are converted sequentially.
+     *
+     * @param binarization conversion of color and grayscale images
+     * @param pool pool executing the stripes
+     * @param parallelWidth minimum label width in pixel for a parallel conversion
+     */
+    public LabelConverter(@NonNull Binarization binarization, @NonNull ForkJoinPool pool, int parallelWidth) {
+        if (parallelWidth < 0) {
+            throw new IllegalArgumentException("Parallel width must not be negative! parallelWidth=" + parallelWidth);
+        }
+        this.binarization = binarization;
+        this.pool = binarization.isColumnIndependent() ? pool : null;
+        this.parallelWidth = parallelWidth;
+    }
+
+    /**
+     * Convert label image into bit-matrix.
+     *
+     * @param label image of label, height must be a multiple of 8
+     * @return bit-matrix of label
+     */
+    public byte[] convert(BufferedImage label) {
+        if (pool != null && label.getWidth() >= parallelWidth && label.getWidth() > 0) {
+            byte[] labelData = new byte[packedSize(label.getWidth(), label.getHeight())];
+            int stripes = pool.getParallelism() * STRIPES_PER_THREAD;
+            // stripes start at byte boundaries, so stripes of binary images do not share raster bytes
+            int stripeWidth = Math.max(MIN_STRIPE_WIDTH, (label.getWidth() / stripes + 7) & ~7);
+            pool.invoke(new ConvertStripe(label, isPackable(label), binarization, 0, label.getWidth(), stripeWidth,
+                    labelData));
+            return labelData;
+        }
+        BufferedImage binaryLabel = toBinaryImage(label);
+        byte[] labelData = new byte[packedSize(binaryLabel.getWidth(), binaryLabel.getHeight())];
+        pack(binaryLabel, 0, binaryLabel.getWidth(), labelData, 0);
+        return labelData;
+    }
+
+    /**
+     * Convert image into a black and white image which can be packed. Images which are already packable are
+     * returned as they are.
+     *
+     * @param label image of label
+     * @return binary image
+     */
+    public BufferedImage toBinaryImage(BufferedImage label) {
+        if (isPackable(label)) {
+            return label;
+        }
+        if (binarization != Binarization.AWT) {
+            return Binarizer.binarize(label, 0, label.getWidth(), binarization);
+        }
+
+        BufferedImage binaryLabel = new BufferedImage(label.getWidth(), label.getHeight(),
+                BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D graphic = binaryLabel.createGraphics();
+        graphic.drawImage(label, 0, 0, Color.WHITE, null);
+        graphic.dispose();
+
+        return binaryLabel;
+    }
+
+    /**
+     * Pack the columns {@code [fromX, toX)} of a binary image into tape lines. The column {@code toX - 1} is
+     * written first at {@code offset}.
+     *
+     * @param binaryLabel image created by {@link #toBinaryImage(BufferedImage)}
+     * @param fromX first column (inclusive)
+     * @param toX last column (exclusive)
+     * @param target bit-matrix to write to
+     * @param offset position of first line in target
+     */
+    public void pack(BufferedImage binaryLabel, int fromX, int toX, byte[] target, int offset) {
+        packColumns(binaryLabel, fromX, toX, target, offset);
+    }
+
+    private static void packColumns(BufferedImage binaryLabel, int fromX, int toX, byte[] target, int offset) {
+        if (!isPackable(binaryLabel)) {
+            throw new IllegalArgumentException("Image is not a packable binary image!");
+        }
+        if (fromX < 0 || toX > binaryLabel.getWidth() || fromX > toX) {
+            throw new IndexOutOfBoundsException("Invalid column range! fromX=" + fromX + ", toX=" + toX);
+        }
+        int bytesPerLine = bytesPerLine(binaryLabel.getHeight());
+        if (offset < 0 || offset + (toX - fromX) * bytesPerLine > target.length) {
+            throw new IndexOutOfBoundsException("Target too small! offset=" + offset + ", length=" + target.length);
+        }
+        if (fromX == toX) {
+            return;
+        }
+
+        WritableRaster raster = binaryLabel.getRaster();
+        byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+        int scanlineStride = ((MultiPixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+
+        // transpose blocks of 8x8 pixels: 8 row bytes of the raster become 8 line bytes of the tape
+        for (int yByte = 0; yByte < bytesPerLine; yByte++) {
+            int rowStart = yByte * BITS_IN_BYTE * scanlineStride;
+            for (int xByte = fromX >> 3; xByte <= (toX - 1) >> 3; xByte++) {
+                int position = rowStart + xByte;
+                long block = 0;
+                for (int row = 0; row < BITS_IN_BYTE; row++) {
+                    block = (block << BITS_IN_BYTE) | (data[position] & 0xFF);
+                    position += scanlineStride;
+                }
+                // palette index 0 is black, so inverting yields ink bits
+                block = ~transpose(block);
+
+                int firstColumn = Math.max(xByte << 3, fromX);
+                int lastColumn = Math.min((xByte << 3) + BITS_IN_BYTE, toX);
+                for (int x = firstColumn; x < lastColumn; x++) {
+                    int shift = (BITS_IN_BYTE - 1 - (x & 7)) * BITS_IN_BYTE;
+                    target[offset + (toX - 1 - x) * bytesPerLine + yByte] = (byte) (block >>> shift);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get number of bytes of a tape line.
+     *
+     * @param height image height, must be a multiple of 8
+     * @return bytes per line
+     */
+    public static int bytesPerLine(int height) {
+        return PackedLabel.bytesPerLine(height);
+    }
+
+    /**
+     * Get size of bit-matrix.
+     *
+     * @param width image width
+     * @param height image height, must be a multiple of 8
+     * @return size in bytes
+     */
+    public static int packedSize(int width, int height) {
+        return width * bytesPerLine(height);
+    }
+
+    /**
+     * Remove blank lines at the start and the end of a label.
+     *
+     * @param labelData label in printer format
+     * @param bytesPerLine bytes per tape line
+     * @return label without leading and trailing blank lines, the given array if there are none
+     */
+    public static byte[] trim(byte[] labelData, int bytesPerLine) {
+        if (bytesPerLine < 1 || labelData.length % bytesPerLine != 0) {
+            throw new IllegalArgumentException("Invalid label data! length=" + labelData.length
+                    + ", bytesPerLine=" + bytesPerLine);
+        }
+        int from = 0;
+        while (from < labelData.length && labelData[from] == 0) {
+            from++;
+        }
+        if (from == labelData.length) {
+            return new byte[0];
+        }
+        int to = labelData.length;
+        while (labelData[to - 1] == 0) {
+            to--;
+        }
+        from -= from % bytesPerLine;
+        to += (bytesPerLine - to % bytesPerLine) % bytesPerLine;
+        return from == 0 && to == labelData.length ? labelData : Arrays.copyOfRange(labelData, from, to);
+    }
+
+    /**
+     * Transpose a 8x8 bit matrix. Each byte is a row, starting with the most significant byte, and the most
+     * significant bit of a byte is the first column (see Hacker's Delight, 7-3).
+     */
+    private static long transpose(long block) {
+        long t = (block ^ (block >>> 7)) & 0x00AA00AA00AA00AAL;
+        block = block ^ t ^ (t << 7);
+        t = (block ^ (block >>> 14)) & 0x0000CCCC0000CCCCL;
+        block = block ^ t ^ (t << 14);
+        t = (block ^ (block >>> 28)) & 0x00000000F0F0F0F0L;
+        return block ^ t ^ (t << 28);
+    }
+
+    /**
+     * Check whether an image can be packed as it is, without a conversion.
+     *
+     * @param image image of label
+     * @return image is a black and white binary image with white at palette index 1
+     */
+    static boolean isPackable(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_BYTE_BINARY || !(image.getColorModel() instanceof IndexColorModel)) {
+            return false;
+        }
+        IndexColorModel colorModel = (IndexColorModel) image.getColorModel();
+        WritableRaster raster = image.getRaster();
+        return colorModel.getPixelSize() == 1
+                && colorModel.getMapSize() == 2
+                && colorModel.getRGB(0) == BLACK
+                && colorModel.getRGB(1) == WHITE
+                && raster.getSampleModel() instanceof MultiPixelPackedSampleModel
+                && ((MultiPixelPackedSampleModel) raster.getSampleModel()).getDataBitOffset() == 0
+                && raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer().getOffset() == 0;
+    }
+
+    private static final class ConvertStripe extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BufferedImage label;
+        private final boolean packable;
+        private final Binarization binarization;
+        private final int fromX;
+        private final int toX;
+        private final int stripeWidth;
+        private final byte[] labelData;
+
+        ConvertStripe(BufferedImage label, boolean packable, Binarization binarization, int fromX, int toX,
+                      int stripeWidth, byte[] labelData) {
+            this.label = label;
+            this.packable = packable;
+            this.binarization = binarization;
+            this.fromX = fromX;
+            this.toX = toX;
+            this.stripeWidth = stripeWidth;
+            this.labelData = labelData;
+        }
+
+        @Override
+        protected void compute() {
+            int width = toX - fromX;
+            if (width > stripeWidth) {
+                int middle = fromX + (width / stripeWidth + 1) / 2 * stripeWidth;
+                invokeAll(new ConvertStripe(label, packable, binarization, fromX, middle, stripeWidth, labelData),
+                        new ConvertStripe(label, packable, binarization, middle, toX, stripeWidth, labelData));
+                return;
+            }
+            int bytesPerLine = bytesPerLine(label.getHeight());
+            int offset = (label.getWidth() - toX) * bytesPerLine;
+            if (packable) {
+                packColumns(label, fromX, toX, labelData, offset);
+            } else if (binarization != Binarization.AWT) {
+                packColumns(Binarizer.binarize(label, fromX, toX, binarization), 0, width, labelData, offset);
+            } else {
+                BufferedImage stripe = new BufferedImage(width, label.getHeight(), BufferedImage.TYPE_BYTE_BINARY);
+                Graphics2D graphic = stripe.createGraphics();
+                graphic.drawImage(label, -fromX, 0, Color.WHITE, null);
+                graphic.dispose();
+                packColumns(stripe, 0, width, labelData, offset);
+            }
+        }
+    }
+}
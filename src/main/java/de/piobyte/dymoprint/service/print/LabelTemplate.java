@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.service.hid.LabelSource;
+
+import lombok.NonNull;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Label with a fixed background and variable fields, e.g. a logo with a changing serial number.
+ * <p>
+ * The background is converted into tape lines once. Filling the template renders only the fields and splices them
+ * into the background lines while the label is sent. Templates are immutable and can be filled by several threads
+ * at the same time.
+ * <pre>
+ * LabelTemplate template = LabelTemplate.builder(background)
+ *         .field("serial", new Rectangle(120, 0, 200, 64))
+ *         .build();
+ * service.printLabel(serialNumber, Tape.D1_12_MM, template.fill("serial", (graphics, width, height) -&gt;
+ *         graphics.drawString("SN-4711", 0, 40)));
+ * </pre>
+ */
+public final class LabelTemplate {
+
+    private final int width;
+    private final int height;
+    private final int bytesPerLine;
+    private final byte[] background;
+    private final Map<String, Field> fields;
+    private final LabelConverter labelConverter;
+
+    private LabelTemplate(Builder builder) {
+        this.width = builder.background.getWidth();
+        this.height = builder.background.getHeight();
+        this.bytesPerLine = LabelConverter.bytesPerLine(height);
+        this.labelConverter = new LabelConverter(builder.binarization);
+        this.background = labelConverter.convert(builder.background);
+        Map<String, Field> fields = new LinkedHashMap<>();
+        builder.fields.forEach((name, bounds) -> fields.put(name, new Field(bounds, bytesPerLine)));
+        this.fields = Map.copyOf(fields);
+    }
+
+    /**
+     * Create builder of a template.
+     *
+     * @param background image of the static parts, height must be a multiple of 8
+     * @return builder
+     */
+    public static Builder builder(@NonNull BufferedImage background) {
+        return new Builder(background);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Fill one field of the template. Other fields show the background.
+     *
+     * @param name name of field
+     * @param renderer renderer of field content
+     * @return source of the filled label, can be read once
+     */
+    public LabelSource fill(@NonNull String name, @NonNull FieldRenderer renderer) {
+        return fill(Map.of(name, renderer));
+    }
+
+    /**
+     * Fill fields of the template. Fields without a renderer show the background.
+     *
+     * @param renderers renderers of field content by field name
+     * @return source of the filled label, can be read once
+     */
+    public LabelSource fill(@NonNull Map<String, FieldRenderer> renderers) {
+        List<FilledField> filledFields = new ArrayList<>(renderers.size());
+        renderers.forEach((name, renderer) -> {
+            Field field = fields.get(name);
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field! name=" + name);
+            }
+            filledFields.add(new FilledField(field, render(field.bounds, renderer)));
+        });
+        return new FilledLabelSource(filledFields);
+    }
+
+    /**
+     * Render field content and convert it into full tape lines of the field columns.
+     */
+    private byte[] render(Rectangle bounds, FieldRenderer renderer) {
+        BufferedImage image = new BufferedImage(bounds.width, height, BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, bounds.width, height);
+            graphics.setColor(Color.BLACK);
+            graphics.clipRect(0, bounds.y, bounds.width, bounds.height);
+            graphics.translate(0, bounds.y);
+            renderer.render(graphics, bounds.width, bounds.height);
+        } finally {
+            graphics.dispose();
+        }
+        byte[] lines = new byte[LabelConverter.packedSize(bounds.width, height)];
+        labelConverter.pack(image, 0, bounds.width, lines, 0);
+        return lines;
+    }
+
+    @FunctionalInterface
+    public interface FieldRenderer {
+
+        /**
+         * Render content of a field. The graphics context uses field coordinates and is clipped to the field.
+         *
+         * @param graphics graphics context, white background and black color
+         * @param width field width
+         * @param height field height
+         */
+        void render(Graphics2D graphics, int width, int height);
+    }
+
+    public static final class Builder {
+        private final BufferedImage background;
+        private final Map<String, Rectangle> fields = new LinkedHashMap<>();
+        private Binarization binarization = Binarization.AWT;
+
+        private Builder(BufferedImage background) {
+            this.background = background;
+        }
+
+        /**
+         * Add variable field. The field replaces the background within its bounds.
+         *
+         * @param name name of field
+         * @param bounds bounds of field within the label
+         * @return this builder
+         */
+        public Builder field(@NonNull String name, @NonNull Rectangle bounds) {
+            if (bounds.isEmpty() || bounds.x < 0 || bounds.y < 0 || bounds.x + bounds.width > background.getWidth()
+                    || bounds.y + bounds.height > background.getHeight()) {
+                throw new IllegalArgumentException("Field is outside of the label! name=" + name
+                        + ", bounds=" + bounds);
+            }
+            if (fields.putIfAbsent(name, new Rectangle(bounds)) != null) {
+                throw new IllegalArgumentException("Duplicate field! name=" + name);
+            }
+            return this;
+        }
+
+        /**
+         * Set conversion of the background image and of the rendered fields.
+         *
+         * @param binarization conversion of color and grayscale images
+         * @return this builder
+         */
+        public Builder binarization(@NonNull Binarization binarization) {
+            this.binarization = binarization;
+            return this;
+        }
+
+        /**
+         * Convert background and create template.
+         *
+         * @return template
+         */
+        public LabelTemplate build() {
+            return new LabelTemplate(this);
+        }
+    }
+
+    private static final class Field {
+        private final Rectangle bounds;
+        private final byte[] mask;
+
+        Field(Rectangle bounds, int bytesPerLine) {
+            this.bounds = bounds;
+            // bits of the field rows within a tape line
+            this.mask = new byte[bytesPerLine];
+            for (int y = bounds.y; y < bounds.y + bounds.height; y++) {
+                mask[y / Byte.SIZE] |= 0x80 >>> y % Byte.SIZE;
+            }
+        }
+    }
+
+    private static final class FilledField {
+        private final Field field;
+        private final byte[] lines;
+
+        FilledField(Field field, byte[] lines) {
+            this.field = field;
+            this.lines = lines;
+        }
+    }
+
+    private final class FilledLabelSource implements LabelSource {
+        private final List<FilledField> filledFields;
+        private int line;
+
+        FilledLabelSource(List<FilledField> filledFields) {
+            this.filledFields = filledFields;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int readLines(byte[] buffer) {
+            int lines = Math.min(buffer.length / bytesPerLine, width - line);
+            if (lines == 0) {
+                return 0;
+            }
+            System.arraycopy(background, line * bytesPerLine, buffer, 0, lines * bytesPerLine);
+
+            for (FilledField filledField : filledFields) {
+                // the first tape line is the rightmost column
+                Rectangle bounds = filledField.field.bounds;
+                int fieldLine = width - bounds.x - bounds.width;
+                int from = Math.max(line, fieldLine);
+                int to = Math.min(line + lines, fieldLine + bounds.width);
+                byte[] mask = filledField.field.mask;
+                for (int current = from; current < to; current++) {
+                    int target = (current - line) * bytesPerLine;
+                    int source = (current - fieldLine) * bytesPerLine;
+                    for (int i = 0; i < bytesPerLine; i++) {
+                        buffer[target + i] = (byte) (buffer[target + i] & ~mask[i]
+                                | filledField.lines[source + i] & mask[i]);
+                    }
+                }
+            }
+            line += lines;
+            return lines;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import lombok.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the print path timings in a Micrometer registry. Requires the optional dependency
+ * {@code io.micrometer:micrometer-core}.
+ * <ul>
+ * <li>{@code dymo.print.stage} timer, tagged by {@code stage}, {@code serial} and {@code tape}</li>
+ * <li>{@code dymo.print.label.bytes} distribution of converted label sizes</li>
+ * <li>{@code dymo.print.reports} distribution of HID reports per print job</li>
+ * </ul>
+ */
+public class MicrometerPrintMetrics implements PrintMetrics {
+
+    private static final String NO_TAPE = "none";
+
+    private final MeterRegistry registry;
+
+    public MicrometerPrintMetrics(@NonNull MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void recordTime(Stage stage, String serialNumber, Tape tape, long nanos) {
+        Timer.builder("dymo.print.stage")
+                .description("Duration of a stage of the print path")
+                .tags(tags(serialNumber, tape).and("stage", stage.name().toLowerCase(Locale.ROOT)))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordLabelBytes(String serialNumber, Tape tape, int bytes) {
+        DistributionSummary.builder("dymo.print.label.bytes")
+                .description("Size of converted labels")
+                .baseUnit("bytes")
+                .tags(tags(serialNumber, tape))
+                .register(registry)
+                .record(bytes);
+    }
+
+    @Override
+    public void recordReports(String serialNumber, Tape tape, long reports) {
+        DistributionSummary.builder("dymo.print.reports")
+                .description("HID reports sent per print job")
+                .tags(tags(serialNumber, tape))
+                .register(registry)
+                .record(reports);
+    }
+
+    private static Tags tags(String serialNumber, Tape tape) {
+        return Tags.of("serial", serialNumber, "tape", tape == null ? NO_TAPE : tape.name());
+    }
+}
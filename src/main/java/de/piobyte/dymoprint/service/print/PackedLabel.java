@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.service.hid.LabelSource;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Label which is already packed in tape lines, e.g. rendered on another host. Printing it skips the image
+ * conversion, so neither a {@link java.awt.image.BufferedImage} nor AWT is needed.
+ * <p>
+ * The data is a sequence of tape lines in print order as described in {@link LabelSource}: {@code height / 8}
+ * bytes per line, the most significant bit being the topmost pixel, a set bit printing black. The data is not
+ * copied and must not be modified while the label is printed.
+ */
+public final class PackedLabel {
+
+    private final ByteBuffer data;
+    private final byte[] array;
+    private final int height;
+    private final int bytesPerLine;
+
+    private PackedLabel(ByteBuffer data, byte[] array, int height) {
+        this.bytesPerLine = bytesPerLine(height);
+        if (bytesPerLine < 1 || data.remaining() % bytesPerLine != 0) {
+            throw new IllegalArgumentException("Invalid label data! length=" + data.remaining()
+                    + ", height=" + height);
+        }
+        this.data = data.slice().asReadOnlyBuffer();
+        this.array = array;
+        this.height = height;
+    }
+
+    /**
+     * Create label from packed tape lines.
+     *
+     * @param data tape lines
+     * @param height label height in pixel, a multiple of 8
+     * @return label
+     */
+    public static PackedLabel of(@NonNull byte[] data, int height) {
+        return new PackedLabel(ByteBuffer.wrap(data), data, height);
+    }
+
+    /**
+     * Create label from the remaining bytes of a buffer, e.g. a direct buffer filled by a network channel.
+     *
+     * @param data tape lines between position and limit
+     * @param height label height in pixel, a multiple of 8
+     * @return label
+     */
+    public static PackedLabel of(@NonNull ByteBuffer data, int height) {
+        return new PackedLabel(data, null, height);
+    }
+
+    /**
+     * Map file with raw tape lines into memory. The file is read by the operating system while the label is sent.
+     *
+     * @param file file of tape lines
+     * @param height label height in pixel, a multiple of 8
+     * @return label
+     * @throws IOException file cannot be read
+     */
+    public static PackedLabel map(@NonNull Path file, int height) throws IOException {
+        return new PackedLabel(mapFile(file), null, height);
+    }
+
+    /**
+     * Map raw PBM ({@code P4}) file in tape line order into memory: the image width is the label height and every
+     * image row is one tape line, i.e. the label image rotated by 90° clockwise. Raw PBM rows are packed like tape
+     * lines, so the pixel data is printed as it is.
+     *
+     * @param file PBM file
+     * @return label
+     * @throws IOException file cannot be read
+     * @throws IllegalArgumentException file is not a raw PBM or the width is not a multiple of 8
+     */
+    public static PackedLabel mapPbm(@NonNull Path file) throws IOException {
+        ByteBuffer pbm = mapFile(file);
+        if (pbm.remaining() < 2 || pbm.get() != 'P' || pbm.get() != '4') {
+            throw new IllegalArgumentException("Not a raw PBM file! file=" + file);
+        }
+        int width = readHeaderNumber(pbm);
+        int rows = readHeaderNumber(pbm);
+        if (!pbm.hasRemaining() || !Character.isWhitespace(pbm.get())) {
+            throw new IllegalArgumentException("Invalid PBM header! file=" + file);
+        }
+        int length = rows * bytesPerLine(width);
+        if (pbm.remaining() < length) {
+            throw new IllegalArgumentException("PBM data too short! file=" + file);
+        }
+        pbm.limit(pbm.position() + length);
+        return new PackedLabel(pbm, null, width);
+    }
+
+    /**
+     * Label height.
+     *
+     * @return height in pixel
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Label length.
+     *
+     * @return number of tape lines
+     */
+    public int getLines() {
+        return data.remaining() / bytesPerLine;
+    }
+
+    /**
+     * Get the array the label was created from, so it can be sent without copying.
+     *
+     * @return tape lines, null for labels created from a buffer or file
+     */
+    byte[] array() {
+        return array;
+    }
+
+    /**
+     * Create a new reader of the label lines, e.g. to encode them with
+     * {@link de.piobyte.dymoprint.service.hid.impl.CommandEncoder#writeLabel}.
+     *
+     * @return reader starting at the first line
+     */
+    public LabelSource newSource() {
+        ByteBuffer lines = data.duplicate();
+        return new LabelSource() {
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public int readLines(byte[] buffer) {
+                int length = Math.min(buffer.length / bytesPerLine * bytesPerLine, lines.remaining());
+                lines.get(buffer, 0, length);
+                return length / bytesPerLine;
+            }
+        };
+    }
+
+    /**
+     * Get number of bytes of a tape line. Kept here rather than in {@link LabelConverter}, loading the converter
+     * loads AWT classes.
+     *
+     * @param height label height, must be a multiple of 8
+     * @return bytes per line
+     */
+    static int bytesPerLine(int height) {
+        if (height % Byte.SIZE != 0) {
+            throw new IllegalArgumentException("Image height must be a multiple of " + Byte.SIZE + "!");
+        }
+        return height / Byte.SIZE;
+    }
+
+    private static ByteBuffer mapFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static int readHeaderNumber(ByteBuffer pbm) {
+        StringBuilder digits = new StringBuilder();
+        while (pbm.hasRemaining()) {
+            byte b = pbm.get(pbm.position());
+            if (b == '#') {
+                while (pbm.hasRemaining() && pbm.get() != '\n') {
+                    // skip comment
+                }
+            } else if (Character.isWhitespace(b) && digits.length() == 0) {
+                pbm.get();
+            } else if (b >= '0' && b <= '9' && digits.length() < 8) {
+                digits.append((char) pbm.get());
+            } else {
+                break;
+            }
+        }
+        if (digits.length() == 0) {
+            throw new IllegalArgumentException("Invalid PBM header!");
+        }
+        return Integer.parseInt(digits.toString());
+    }
+}
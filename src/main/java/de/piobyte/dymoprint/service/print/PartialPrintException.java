@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import java.io.IOException;
+
+/**
+ * Communication problem after a part of the label reached the printer. Sending the label again could print it
+ * twice or after a cut-off copy, so the operator has to check the printer. Thrown by the print methods of
+ * {@link PrintService} for devices which count their reports (see
+ * {@link de.piobyte.dymoprint.service.hid.HidDevice#getReportCount()}).
+ */
+public class PartialPrintException extends IOException {
+
+    public PartialPrintException(final String message, final IOException cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+/**
+ * Listener receiving timings and sizes of the print path, see {@link PrintServiceOptions#getMetrics()}. All
+ * methods are called on the printing threads and must not block. Without a registered listener no timings are
+ * taken.
+ */
+public interface PrintMetrics {
+
+    /**
+     * Listener ignoring all measurements.
+     */
+    PrintMetrics NONE = new PrintMetrics() {
+    };
+
+    /**
+     * Record duration of a stage.
+     *
+     * @param stage stage of the print path
+     * @param serialNumber serial number of printer
+     * @param tape tape of the print job, null for {@link Stage#OPEN} and {@link Stage#CLOSE}
+     * @param nanos duration in nanoseconds
+     */
+    default void recordTime(Stage stage, String serialNumber, Tape tape, long nanos) {
+    }
+
+    /**
+     * Record size of a converted label.
+     *
+     * @param serialNumber serial number of printer
+     * @param tape tape of the print job
+     * @param bytes size of the bit-matrix
+     */
+    default void recordLabelBytes(String serialNumber, Tape tape, int bytes) {
+    }
+
+    /**
+     * Record number of HID reports sent by a print job.
+     *
+     * @param serialNumber serial number of printer
+     * @param tape tape of the print job
+     * @param reports number of reports
+     */
+    default void recordReports(String serialNumber, Tape tape, long reports) {
+    }
+
+    enum Stage {
+        /**
+         * Lookup of the printer device, including device enumeration on a registry miss.
+         */
+        LOOKUP,
+        /**
+         * Conversion of the image into the bit-matrix.
+         */
+        CONVERSION,
+        /**
+         * Encoding of a label in advance for the label cache.
+         */
+        ENCODING,
+        /**
+         * Writing the label to the device. Labels which are not cached are encoded while they are written.
+         */
+        TRANSFER,
+        /**
+         * Opening the device connection.
+         */
+        OPEN,
+        /**
+         * Closing the device connection.
+         */
+        CLOSE,
+        /**
+         * Waiting time of a job in the {@link PrintQueue}.
+         */
+        QUEUE_WAIT,
+        /**
+         * Complete print job started by the {@link PrintQueue}.
+         */
+        JOB
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous print queue.
+ * <p>
+ * Every printer gets its own worker thread, so jobs for the same printer are printed in submission order while
+ * jobs for different printers are printed in parallel. The number of waiting jobs per printer is limited by the
+ * capacity of the queue. Jobs which have not been started yet can be cancelled with
+ * {@link CompletableFuture#cancel(boolean)}.
+ * <p>
+ * With {@link PrintServiceOptions#isVirtualThreads()} the workers are virtual threads on Java 21 and later.
+ */
+@Slf4j
+public class PrintQueue implements Closeable {
+
+    private final static int DEFAULT_CAPACITY = 100;
+    private final static long WORKER_KEEP_ALIVE_SECONDS = 60;
+
+    private final PrintService printService;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Map<String, Worker> workers = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public PrintQueue(PrintService printService) {
+        this(printService, DEFAULT_CAPACITY, OverflowPolicy.REJECT);
+    }
+
+    /**
+     * Create print queue.
+     *
+     * @param printService service used to print the labels
+     * @param capacity maximum number of waiting jobs per printer
+     * @param overflowPolicy behaviour when the queue of a printer is full
+     */
+    public PrintQueue(@NonNull PrintService printService, int capacity, @NonNull OverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive!");
+        }
+        this.printService = printService;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Submit label for printing.
+     * <p>
+     * The returned future fails with a {@link RejectedExecutionException} if the queue of the printer is full and
+     * the overflow policy is {@link OverflowPolicy#REJECT} or the queue is closed. Failures of the print job are
+     * passed as they are thrown by {@link PrintService#printLabel(String, Tape, BufferedImage)}.
+     *
+     * @param serialNumber serial number of label printer
+     * @param tape installed tape type
+     * @param label image of label
+     * @return result of print job
+     */
+    public CompletableFuture<PrintResult> submit(@NonNull String serialNumber, @NonNull Tape tape,
+                                                 @NonNull BufferedImage label) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Print queue is closed!"));
+        }
+
+        Worker worker = workers.computeIfAbsent(serialNumber.toUpperCase(Locale.ROOT), Worker::new);
+        return worker.submit(serialNumber, tape, label);
+    }
+
+    /**
+     * Get number of waiting and running jobs of a printer.
+     *
+     * @param serialNumber serial number of label printer
+     * @return number of jobs
+     */
+    public int getQueueDepth(@NonNull String serialNumber) {
+        Worker worker = workers.get(serialNumber.toUpperCase(Locale.ROOT));
+        return worker == null ? 0 : worker.getDepth();
+    }
+
+    /**
+     * Stop accepting jobs. Jobs already submitted are still printed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workers.values().forEach(worker -> worker.executor.shutdown());
+    }
+
+    public enum OverflowPolicy {
+        /**
+         * Fail the job immediately.
+         */
+        REJECT,
+        /**
+         * Block the submitting thread until the queue has space.
+         */
+        BLOCK
+    }
+
+    private class Worker {
+        private final Semaphore permits = new Semaphore(capacity);
+        private final ThreadPoolExecutor executor;
+
+        Worker(String key) {
+            executor = new ThreadPoolExecutor(1, 1, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    JobThreads.factory("dymo-print-" + key, printService.isVirtualThreads()));
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        int getDepth() {
+            return capacity - permits.availablePermits();
+        }
+
+        CompletableFuture<PrintResult> submit(String serialNumber, Tape tape, BufferedImage label) {
+            if (overflowPolicy == OverflowPolicy.BLOCK) {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return CompletableFuture.failedFuture(e);
+                }
+            } else if (!permits.tryAcquire()) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        "Print queue is full! serialNumber=" + serialNumber + ", capacity=" + capacity));
+            }
+
+            CompletableFuture<PrintResult> result = new CompletableFuture<>();
+            long submitted = System.nanoTime();
+            try {
+                executor.execute(() -> print(result, submitted, serialNumber, tape, label));
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+
+        private void print(CompletableFuture<PrintResult> result, long submitted, String serialNumber, Tape tape,
+                           BufferedImage label) {
+            PrintResult printResult = null;
+            Throwable failure = null;
+            try {
+                // skipped if cancelled before start
+                if (!result.isDone()) {
+                    long started = System.nanoTime();
+                    printService.printLabel(serialNumber, tape, label);
+                    long finished = System.nanoTime();
+                    PrintMetrics metrics = printService.getMetrics();
+                    metrics.recordTime(PrintMetrics.Stage.QUEUE_WAIT, serialNumber, tape, started - submitted);
+                    metrics.recordTime(PrintMetrics.Stage.JOB, serialNumber, tape, finished - started);
+                    printResult = PrintResult.builder()
+                            .serialNumber(serialNumber)
+                            .tape(tape)
+                            .queueTime(Duration.ofNanos(started - submitted))
+                            .printTime(Duration.ofNanos(finished - started))
+                            .build();
+                }
+            } catch (Throwable e) {
+                log.error("Print job failed! serialNumber={}, error={}", serialNumber, e.getMessage());
+                failure = e;
+            } finally {
+                // released before completing, so callbacks of the result can submit jobs to the full queue
+                permits.release();
+            }
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else if (printResult != null) {
+                result.complete(printResult);
+            }
+        }
+    }
+}
@@ -18,30 +18,63 @@ package de.piobyte.dymoprint.service.print;
 import de.piobyte.dymoprint.printer.PrinterConfiguration;
 import de.piobyte.dymoprint.printer.Tape;
 import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.EncodedLabel;
 import de.piobyte.dymoprint.service.hid.HidDevice;
 import de.piobyte.dymoprint.service.hid.HidService;
+import de.piobyte.dymoprint.service.hid.LabelSource;
+import de.piobyte.dymoprint.service.hid.PrinterStatus;
+import de.piobyte.dymoprint.service.hid.impl.CachingHidService;
+import de.piobyte.dymoprint.service.hid.impl.DeviceOptions;
 import de.piobyte.dymoprint.service.hid.impl.PureJavaHidApiService;
+import de.piobyte.dymoprint.service.hid.impl.RegistryStatistics;
 
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.BitSet;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Prints labels on USB label printers.
+ * <p>
+ * The service is thread-safe. Jobs for the same printer are serialized by a lock per printer (striped by serial
+ * number), jobs for different printers run in parallel. Labels are converted before the lock is taken. Listing
+ * printers does not wait for print jobs and, with the device registry enabled, does not block at all.
+ */
 @Slf4j
-public class PrintService {
+public class PrintService implements Closeable {
 
     private final static String PERMISSION_ERROR = " 13";
     private final static int BITS_IN_BYTE = 8;
+    private final static int LOCK_STRIPES = 64;
 
     private final HidService hidService;
+    private final PrintServiceOptions options;
+    private final PrintTracer tracer = new PrintTracer();
+    private final PrinterLocks printerLocks = new PrinterLocks(LOCK_STRIPES);
+    private final ConnectionPool connectionPool;
+    private final EncodedLabelCache labelCache;
+    private final PrintMetrics metrics;
+    private final boolean instrumented;
+    private final boolean trimWhitespace;
+    private final boolean virtualThreads;
+    private volatile LabelConverter labelConverter;
 
     public PrintService() {
         this(new LabelManagerPnPConfiguration());
@@ -52,7 +85,45 @@ public class PrintService {
     }
 
     public PrintService(List<PrinterConfiguration> configurations) {
-        hidService = new PureJavaHidApiService(configurations);
+        this(configurations, PrintServiceOptions.defaults());
+    }
+
+    public PrintService(List<PrinterConfiguration> configurations, @NonNull PrintServiceOptions options) {
+        this(createHidService(new PureJavaHidApiService(configurations, DeviceOptions.builder()
+                .compactEncoding(options.isCompactEncoding())
+                .flowControl(options.isFlowControl())
+                .build()), options), options);
+    }
+
+    public PrintService(HidService hidService) {
+        this(hidService, PrintServiceOptions.defaults());
+    }
+
+    /**
+     * Create print service using the passed HID backend, e.g. a
+     * {@link de.piobyte.dymoprint.service.hid.sim.SimulatedHidService} for tests without printers. The backend is
+     * used as it is, wrap it into a {@link CachingHidService} to get a device registry.
+     *
+     * @param hidService HID backend
+     * @param options settings
+     */
+    public PrintService(@NonNull HidService hidService, @NonNull PrintServiceOptions options) {
+        this.hidService = hidService;
+        this.metrics = options.getMetrics();
+        this.instrumented = metrics != PrintMetrics.NONE;
+        this.trimWhitespace = options.isTrimWhitespace();
+        this.virtualThreads = options.isVirtualThreads() && JobThreads.isVirtualAvailable();
+        if (options.isVirtualThreads() && !virtualThreads) {
+            log.warn("Virtual threads need Java 21, using platform threads. javaVersion={}",
+                    System.getProperty("java.version"));
+        }
+        this.options = options;
+        this.connectionPool = options.isKeepConnectionOpen()
+                ? new ConnectionPool(options.getConnectionIdleTimeout(), metrics)
+                : null;
+        this.labelCache = options.getLabelCacheSize() > 0
+                ? new EncodedLabelCache(options.getLabelCacheSize())
+                : null;
     }
 
     /**
@@ -90,79 +161,549 @@ public class PrintService {
      */
     public void printLabel(@NonNull String serialNumber, @NonNull Tape tape,
                            @NonNull BufferedImage label) throws IOException, InvalidParameterException, PrinterNotFoundException {
+        printImage(serialNumber, tape, label, PrinterLocks.WAIT);
+    }
+
+    /**
+     * Print label if the printer becomes available within the timeout, see
+     * {@link #printLabel(String, Tape, BufferedImage)}.
+     *
+     * @param serialNumber serial number of label printer
+     * @param tape installed tape type
+     * @param label image of label
+     * @param timeout maximum time to wait for other jobs of the printer
+     * @return true if the label was printed, false if the printer was busy
+     * @throws IOException communication exception
+     * @throws java.io.InterruptedIOException interrupted while waiting
+     * @throws InvalidParameterException invalid parameter passed (e.g. unsupported tape)
+     * @throws PrinterNotFoundException printer not found
+     */
+    public boolean tryPrintLabel(@NonNull String serialNumber, @NonNull Tape tape, @NonNull BufferedImage label,
+                                 @NonNull Duration timeout)
+            throws IOException, InvalidParameterException, PrinterNotFoundException {
+        return printImage(serialNumber, tape, label, Math.max(0, timeout.toNanos()));
+    }
+
+    /**
+     * Print label read line by line, e.g. a {@link TiledLabelSource} for very long labels. The lines are encoded
+     * as they are read, so the label never exists as a whole in memory. The label height needs to match the
+     * values described in {@link #printLabel(String, Tape, BufferedImage)}.
+     *
+     * @param serialNumber serial number of label printer
+     * @param tape installed tape type
+     * @param labelSource source of label lines
+     * @throws IOException communication exception
+     * @throws InvalidParameterException invalid parameter passed (e.g. unsupported tape)
+     * @throws PrinterNotFoundException printer not found
+     */
+    public void printLabel(@NonNull String serialNumber, @NonNull Tape tape, @NonNull LabelSource labelSource)
+            throws IOException, InvalidParameterException, PrinterNotFoundException {
+        printSource(serialNumber, tape, labelSource, PrinterLocks.WAIT);
+    }
+
+    /**
+     * Print label read line by line if the printer becomes available within the timeout, see
+     * {@link #printLabel(String, Tape, LabelSource)}.
+     *
+     * @param serialNumber serial number of label printer
+     * @param tape installed tape type
+     * @param labelSource source of label lines, not read if the printer was busy
+     * @param timeout maximum time to wait for other jobs of the printer
+     * @return true if the label was printed, false if the printer was busy
+     * @throws IOException communication exception
+     * @throws java.io.InterruptedIOException interrupted while waiting
+     * @throws InvalidParameterException invalid parameter passed (e.g. unsupported tape)
+     * @throws PrinterNotFoundException printer not found
+     */
+    public boolean tryPrintLabel(@NonNull String serialNumber, @NonNull Tape tape, @NonNull LabelSource labelSource,
+                                 @NonNull Duration timeout)
+            throws IOException, InvalidParameterException, PrinterNotFoundException {
+        return printSource(serialNumber, tape, labelSource, Math.max(0, timeout.toNanos()));
+    }
+
+    /**
+     * Print label which is already packed in tape lines. The lines are sent as they are, without conversion,
+     * trimming or caching. The label height needs to match the tape, see
+     * {@link #printLabel(String, Tape, BufferedImage)}.
+     *
+     * @param serialNumber serial number of label printer
+     * @param tape installed tape type
+     * @param label packed label
+     * @throws IOException communication exception
+     * @throws InvalidParameterException invalid parameter passed (e.g. unsupported tape)
+     * @throws PrinterNotFoundException printer not found
+     */
+    public void printLabel(@NonNull String serialNumber, @NonNull Tape tape, @NonNull PackedLabel label)
+            throws IOException, InvalidParameterException, PrinterNotFoundException {
+        printPacked(serialNumber, tape, label, PrinterLocks.WAIT);
+    }
+
+    /**
+     * Print packed label if the printer becomes available within the timeout, see
+     * {@link #printLabel(String, Tape, PackedLabel)}.
+     *
+     * @param serialNumber serial number of label printer
+     * @param tape installed tape type
+     * @param label packed label
+     * @param timeout maximum time to wait for other jobs of the printer
+     * @return true if the label was printed, false if the printer was busy
+     * @throws IOException communication exception
+     * @throws java.io.InterruptedIOException interrupted while waiting
+     * @throws InvalidParameterException invalid parameter passed (e.g. unsupported tape)
+     * @throws PrinterNotFoundException printer not found
+     */
+    public boolean tryPrintLabel(@NonNull String serialNumber, @NonNull Tape tape, @NonNull PackedLabel label,
+                                 @NonNull Duration timeout)
+            throws IOException, InvalidParameterException, PrinterNotFoundException {
+        return printPacked(serialNumber, tape, label, Math.max(0, timeout.toNanos()));
+    }
+
+    /**
+     * Print several labels in one device session.
+     * <p>
+     * The tape settings are sent once per batch. While a label is sent to the printer, the next one is converted
+     * on a worker thread. The image heights need to match the values described in
+     * {@link #printLabel(String, Tape, BufferedImage)}.
+     *
+     * @param serialNumber serial number of label printer
+     * @param tape installed tape type
+     * @param labels images of labels
+     * @return timings of the batch
+     * @throws IOException communication exception, a {@link BatchPrintException} tells how many labels were sent
+     * @throws InvalidParameterException invalid parameter passed (e.g. unsupported tape)
+     * @throws PrinterNotFoundException printer not found
+     */
+    public BatchPrintResult printLabels(@NonNull String serialNumber, @NonNull Tape tape,
+                                        @NonNull Iterable<BufferedImage> labels)
+            throws IOException, InvalidParameterException, PrinterNotFoundException {
+        return printLabels(serialNumber, tape, labels.iterator());
+    }
+
+    /**
+     * Print several labels in one device session, see {@link #printLabels(String, Tape, Iterable)}.
+     *
+     * @param serialNumber serial number of label printer
+     * @param tape installed tape type
+     * @param labels images of labels
+     * @return timings of the batch
+     * @throws IOException communication exception, a {@link BatchPrintException} tells how many labels were sent
+     * @throws InvalidParameterException invalid parameter passed (e.g. unsupported tape)
+     * @throws PrinterNotFoundException printer not found
+     */
+    public BatchPrintResult printLabels(@NonNull String serialNumber, @NonNull Tape tape,
+                                        @NonNull Stream<BufferedImage> labels)
+            throws IOException, InvalidParameterException, PrinterNotFoundException {
+        return printLabels(serialNumber, tape, labels.iterator());
+    }
+
+    /**
+     * Ask printer for its state, e.g. to check the tape before a job. Waits for running jobs of the printer.
+     * <p>
+     * <b>Experimental:</b> the reply layout is not verified on hardware yet, see {@link PrinterStatus}.
+     *
+     * @param serialNumber serial number of label printer
+     * @return printer status, {@link PrinterStatus#UNKNOWN} if the device does not report its state
+     * @throws IOException communication exception
+     * @throws PrinterNotFoundException printer not found
+     */
+    public PrinterStatus getPrinterStatus(@NonNull String serialNumber) throws IOException, PrinterNotFoundException {
+        HidDevice printerDevice = findPrinterDevice(serialNumber, null);
+        PrinterStatus[] status = {PrinterStatus.UNKNOWN};
+        send(printerDevice, null, device -> status[0] = device.getStatus(), true);
+        return status[0];
+    }
+
+    /**
+     * Get tracer capturing print jobs, e.g. to enable tracing of a printer at runtime.
+     *
+     * @return tracer of this service
+     */
+    public PrintTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Get counters of the device registry.
+     *
+     * @return statistics, empty if the registry is disabled
+     */
+    public Optional<RegistryStatistics> getRegistryStatistics() {
+        if (hidService instanceof CachingHidService) {
+            return Optional.of(((CachingHidService) hidService).getStatistics());
+        }
+        return Optional.empty();
+    }
 
-        var printerDevice = hidService.listPrinterDevices().stream()
-                .filter(hidDevice -> serialNumber.equalsIgnoreCase(hidDevice.getSerialNumber()))
-                .findFirst();
+    /**
+     * Get counters of the encoded label cache.
+     *
+     * @return statistics, empty if the cache is disabled
+     */
+    public Optional<LabelCacheStatistics> getLabelCacheStatistics() {
+        return Optional.ofNullable(labelCache).map(EncodedLabelCache::getStatistics);
+    }
+
+    /**
+     * Stop background threads and close connections kept open.
+     */
+    @Override
+    public void close() {
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+        hidService.close();
+    }
+
+    private boolean printImage(String serialNumber, Tape tape, BufferedImage label, long timeoutNanos)
+            throws IOException, InvalidParameterException, PrinterNotFoundException {
+        HidDevice printerDevice = findPrinterDevice(serialNumber, tape);
+        validateLabel(printerDevice, tape, label.getHeight());
+
+        // traced jobs are converted again instead of being taken from the cache
+        Path traceDirectory = tracer.sample(serialNumber);
+        if (labelCache == null || traceDirectory != null) {
+            byte[] labelData = convertLabel(serialNumber, tape, label);
+            if (traceDirectory != null) {
+                tracer.trace(traceDirectory, printerDevice, tape, labelData);
+            }
+            return send(printerDevice, tape, device -> device.write(tape, labelData), true, timeoutNanos);
+        }
 
-        if (printerDevice.isPresent()) {
-            var configuration = printerDevice.get().getPrinterConfiguration();
-            if (!configuration.getSupportedTapes().containsKey(tape)) {
-                log.error("Tape is not supported by printer! tape={}, supportedTapes={}", tape,
-                        configuration.getSupportedTapes());
-                throw new InvalidParameterException("Tape is not supported by printer!");
+        LabelCacheKey key = LabelCacheKey.of(label, tape, printerDevice.getPrinterConfiguration(),
+                printerDevice.getClass());
+        EncodedLabel encodedLabel = labelCache.get(key);
+        if (encodedLabel == null) {
+            byte[] labelData = convertLabel(serialNumber, tape, label);
+            long start = startTimer();
+            encodedLabel = printerDevice.encode(tape, labelData);
+            recordTime(PrintMetrics.Stage.ENCODING, serialNumber, tape, start);
+            labelCache.put(key, encodedLabel);
+        }
+        EncodedLabel cachedLabel = encodedLabel;
+        return send(printerDevice, tape, device -> device.write(cachedLabel), true, timeoutNanos);
+    }
+
+    private boolean printSource(String serialNumber, Tape tape, LabelSource labelSource, long timeoutNanos)
+            throws IOException, InvalidParameterException, PrinterNotFoundException {
+        HidDevice printerDevice = findPrinterDevice(serialNumber, tape);
+        validateLabel(printerDevice, tape, labelSource.getHeight());
+
+        return send(printerDevice, tape, device -> device.write(tape, labelSource), false, timeoutNanos);
+    }
+
+    private boolean printPacked(String serialNumber, Tape tape, PackedLabel label, long timeoutNanos)
+            throws IOException, InvalidParameterException, PrinterNotFoundException {
+        HidDevice printerDevice = findPrinterDevice(serialNumber, tape);
+        validateLabel(printerDevice, tape, label.getHeight());
+
+        byte[] labelData = label.array();
+        if (labelData != null) {
+            return send(printerDevice, tape, device -> device.write(tape, labelData), true, timeoutNanos);
+        }
+        return send(printerDevice, tape, device -> device.write(tape, label.newSource()), true, timeoutNanos);
+    }
+
+    private BatchPrintResult printLabels(String serialNumber, Tape tape, Iterator<BufferedImage> labels)
+            throws IOException, InvalidParameterException, PrinterNotFoundException {
+        long start = System.nanoTime();
+        HidDevice printerDevice = findPrinterDevice(serialNumber, tape);
+        validateTape(printerDevice, tape);
+
+        PipelinedLabels pipelinedLabels = new PipelinedLabels(printerDevice, tape, labels);
+        try {
+            if (pipelinedLabels.hasNext()) {
+                send(printerDevice, tape, device -> device.write(tape, pipelinedLabels), false);
+            }
+            pipelinedLabels.allSent();
+        } catch (IOException e) {
+            throw new BatchPrintException(e.getMessage(), e,
+                    batchResult(serialNumber, tape, pipelinedLabels, start));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof InvalidParameterException) {
+                throw (InvalidParameterException) e.getCause();
             }
+            throw e;
+        } finally {
+            pipelinedLabels.cancel();
+        }
+
+        return batchResult(serialNumber, tape, pipelinedLabels, start);
+    }
 
-            var tapeHeight = printerDevice.get().getPrinterConfiguration().getSupportedTapes().get(tape) * BITS_IN_BYTE;
-            if (label.getHeight() != tapeHeight) {
-                log.error("Wrong image height! imageHeight={} targetHeight={}", label.getHeight(), tapeHeight);
-                throw new InvalidParameterException("Wrong image height!");
+    private static BatchPrintResult batchResult(String serialNumber, Tape tape, PipelinedLabels pipelinedLabels,
+                                                long start) {
+        return BatchPrintResult.builder()
+                .serialNumber(serialNumber)
+                .tape(tape)
+                .labelTimes(pipelinedLabels.getLabelTimes())
+                .labelBytes(pipelinedLabels.sentBytes)
+                .batchTime(Duration.ofNanos(System.nanoTime() - start))
+                .build();
+    }
+
+    private HidDevice findPrinterDevice(String serialNumber, Tape tape) throws PrinterNotFoundException {
+        long start = startTimer();
+        HidDevice printerDevice = hidService.findPrinterDevice(serialNumber)
+                .orElseThrow(() -> new PrinterNotFoundException("Printer not found! serialNumber=" + serialNumber));
+        recordTime(PrintMetrics.Stage.LOOKUP, serialNumber, tape, start);
+        return printerDevice;
+    }
+
+    private void validateTape(HidDevice printerDevice, Tape tape) throws InvalidParameterException {
+        var configuration = printerDevice.getPrinterConfiguration();
+        if (!configuration.getSupportedTapes().containsKey(tape)) {
+            log.error("Tape is not supported by printer! tape={}, supportedTapes={}", tape,
+                    configuration.getSupportedTapes());
+            throw new InvalidParameterException("Tape is not supported by printer!");
+        }
+    }
+
+    private void validateLabel(HidDevice printerDevice, Tape tape, int labelHeight) throws InvalidParameterException {
+        validateTape(printerDevice, tape);
+
+        var tapeHeight = printerDevice.getPrinterConfiguration().getSupportedTapes().get(tape) * BITS_IN_BYTE;
+        if (labelHeight != tapeHeight) {
+            log.error("Wrong image height! imageHeight={} targetHeight={}", labelHeight, tapeHeight);
+            throw new InvalidParameterException("Wrong image height!");
+        }
+    }
+
+    private void send(HidDevice printerDevice, Tape tape, ConnectionPool.DeviceOperation operation,
+                      boolean retryable) throws IOException {
+        send(printerDevice, tape, operation, retryable, PrinterLocks.WAIT);
+    }
+
+    // tape is null for requests which do not print, e.g. status; failed label transfers throw a
+    // PartialPrintException once reports have been sent
+    private boolean send(HidDevice printerDevice, Tape tape, ConnectionPool.DeviceOperation operation,
+                         boolean retryable, long timeoutNanos) throws IOException {
+        if (tape != null) {
+            operation = failPartially(operation);
+        }
+        if (instrumented) {
+            operation = instrument(tape, operation);
+        }
+        ReentrantLock lock = printerLocks.lock(printerDevice.getSerialNumber(), timeoutNanos);
+        if (lock == null) {
+            log.debug("Printer is busy! serialNumber={}", printerDevice.getSerialNumber());
+            return false;
+        }
+        try {
+            if (connectionPool != null) {
+                connectionPool.execute(printerDevice, operation, retryable);
+            } else {
+                long start = startTimer();
+                printerDevice.open();
+                recordTime(PrintMetrics.Stage.OPEN, printerDevice.getSerialNumber(), null, start);
+                try {
+                    operation.execute(printerDevice);
+                } finally {
+                    start = startTimer();
+                    printerDevice.close();
+                    recordTime(PrintMetrics.Stage.CLOSE, printerDevice.getSerialNumber(), null, start);
+                }
+            }
+        } catch (IOException e) {
+            var errorMessage = e.getMessage();
+            if (errorMessage != null && errorMessage.contains(PERMISSION_ERROR)) {
+                log.error("Permission denied! You are not allowed to access '{}'. Please grant access to HID.",
+                        printerDevice.getPath());
+            } else {
+                log.error("Could not print label! error={}", e.getMessage());
             }
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    private static HidService createHidService(HidService hidService, PrintServiceOptions options) {
+        if (options.getDeviceRefreshInterval().isZero()) {
+            return hidService;
+        }
+        return new CachingHidService(hidService, options.getDeviceRefreshInterval());
+    }
 
+    private static ConnectionPool.DeviceOperation failPartially(ConnectionPool.DeviceOperation operation) {
+        return device -> {
+            long reports = device.getReportCount();
             try {
-                printerDevice.get().open();
-                printerDevice.get().write(tape, convertLabel(label));
-                printerDevice.get().close();
+                operation.execute(device);
             } catch (IOException e) {
-                var errorMessage = e.getMessage();
-                if (errorMessage != null && errorMessage.contains(PERMISSION_ERROR)) {
-                    log.error("Permission denied! You are not allowed to access '{}'. Please grant access to HID.",
-                            printerDevice.get().getPath());
-                } else {
-                    log.error("Could not print label! error={}", e.getMessage());
+                if (device.getReportCount() != reports && !(e instanceof PartialPrintException)) {
+                    throw new PartialPrintException("Label partially sent! serialNumber=" + device.getSerialNumber()
+                            + ", error=" + e.getMessage(), e);
                 }
                 throw e;
             }
-        } else {
-            throw new PrinterNotFoundException("Printer not found! serialNumber=" + serialNumber);
+        };
+    }
+
+    private ConnectionPool.DeviceOperation instrument(Tape tape, ConnectionPool.DeviceOperation operation) {
+        return device -> {
+            long reports = device.getReportCount();
+            long start = System.nanoTime();
+            operation.execute(device);
+            metrics.recordTime(PrintMetrics.Stage.TRANSFER, device.getSerialNumber(), tape,
+                    System.nanoTime() - start);
+            metrics.recordReports(device.getSerialNumber(), tape, device.getReportCount() - reports);
+        };
+    }
+
+    private byte[] convertLabel(String serialNumber, Tape tape, BufferedImage originalLabel) {
+        long start = startTimer();
+        byte[] labelData = getLabelConverter().convert(originalLabel);
+        if (trimWhitespace) {
+            labelData = LabelConverter.trim(labelData, LabelConverter.bytesPerLine(originalLabel.getHeight()));
+        }
+        if (instrumented) {
+            recordTime(PrintMetrics.Stage.CONVERSION, serialNumber, tape, start);
+            metrics.recordLabelBytes(serialNumber, tape, labelData.length);
         }
+        return labelData;
     }
 
-    private byte[] convertLabel(BufferedImage originalLabel) {
-        BufferedImage label = convertToBinaryImage(originalLabel);
+    private LabelConverter getLabelConverter() {
+        // created on first use, so printing packed labels does not load the AWT classes
+        LabelConverter converter = labelConverter;
+        if (converter == null) {
+            converter = options.getConversionPool() == null
+                    ? new LabelConverter(options.getBinarization())
+                    : new LabelConverter(options.getBinarization(), options.getConversionPool(),
+                            options.getParallelConversionWidth());
+            labelConverter = converter;
+        }
+        return converter;
+    }
 
-        var targetByteCount = (label.getHeight() * label.getWidth()) / BITS_IN_BYTE;
-        byte[] labelData = new byte[targetByteCount];
+    private long startTimer() {
+        return instrumented ? System.nanoTime() : 0;
+    }
 
-        int bytePosition = 0;
-        BitSet bitSet = new BitSet(8);
-        for (int x = label.getWidth() - 1; x >= 0; x--) {
-            for (int y = 0; y < label.getHeight(); y++) {
-                int bitPosition = (BITS_IN_BYTE - 1) - (y % BITS_IN_BYTE);
-                bitSet.set(bitPosition, label.getRGB(x, y) != Color.WHITE.getRGB());
+    private void recordTime(PrintMetrics.Stage stage, String serialNumber, Tape tape, long start) {
+        if (instrumented) {
+            metrics.recordTime(stage, serialNumber, tape, System.nanoTime() - start);
+        }
+    }
 
-                if (log.isDebugEnabled()) {
-                    log.debug("{},{}: {} (bitPosition:{})", x, y, label.getRGB(x, y) != Color.WHITE.getRGB(), bitPosition);
-                }
+    /**
+     * Convert and encode label for the printer without sending it, e.g. to spool it.
+     */
+    EncodedLabel encodeLabel(String serialNumber, Tape tape, BufferedImage label)
+            throws InvalidParameterException, PrinterNotFoundException {
+        HidDevice printerDevice = findPrinterDevice(serialNumber, tape);
+        validateLabel(printerDevice, tape, label.getHeight());
 
-                if (bitPosition == 0) {
-                    byte[] byteArray = bitSet.toByteArray();
-                    labelData[bytePosition++] = byteArray.length == 0 ? 0 : byteArray[0];
-                    bitSet.clear();
-                }
+        byte[] labelData = convertLabel(serialNumber, tape, label);
+        long start = startTimer();
+        EncodedLabel encodedLabel = printerDevice.encode(tape, labelData);
+        recordTime(PrintMetrics.Stage.ENCODING, serialNumber, tape, start);
+        return encodedLabel;
+    }
+
+    /**
+     * Send label encoded by {@link #encodeLabel(String, Tape, BufferedImage)}.
+     *
+     * @param serialNumber serial number of label printer
+     * @param label encoded label
+     * @throws PartialPrintException communication problem after reports have been sent
+     * @throws IOException communication problem before any report was sent
+     * @throws PrinterNotFoundException printer not found
+     */
+    void printEncoded(String serialNumber, EncodedLabel label) throws IOException, PrinterNotFoundException {
+        HidDevice printerDevice = findPrinterDevice(serialNumber, label.getTape());
+        send(printerDevice, label.getTape(), device -> device.write(label), true);
+    }
+
+    PrintMetrics getMetrics() {
+        return metrics;
+    }
+
+    boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Converts the next label in the background while the current one is sent.
+     */
+    private class PipelinedLabels implements Iterator<byte[]> {
+        private final HidDevice printerDevice;
+        private final Tape tape;
+        private final Iterator<BufferedImage> labels;
+        private final List<Long> labelStarts = new ArrayList<>();
+        private CompletableFuture<byte[]> nextLabel;
+        private long labelBytes;
+        // labels sent completely: the device requests the next label only after the previous one has been sent
+        private int sentLabels;
+        private long sentBytes;
+
+        PipelinedLabels(HidDevice printerDevice, Tape tape, Iterator<BufferedImage> labels) {
+            this.printerDevice = printerDevice;
+            this.tape = tape;
+            this.labels = labels;
+            convertNext();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextLabel != null;
+        }
+
+        @Override
+        public byte[] next() {
+            if (nextLabel == null) {
+                throw new NoSuchElementException();
+            }
+            allSent();
+            byte[] labelData = nextLabel.join();
+            convertNext();
+            labelStarts.add(System.nanoTime());
+            labelBytes += labelData.length;
+            return labelData;
+        }
+
+        void allSent() {
+            sentLabels = labelStarts.size();
+            sentBytes = labelBytes;
+        }
+
+        void cancel() {
+            if (nextLabel != null) {
+                nextLabel.cancel(false);
             }
         }
-        return labelData;
-    }
 
-    private BufferedImage convertToBinaryImage(BufferedImage originalLabel) {
-        BufferedImage binaryLabel = new BufferedImage(originalLabel.getWidth(), originalLabel.getHeight(),
-                BufferedImage.TYPE_BYTE_BINARY);
-        Graphics2D graphic = binaryLabel.createGraphics();
-        graphic.drawImage(originalLabel, 0, 0, Color.WHITE, null);
-        graphic.dispose();
+        List<Duration> getLabelTimes() {
+            long end = System.nanoTime();
+            List<Duration> labelTimes = new ArrayList<>(sentLabels);
+            for (int i = 0; i < sentLabels; i++) {
+                long next = i + 1 < labelStarts.size() ? labelStarts.get(i + 1) : end;
+                labelTimes.add(Duration.ofNanos(next - labelStarts.get(i)));
+            }
+            return labelTimes;
+        }
 
-        return binaryLabel;
+        private void convertNext() {
+            if (!labels.hasNext()) {
+                nextLabel = null;
+                return;
+            }
+            BufferedImage label = Objects.requireNonNull(labels.next(), "label");
+            nextLabel = CompletableFuture.supplyAsync(() -> {
+                try {
+                    validateLabel(printerDevice, tape, label.getHeight());
+                } catch (InvalidParameterException e) {
+                    throw new CompletionException(e);
+                }
+                byte[] labelData = convertLabel(printerDevice.getSerialNumber(), tape, label);
+                Path traceDirectory = tracer.sample(printerDevice.getSerialNumber());
+                if (traceDirectory != null) {
+                    tracer.trace(traceDirectory, printerDevice, tape, labelData);
+                }
+                return labelData;
+            });
+        }
     }
 
     private Printer map(HidDevice hidDevice) {
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Settings of a {@link PrintService}.
+ */
+@Value
+@Builder
+public class PrintServiceOptions {
+
+    /**
+     * Interval of the background device scans. Printers are looked up in the cached device registry between
+     * scans. {@link Duration#ZERO} disables the registry, so every lookup scans the USB bus.
+     */
+    @Builder.Default
+    Duration deviceRefreshInterval = Duration.ofSeconds(5);
+
+    /**
+     * Keep the connection to a printer open after a print job, so subsequent jobs skip the HID handshake.
+     */
+    boolean keepConnectionOpen;
+
+    /**
+     * Close connections kept open after this time without print jobs.
+     */
+    @Builder.Default
+    Duration connectionIdleTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Maximum size of the encoded label cache in bytes. Labels printed again with the same pixels, tape and printer
+     * are sent without converting and encoding them. 0 disables the cache.
+     */
+    long labelCacheSize;
+
+    /**
+     * Send blank tape lines as short empty-line commands and drop trailing blank bytes of lines. Applies to the
+     * USB printers created by {@link PrintService#PrintService(java.util.List, PrintServiceOptions)}.
+     */
+    boolean compactEncoding;
+
+    /**
+     * Ask the printer for its status while sending and wait while its buffer is full. Jobs fail when the tape runs
+     * out. Applies to the USB printers created by
+     * {@link PrintService#PrintService(java.util.List, PrintServiceOptions)}.
+     * <p>
+     * <b>Experimental:</b> the status reply is parsed as described in
+     * {@link de.piobyte.dymoprint.service.hid.PrinterStatus}, which has not been verified on hardware. Misread
+     * replies fail jobs as tape out or delay them.
+     */
+    boolean flowControl;
+
+    /**
+     * Remove blank columns at the start and the end of labels, so no tape is wasted on white space. Labels
+     * printed from a {@link de.piobyte.dymoprint.service.hid.LabelSource} are not trimmed.
+     */
+    boolean trimWhitespace;
+
+    /**
+     * Run the workers of a {@link PrintQueue} on virtual threads, so thousands of jobs waiting for printers do not
+     * hold platform threads. Needs Java 21, older runtimes use platform threads.
+     */
+    boolean virtualThreads;
+
+    /**
+     * Conversion of color and grayscale label images to black and white.
+     */
+    @NonNull
+    @Builder.Default
+    Binarization binarization = Binarization.AWT;
+
+    /**
+     * Pool converting wide labels in column stripes, e.g. {@link ForkJoinPool#commonPool()}. Labels are converted
+     * sequentially without a pool.
+     */
+    ForkJoinPool conversionPool;
+
+    /**
+     * Minimum label width in pixel for a parallel conversion on the {@link #conversionPool}. Narrower labels are
+     * converted faster by the calling thread.
+     */
+    @Builder.Default
+    int parallelConversionWidth = 8192;
+
+    /**
+     * Listener of print path timings, e.g. a {@link MicrometerPrintMetrics}.
+     */
+    @NonNull
+    @Builder.Default
+    PrintMetrics metrics = PrintMetrics.NONE;
+
+    /**
+     * Get default settings.
+     *
+     * @return settings
+     */
+    public static PrintServiceOptions defaults() {
+        return PrintServiceOptions.builder().build();
+    }
+}
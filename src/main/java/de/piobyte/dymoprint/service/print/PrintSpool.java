@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.service.hid.EncodedLabel;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Print queue which survives restarts of the JVM.
+ * <p>
+ * Labels are converted and encoded when they are submitted and stored in a journal file (see
+ * {@link SpoolJournal}) before {@link #submit(String, Tape, BufferedImage)} returns. Every printer gets a worker
+ * thread sending its jobs in submission order; jobs which cannot be sent (e.g. printer detached) are retried until
+ * they succeed. A job failing after a part of it reached the printer is not retried, it fails with a
+ * {@link PartialPrintException} so the operator can check the printer. Jobs found in the journal on startup are
+ * sent again as encoded bytes, without rendering. A crash after sending but before the job was marked as done prints
+ * the label twice. Closing the spool fails the results of the jobs which have not been sent with a
+ * {@link CancellationException}, these jobs stay in the journal.
+ */
+@Slf4j
+public class PrintSpool implements Closeable {
+
+    private static final Duration DEFAULT_RETRY_DELAY = Duration.ofSeconds(5);
+
+    private final PrintService printService;
+    private final SpoolJournal journal;
+    private final long retryDelayNanos;
+    private final Map<String, Worker> workers = new ConcurrentHashMap<>();
+    private final Set<Job> outstandingJobs = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pendingJobs = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean closed;
+
+    public PrintSpool(PrintService printService, Path journalFile) throws IOException {
+        this(printService, journalFile, DEFAULT_RETRY_DELAY);
+    }
+
+    /**
+     * Open spool and send the jobs left in the journal.
+     *
+     * @param printService service used to send the labels
+     * @param journalFile journal file, created if it does not exist
+     * @param retryDelay time between attempts to send a job
+     * @throws IOException journal cannot be opened
+     */
+    public PrintSpool(@NonNull PrintService printService, @NonNull Path journalFile, @NonNull Duration retryDelay)
+            throws IOException {
+        if (retryDelay.isNegative()) {
+            throw new IllegalArgumentException("Retry delay must not be negative!");
+        }
+        this.printService = printService;
+        this.retryDelayNanos = retryDelay.toNanos();
+        this.journal = new SpoolJournal(journalFile);
+        for (SpoolJournal.Entry entry : journal.getPendingEntries()) {
+            enqueue(new Job(entry, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Spool label. The label is converted, encoded and durably stored when the method returns; it is sent in the
+     * background.
+     *
+     * @param serialNumber serial number of label printer
+     * @param tape installed tape type
+     * @param label image of label
+     * @return result of the print job
+     * @throws IOException journal cannot be written
+     * @throws InvalidParameterException invalid parameter passed (e.g. unsupported tape)
+     * @throws PrinterNotFoundException printer not found, needed to encode the label
+     */
+    public CompletableFuture<PrintResult> submit(@NonNull String serialNumber, @NonNull Tape tape,
+                                                 @NonNull BufferedImage label)
+            throws IOException, InvalidParameterException, PrinterNotFoundException {
+        if (closed) {
+            throw new RejectedExecutionException("Print spool is closed!");
+        }
+        long submitted = System.nanoTime();
+        EncodedLabel encodedLabel = printService.encodeLabel(serialNumber, tape, label);
+        SpoolJournal.Entry entry;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new RejectedExecutionException("Print spool is closed!");
+            }
+            entry = journal.append(serialNumber, encodedLabel);
+        } finally {
+            lock.unlock();
+        }
+        journal.sync(entry.getSequence());
+        Job job = new Job(entry, submitted);
+        enqueue(job);
+        return job.result;
+    }
+
+    /**
+     * Get number of jobs which have not been sent yet.
+     *
+     * @return number of jobs
+     */
+    public int getPendingJobCount() {
+        return pendingJobs.get();
+    }
+
+    /**
+     * Stop sending. Jobs which have not been sent stay in the journal and are sent by the next spool opened on it,
+     * their results fail with a {@link CancellationException}.
+     *
+     * @throws IOException journal cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        workers.values().forEach(worker -> worker.thread.interrupt());
+        for (Worker worker : workers.values()) {
+            try {
+                worker.thread.join(TimeUnit.NANOSECONDS.toMillis(retryDelayNanos) + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        outstandingJobs.forEach(PrintSpool::cancel);
+        // a worker still sending after the timeout cannot mark its job as done anymore, it is sent again
+        journal.close();
+    }
+
+    private void enqueue(Job job) {
+        lock.lock();
+        try {
+            if (closed) {
+                // closed after the job was journaled, it is sent by the next spool
+                cancel(job);
+                return;
+            }
+            pendingJobs.incrementAndGet();
+            outstandingJobs.add(job);
+            String key = job.entry.getSerialNumber().toUpperCase(Locale.ROOT);
+            workers.computeIfAbsent(key, Worker::new).jobs.add(job);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void cancel(Job job) {
+        job.result.completeExceptionally(new CancellationException("Print spool closed before the job was sent! "
+                + "jobId=" + job.entry.getJobId()));
+    }
+
+    private static class Job {
+        private final SpoolJournal.Entry entry;
+        private final long submitted;
+        private final CompletableFuture<PrintResult> result = new CompletableFuture<>();
+
+        Job(SpoolJournal.Entry entry, long submitted) {
+            this.entry = entry;
+            this.submitted = submitted;
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final BlockingQueue<Job> jobs = new LinkedBlockingQueue<>();
+        private final Thread thread;
+
+        Worker(String key) {
+            thread = JobThreads.factory("dymo-print-spool-" + key, printService.isVirtualThreads()).newThread(this);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    send(jobs.take());
+                }
+            } catch (InterruptedException e) {
+                // closed
+            }
+        }
+
+        private void send(Job job) throws InterruptedException {
+            String serialNumber = job.entry.getSerialNumber();
+            EncodedLabel label = job.entry.getLabel();
+            long started = System.nanoTime();
+            Exception failure = null;
+            while (true) {
+                try {
+                    printService.printEncoded(serialNumber, label);
+                    break;
+                } catch (PartialPrintException e) {
+                    if (closed) {
+                        // interrupted by close, the job stays in the journal like after a crash
+                        throw new InterruptedException();
+                    }
+                    // sending it again could print the label twice, the operator has to check the printer
+                    log.error("Spooled job partially sent, not retrying! Please check the printer. serialNumber={}, "
+                            + "jobId={}, error={}", serialNumber, job.entry.getJobId(), e.getMessage());
+                    failure = e;
+                    break;
+                } catch (RuntimeException e) {
+                    // not caused by the printer, retrying does not help
+                    log.error("Spooled job failed! serialNumber={}, jobId={}, error={}", serialNumber,
+                            job.entry.getJobId(), e.getMessage());
+                    failure = e;
+                    break;
+                } catch (IOException | PrinterNotFoundException e) {
+                    log.warn("Could not send spooled job, retrying! serialNumber={}, jobId={}, error={}",
+                            serialNumber, job.entry.getJobId(), e.getMessage());
+                    TimeUnit.NANOSECONDS.sleep(retryDelayNanos);
+                    if (closed) {
+                        throw new InterruptedException();
+                    }
+                }
+            }
+            long finished = System.nanoTime();
+            try {
+                journal.complete(job.entry);
+            } catch (IOException e) {
+                // printed again after a restart
+                log.error("Could not mark spooled job as done! serialNumber={}, jobId={}, error={}",
+                        serialNumber, job.entry.getJobId(), e.getMessage());
+            }
+            pendingJobs.decrementAndGet();
+            outstandingJobs.remove(job);
+            if (failure != null) {
+                job.result.completeExceptionally(failure);
+                return;
+            }
+            job.result.complete(PrintResult.builder()
+                    .serialNumber(serialNumber)
+                    .tape(label.getTape())
+                    .queueTime(Duration.ofNanos(started - job.submitted))
+                    .printTime(Duration.ofNanos(finished - started))
+                    .build());
+        }
+    }
+}
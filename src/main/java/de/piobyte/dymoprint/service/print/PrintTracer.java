@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.service.hid.HidDevice;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Captures print jobs for troubleshooting, see {@link PrintService#getTracer()}.
+ * <p>
+ * Tracing is switched on per printer and samples every n-th job. A traced job is written as a single plain PBM
+ * image of the converted label. The header comments of the image contain the job data and a hex dump of the
+ * command stream as encoded by the device, so the file can be opened by image viewers and read as text. Labels
+ * printed from a {@link de.piobyte.dymoprint.service.hid.LabelSource} are not traced.
+ */
+@Slf4j
+public class PrintTracer {
+
+    private static final int HEX_DUMP_WIDTH = 16;
+    private static final int PBM_LINE_WIDTH = 70;
+
+    private final Map<String, Sampling> samplings = new ConcurrentHashMap<>();
+    private final AtomicLong traceCount = new AtomicLong();
+
+    /**
+     * Trace every n-th job of a printer.
+     *
+     * @param serialNumber serial number of label printer
+     * @param sampleInterval trace one of this many jobs, 1 traces every job
+     * @param directory target directory of the trace files
+     */
+    public void enable(@NonNull String serialNumber, int sampleInterval, @NonNull Path directory) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("Sample interval must be positive! sampleInterval=" + sampleInterval);
+        }
+        samplings.put(key(serialNumber), new Sampling(sampleInterval, directory));
+        log.info("Tracing enabled. serialNumber={}, sampleInterval={}, directory={}", serialNumber, sampleInterval,
+                directory);
+    }
+
+    /**
+     * Stop tracing jobs of a printer.
+     *
+     * @param serialNumber serial number of label printer
+     */
+    public void disable(@NonNull String serialNumber) {
+        if (samplings.remove(key(serialNumber)) != null) {
+            log.info("Tracing disabled. serialNumber={}", serialNumber);
+        }
+    }
+
+    public boolean isEnabled(@NonNull String serialNumber) {
+        return samplings.containsKey(key(serialNumber));
+    }
+
+    /**
+     * Get number of written traces.
+     *
+     * @return trace count
+     */
+    public long getTraceCount() {
+        return traceCount.get();
+    }
+
+    /**
+     * Count a job and decide whether it is traced.
+     *
+     * @param serialNumber serial number of label printer
+     * @return target directory if the job is traced, null otherwise
+     */
+    Path sample(String serialNumber) {
+        if (samplings.isEmpty()) {
+            return null;
+        }
+        Sampling sampling = samplings.get(key(serialNumber));
+        if (sampling == null || sampling.jobs.getAndIncrement() % sampling.interval != 0) {
+            return null;
+        }
+        return sampling.directory;
+    }
+
+    /**
+     * Write trace of a job. Failures are logged and do not affect printing.
+     *
+     * @param directory target directory
+     * @param device printer device
+     * @param tape tape of the job
+     * @param labelData bit-matrix of the label
+     */
+    void trace(Path directory, HidDevice device, Tape tape, byte[] labelData) {
+        long sequence = traceCount.incrementAndGet();
+        Instant timestamp = Instant.now();
+        Path file = directory.resolve(String.format("%s-%d-%06d.pbm", device.getSerialNumber(),
+                timestamp.toEpochMilli(), sequence));
+        try {
+            Files.createDirectories(directory);
+            byte[] commands = device.encode(tape, labelData).getData();
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+                writeTrace(writer, device, tape, timestamp, labelData, commands);
+            }
+            log.info("Trace written. serialNumber={}, file={}", device.getSerialNumber(), file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write trace! serialNumber={}, error={}", device.getSerialNumber(), e.getMessage());
+        }
+    }
+
+    private static void writeTrace(BufferedWriter writer, HidDevice device, Tape tape, Instant timestamp,
+                                   byte[] labelData, byte[] commands) throws IOException {
+        int bytesPerLine = device.getPrinterConfiguration().getSupportedTapes().get(tape);
+        int height = bytesPerLine * Byte.SIZE;
+        int width = labelData.length / bytesPerLine;
+
+        writer.write("P1\n");
+        writer.write("# serialNumber=" + device.getSerialNumber() + "\n");
+        writer.write("# printer=" + device.getPrinterConfiguration().getName() + "\n");
+        writer.write("# tape=" + tape + "\n");
+        writer.write("# timestamp=" + timestamp + "\n");
+        writer.write("# labelBytes=" + labelData.length + ", commandBytes=" + commands.length + "\n");
+        for (int offset = 0; offset < commands.length; offset += HEX_DUMP_WIDTH) {
+            StringBuilder line = new StringBuilder(String.format("# %08x ", offset));
+            for (int i = offset; i < Math.min(offset + HEX_DUMP_WIDTH, commands.length); i++) {
+                line.append(String.format(" %02x", commands[i]));
+            }
+            writer.write(line.append('\n').toString());
+        }
+        writer.write(width + " " + height + "\n");
+
+        // the first tape line is the rightmost column of the label
+        StringBuilder row = new StringBuilder(PBM_LINE_WIDTH + 1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int line = width - 1 - x;
+                boolean ink = (labelData[line * bytesPerLine + y / Byte.SIZE] & 0x80 >>> y % Byte.SIZE) != 0;
+                row.append(ink ? '1' : '0');
+                if (row.length() == PBM_LINE_WIDTH) {
+                    writer.write(row.append('\n').toString());
+                    row.setLength(0);
+                }
+            }
+        }
+        if (row.length() > 0) {
+            writer.write(row.append('\n').toString());
+        }
+    }
+
+    private static String key(String serialNumber) {
+        return serialNumber.toUpperCase(Locale.ROOT);
+    }
+
+    private static class Sampling {
+        private final int interval;
+        private final Path directory;
+        private final AtomicLong jobs = new AtomicLong();
+
+        Sampling(int interval, Path directory) {
+            this.interval = interval;
+            this.directory = directory;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks guarding printers by serial number. A printer always maps to the same lock, no matter how many
+ * device objects the HID backend creates for it, and printers mapped to different stripes are used in parallel.
+ */
+class PrinterLocks {
+
+    static final long WAIT = -1;
+
+    private final ReentrantLock[] locks;
+
+    /**
+     * Create locks.
+     *
+     * @param stripes number of locks, a power of two
+     */
+    PrinterLocks(int stripes) {
+        if (stripes < 1 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripes must be a power of two! stripes=" + stripes);
+        }
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Lock printer.
+     *
+     * @param serialNumber serial number of printer
+     * @param timeoutNanos maximum time to wait, {@link #WAIT} waits without limit
+     * @return lock to release after use, {@code null} if the timeout elapsed
+     * @throws InterruptedIOException interrupted while waiting
+     */
+    ReentrantLock lock(String serialNumber, long timeoutNanos) throws InterruptedIOException {
+        ReentrantLock lock = get(serialNumber);
+        if (timeoutNanos == WAIT) {
+            lock.lock();
+            return lock;
+        }
+        try {
+            return lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS) ? lock : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for printer! serialNumber=" + serialNumber);
+        }
+    }
+
+    ReentrantLock get(String serialNumber) {
+        int hash = serialNumber.hashCode();
+        return locks[(hash ^ hash >>> 16) & locks.length - 1];
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Dispatches print jobs to a group of identical printers.
+ * <p>
+ * A job is sent to the compatible printer with the lowest expected waiting time, i.e. queue depth times the recent
+ * print time of the printer. If a printer is removed or fails with a communication error, it is skipped for a
+ * while and its jobs are printed by another printer, unless a part of the label has already been sent; such jobs
+ * fail with a {@link PartialPrintException}. Jobs submitted with the same affinity key are printed by the
+ * same printer in submission order as long as earlier jobs of the key are pending and the printer is available.
+ */
+@Slf4j
+public class PrinterPool implements Closeable {
+
+    private final static int DEFAULT_CAPACITY = 100;
+    private final static Duration SUSPENSION = Duration.ofSeconds(5);
+    private final static double PRINT_TIME_WEIGHT = 0.3;
+
+    private final PrintService printService;
+    private final PrintQueue printQueue;
+    private final int capacity;
+    private final Map<String, Double> printTimes = new ConcurrentHashMap<>();
+    private final Map<String, Long> suspendedUntil = new ConcurrentHashMap<>();
+    private final Map<String, Affinity> affinities = new HashMap<>();
+
+    public PrinterPool(PrintService printService) {
+        this(printService, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create printer pool.
+     *
+     * @param printService service used to print the labels
+     * @param capacity maximum number of waiting jobs per printer
+     */
+    public PrinterPool(@NonNull PrintService printService, int capacity) {
+        this.printService = printService;
+        this.printQueue = new PrintQueue(printService, capacity, PrintQueue.OverflowPolicy.REJECT);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Submit label to the least loaded printer supporting the tape.
+     * <p>
+     * The returned future fails with a {@link PrinterNotFoundException} if no compatible printer is available and
+     * with a {@link RejectedExecutionException} if the queues of all compatible printers are full. The printer
+     * which printed the label is passed in the {@link PrintResult}.
+     *
+     * @param tape tape type
+     * @param label image of label
+     * @return result of print job
+     */
+    public CompletableFuture<PrintResult> submit(@NonNull Tape tape, @NonNull BufferedImage label) {
+        return dispatch(null, tape, label);
+    }
+
+    /**
+     * Submit label which is printed after the pending jobs of the same affinity key by the same printer. The key is
+     * not a serial number: the first job of a key goes to the least loaded printer, which is remembered for the key
+     * until all its jobs are finished. If that printer becomes unavailable, the next job picks a new one.
+     *
+     * @param affinityKey key of related jobs, e.g. a packing station or order
+     * @param tape tape type
+     * @param label image of label
+     * @return result of print job
+     */
+    public CompletableFuture<PrintResult> submitWithAffinity(@NonNull String affinityKey, @NonNull Tape tape,
+                                                             @NonNull BufferedImage label) {
+        return dispatch(affinityKey, tape, label);
+    }
+
+    /**
+     * Get number of waiting and running jobs of a printer.
+     *
+     * @param serialNumber serial number of label printer
+     * @return number of jobs
+     */
+    public int getQueueDepth(@NonNull String serialNumber) {
+        return printQueue.getQueueDepth(serialNumber);
+    }
+
+    /**
+     * Stop accepting jobs. Jobs already submitted are still printed.
+     */
+    @Override
+    public void close() {
+        printQueue.close();
+    }
+
+    private CompletableFuture<PrintResult> dispatch(String affinityKey, Tape tape, BufferedImage label) {
+        CompletableFuture<PrintResult> result = new CompletableFuture<>();
+        dispatch(result, affinityKey, tape, label, new HashSet<>());
+        return result;
+    }
+
+    private void dispatch(CompletableFuture<PrintResult> result, String affinityKey, Tape tape, BufferedImage label,
+                          Set<String> failedPrinters) {
+        String serialNumber;
+        try {
+            // the lookup may scan the USB devices, so it is done before the pool is locked
+            List<Printer> printers = printService.listAvailablePrinters();
+            serialNumber = selectPrinter(printers, affinityKey, tape, failedPrinters);
+        } catch (PrinterNotFoundException | RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        CompletableFuture<PrintResult> job = printQueue.submit(serialNumber, tape, label);
+        result.whenComplete((printResult, throwable) -> job.cancel(false));
+        job.whenComplete((printResult, throwable) -> {
+            release(affinityKey);
+            if (throwable == null) {
+                recordPrintTime(serialNumber, printResult.getPrintTime());
+                result.complete(printResult);
+                return;
+            }
+
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof PartialPrintException) {
+                // a part of the label was printed, another printer would print it again
+                log.error("Printer failed after sending a part of the label! serialNumber={}, error={}",
+                        serialNumber, cause.getMessage());
+                suspendedUntil.put(serialNumber, System.nanoTime() + SUSPENSION.toNanos());
+                result.completeExceptionally(cause);
+            } else if (cause instanceof PrinterNotFoundException || cause instanceof IOException) {
+                log.warn("Printer failed, trying next printer! serialNumber={}, error={}", serialNumber,
+                        cause.getMessage());
+                suspendedUntil.put(serialNumber, System.nanoTime() + SUSPENSION.toNanos());
+                failedPrinters.add(serialNumber);
+                if (!result.isDone()) {
+                    dispatch(result, affinityKey, tape, label, failedPrinters);
+                }
+            } else {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    private synchronized String selectPrinter(List<Printer> printers, String affinityKey, Tape tape,
+                                              Set<String> failedPrinters) throws PrinterNotFoundException {
+        long now = System.nanoTime();
+        List<String> candidates = printers.stream()
+                .filter(printer -> printer.getLabelHeight().containsKey(tape))
+                .map(Printer::getSerialNumber)
+                .filter(serialNumber -> !failedPrinters.contains(serialNumber))
+                .filter(serialNumber -> suspendedUntil.getOrDefault(serialNumber, now) - now <= 0)
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            throw new PrinterNotFoundException("No printer available! tape=" + tape);
+        }
+
+        Affinity affinity = affinityKey == null ? null : affinities.get(affinityKey);
+        String serialNumber;
+        if (affinity != null && candidates.contains(affinity.serialNumber)) {
+            serialNumber = affinity.serialNumber;
+        } else {
+            // printers without finished jobs are assumed to be as fast as the others
+            double defaultPrintTime = printTimes.values().stream().mapToDouble(Double::doubleValue).average()
+                    .orElse(1);
+            serialNumber = candidates.stream()
+                    .filter(candidate -> printQueue.getQueueDepth(candidate) < capacity)
+                    .min(Comparator.<String>comparingDouble(candidate ->
+                                    getExpectedWaitingTime(candidate, defaultPrintTime))
+                            .thenComparingInt(printQueue::getQueueDepth))
+                    .orElseThrow(() -> new RejectedExecutionException("Queues of all printers are full! tape="
+                            + tape));
+        }
+
+        if (affinityKey != null) {
+            if (affinity == null) {
+                affinity = new Affinity();
+                affinities.put(affinityKey, affinity);
+            }
+            affinity.serialNumber = serialNumber;
+            affinity.pendingJobs++;
+        }
+        return serialNumber;
+    }
+
+    private synchronized void release(String affinityKey) {
+        if (affinityKey == null) {
+            return;
+        }
+        Affinity affinity = affinities.get(affinityKey);
+        if (affinity != null && --affinity.pendingJobs == 0) {
+            affinities.remove(affinityKey);
+        }
+    }
+
+    private double getExpectedWaitingTime(String serialNumber, double defaultPrintTime) {
+        return (printQueue.getQueueDepth(serialNumber) + 1) * printTimes.getOrDefault(serialNumber, defaultPrintTime);
+    }
+
+    private void recordPrintTime(String serialNumber, Duration printTime) {
+        printTimes.merge(serialNumber, (double) printTime.toNanos(), (average, sample) ->
+                average + PRINT_TIME_WEIGHT * (sample - average));
+    }
+
+    private static class Affinity {
+        private String serialNumber;
+        private int pendingJobs;
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.service.hid.EncodedLabel;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of spooled jobs in a memory-mapped file.
+ * <p>
+ * The file starts with a magic number followed by records:
+ * <pre>
+ * int length | int crc32 | byte type | long jobId | JOB: byte tape, short serial length, serial, encoded data
+ * </pre>
+ * A {@code JOB} record holds the encoded label, a {@code DONE} record marks the job as printed. On open, the
+ * records are scanned up to the first zero length or checksum mismatch, i.e. a record torn by a crash, and the
+ * journal continues there. Callers of {@link #sync(long)} share one {@code msync} (group commit). Once the done
+ * jobs take more space than the pending ones, the pending jobs are rewritten into a new file which atomically
+ * replaces the journal. If that fails, the journal is not compacted again until it is reopened.
+ */
+@Slf4j
+class SpoolJournal implements Closeable {
+
+    private static final long MAGIC = 0x44594d4f53504c31L; // "DYMOSPL1"
+    private static final int HEADER_SIZE = Long.BYTES;
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final byte JOB = 1;
+    private static final byte DONE = 2;
+    private static final int MIN_CAPACITY = 1 << 20;
+    private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+    private final Path file;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition synced = lock.newCondition();
+    private final Map<Long, Entry> pending = new LinkedHashMap<>();
+    private final long compactionBytes;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long nextJobId = 1;
+    private long pendingBytes;
+    private long appended;
+    private long durable;
+    private boolean syncing;
+    private boolean compactionFailed;
+    private boolean closed;
+
+    SpoolJournal(Path file) throws IOException {
+        this(file, MIN_COMPACTION_BYTES);
+    }
+
+    SpoolJournal(Path file, long compactionBytes) throws IOException {
+        this.file = file;
+        this.compactionBytes = compactionBytes;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(MIN_CAPACITY, channel.size()));
+        if (created) {
+            buffer.putLong(0, MAGIC);
+            buffer.position(HEADER_SIZE);
+            buffer.force();
+            channel.force(true);
+        } else {
+            recover();
+        }
+    }
+
+    /**
+     * Get jobs which have not been completed, in journal order.
+     *
+     * @return pending jobs
+     */
+    List<Entry> getPendingEntries() {
+        lock.lock();
+        try {
+            return new ArrayList<>(pending.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Append job. The job is durable after {@link #sync(long)} with the sequence of the returned entry.
+     *
+     * @param serialNumber serial number of the printer
+     * @param label encoded label
+     * @return journal entry of the job
+     * @throws IOException journal cannot grow or is closed
+     */
+    Entry append(String serialNumber, EncodedLabel label) throws IOException {
+        if (serialNumber.getBytes(StandardCharsets.UTF_8).length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Serial number too long!");
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Spool journal is closed! file=" + file);
+            }
+            Entry entry = new Entry(nextJobId++, serialNumber, label, appended + 1);
+            write(jobRecord(entry));
+            pending.put(entry.getJobId(), entry);
+            pendingBytes += entry.getRecordSize();
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Mark job as printed. The record is made durable with the next sync; after a crash before, the job is printed
+     * again. Does nothing after the journal was closed, the job is printed again when the journal is reopened.
+     *
+     * @param entry printed job
+     * @throws IOException journal cannot grow
+     */
+    void complete(Entry entry) throws IOException {
+        lock.lock();
+        try {
+            if (closed || pending.remove(entry.getJobId()) == null) {
+                return;
+            }
+            pendingBytes -= entry.getRecordSize();
+            write(ByteBuffer.allocate(1 + Long.BYTES).put(DONE).putLong(entry.getJobId()).flip());
+            long doneBytes = buffer.position() - HEADER_SIZE - pendingBytes;
+            if (!compactionFailed && doneBytes >= compactionBytes && doneBytes > pendingBytes) {
+                compact();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the journal is durable up to the record of the given sequence. Concurrent callers share one flush
+     * of the mapped file. Returns immediately after the journal was closed, closing flushes all records.
+     *
+     * @param sequence sequence of an entry returned by {@link #append(String, EncodedLabel)}
+     * @throws IOException flush failed
+     */
+    void sync(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (durable < sequence && !closed) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                long target = appended;
+                MappedByteBuffer flushed = buffer;
+                lock.unlock();
+                try {
+                    flushed.force();
+                } finally {
+                    lock.lock();
+                    syncing = false;
+                    synced.signalAll();
+                }
+                durable = Math.max(durable, target);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get size of the journal content.
+     *
+     * @return size in bytes
+     */
+    long size() {
+        lock.lock();
+        try {
+            return buffer.position();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // called with lock held
+    private void write(ByteBuffer body) throws IOException {
+        int recordSize = RECORD_HEADER_SIZE + body.remaining();
+        ensureCapacity(recordSize);
+        buffer.putInt(body.remaining()).putInt(crc(body)).put(body);
+        appended++;
+    }
+
+    private void ensureCapacity(int recordSize) throws IOException {
+        if (buffer.remaining() >= recordSize + Integer.BYTES) {
+            return;
+        }
+        long required = (long) buffer.position() + recordSize + Integer.BYTES;
+        long capacity = Math.min(Integer.MAX_VALUE, Math.max(required, 2L * buffer.capacity()));
+        if (capacity < required) {
+            throw new IOException("Spool journal is full! file=" + file);
+        }
+        int position = buffer.position();
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer.position(position);
+        channel.force(true);
+    }
+
+    private void recover() throws IOException {
+        if (buffer.getLong(0) != MAGIC) {
+            throw new IOException("Not a spool journal! file=" + file);
+        }
+        int position = HEADER_SIZE;
+        int limit = buffer.capacity() - Integer.BYTES;
+        long records = 0;
+        while (position + RECORD_HEADER_SIZE <= limit) {
+            int length = buffer.getInt(position);
+            if (length < 1 + Long.BYTES || length > limit - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+            ByteBuffer body = buffer.duplicate();
+            body.position(position + RECORD_HEADER_SIZE).limit(position + RECORD_HEADER_SIZE + length);
+            if (crc(body) != buffer.getInt(position + Integer.BYTES)) {
+                break;
+            }
+            readRecord(body, RECORD_HEADER_SIZE + length);
+            position += RECORD_HEADER_SIZE + length;
+            records++;
+        }
+        buffer.position(position);
+        if (position + Integer.BYTES <= buffer.capacity() && buffer.getInt(position) != 0) {
+            // clear the torn record, so its rest is not read behind the next appended record
+            byte[] zeros = new byte[Math.min(MIN_CAPACITY, buffer.capacity() - position)];
+            ByteBuffer rest = buffer.duplicate();
+            while (rest.hasRemaining()) {
+                rest.put(zeros, 0, Math.min(zeros.length, rest.remaining()));
+            }
+            log.warn("Spool journal ends with a torn record! file={}, position={}", file, position);
+        }
+        appended = durable = records;
+        log.info("Spool journal recovered. file={}, records={}, pendingJobs={}", file, records, pending.size());
+    }
+
+    private void readRecord(ByteBuffer body, int recordSize) throws IOException {
+        byte type = body.get();
+        long jobId = body.getLong();
+        nextJobId = Math.max(nextJobId, jobId + 1);
+        if (type == DONE) {
+            Entry entry = pending.remove(jobId);
+            if (entry != null) {
+                pendingBytes -= entry.getRecordSize();
+            }
+        } else if (type == JOB) {
+            Tape tape = Tape.values()[body.get()];
+            byte[] serial = new byte[body.getShort()];
+            body.get(serial);
+            byte[] data = new byte[body.remaining()];
+            body.get(data);
+            pending.put(jobId, new Entry(jobId, new String(serial, StandardCharsets.UTF_8),
+                    new EncodedLabel(tape, data), 0));
+            pendingBytes += recordSize;
+        } else {
+            throw new IOException("Unknown spool record! type=" + type + ", file=" + file);
+        }
+    }
+
+    private static ByteBuffer jobRecord(Entry entry) {
+        byte[] serial = entry.getSerialNumber().getBytes(StandardCharsets.UTF_8);
+        byte[] data = entry.getLabel().getData();
+        return ByteBuffer.allocate(entry.getRecordSize() - RECORD_HEADER_SIZE)
+                .put(JOB)
+                .putLong(entry.getJobId())
+                .put((byte) entry.getLabel().getTape().ordinal())
+                .putShort((short) serial.length)
+                .put(serial)
+                .put(data)
+                .flip();
+    }
+
+    private static int crc(ByteBuffer body) {
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private void compact() throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        long before = buffer.position();
+        try {
+            try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                target.write(ByteBuffer.allocate(HEADER_SIZE).putLong(MAGIC).flip());
+                for (Entry entry : pending.values()) {
+                    ByteBuffer body = jobRecord(entry);
+                    target.write(ByteBuffer.allocate(RECORD_HEADER_SIZE).putInt(body.remaining())
+                            .putInt(crc(body)).flip());
+                    target.write(body);
+                }
+                target.force(true);
+            }
+            Files.move(compacted, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // e.g. the mapped journal cannot be replaced on Windows; failing again on every completed job would
+            // rewrite the pending jobs each time
+            log.warn("Could not compact spool journal, not compacting until it is reopened! file={}, error={}", file,
+                    e.getMessage());
+            compactionFailed = true;
+            try {
+                Files.deleteIfExists(compacted);
+            } catch (IOException deleteFailure) {
+                log.warn("Could not delete compacted spool journal! file={}, error={}", compacted,
+                        deleteFailure.getMessage());
+            }
+            return;
+        }
+        syncDirectory();
+        channel.close();
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int size = (int) channel.size();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(MIN_CAPACITY, 2L * size));
+        buffer.position(size);
+        durable = appended;
+        log.debug("Spool journal compacted. file={}, sizeBefore={}, sizeAfter={}", file, before, size);
+    }
+
+    private void syncDirectory() {
+        try (FileChannel directory = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // not supported on all platforms
+        }
+    }
+
+    /**
+     * Spooled job.
+     */
+    @Value
+    static class Entry {
+        long jobId;
+        String serialNumber;
+        EncodedLabel label;
+        /**
+         * Position in the append order, see {@link #sync(long)}. 0 for recovered jobs.
+         */
+        long sequence;
+
+        int getRecordSize() {
+            return RECORD_HEADER_SIZE + 1 + Long.BYTES + 1 + Short.BYTES
+                    + serialNumber.getBytes(StandardCharsets.UTF_8).length + label.getData().length;
+        }
+    }
+}
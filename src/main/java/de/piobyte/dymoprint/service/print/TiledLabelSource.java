@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.service.hid.LabelSource;
+
+import lombok.NonNull;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * Label source which renders the label tile by tile. Only one tile exists in memory, so labels of arbitrary width
+ * can be printed.
+ */
+public class TiledLabelSource implements LabelSource {
+
+    private final static int DEFAULT_TILE_WIDTH = 256;
+
+    private final LabelConverter labelConverter = new LabelConverter();
+    private final int height;
+    private final int bytesPerLine;
+    private final TileRenderer renderer;
+    private final BufferedImage tile;
+    private int remainingColumns;
+
+    public TiledLabelSource(int width, int height, @NonNull TileRenderer renderer) {
+        this(width, height, DEFAULT_TILE_WIDTH, renderer);
+    }
+
+    /**
+     * Create label source.
+     *
+     * @param width label width in pixel
+     * @param height label height in pixel, a multiple of 8
+     * @param tileWidth maximum width of a tile in pixel
+     * @param renderer renderer of label
+     */
+    public TiledLabelSource(int width, int height, int tileWidth, @NonNull TileRenderer renderer) {
+        if (width < 0 || tileWidth < 1) {
+            throw new IllegalArgumentException("Invalid width! width=" + width + ", tileWidth=" + tileWidth);
+        }
+        this.height = height;
+        this.bytesPerLine = LabelConverter.bytesPerLine(height);
+        this.renderer = renderer;
+        this.tile = new BufferedImage(Math.max(1, Math.min(width, tileWidth)), height, BufferedImage.TYPE_BYTE_BINARY);
+        this.remainingColumns = width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int readLines(byte[] buffer) {
+        int lines = Math.min(Math.min(buffer.length / bytesPerLine, tile.getWidth()), remainingColumns);
+        if (lines == 0) {
+            return 0;
+        }
+
+        int fromX = remainingColumns - lines;
+        Graphics2D graphics = tile.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, tile.getWidth(), height);
+            graphics.setColor(Color.BLACK);
+            graphics.clipRect(0, 0, lines, height);
+            graphics.translate(-fromX, 0);
+            renderer.render(graphics, fromX, lines);
+        } finally {
+            graphics.dispose();
+        }
+        labelConverter.pack(tile, 0, lines, buffer, 0);
+        remainingColumns = fromX;
+        return lines;
+    }
+
+    @FunctionalInterface
+    public interface TileRenderer {
+
+        /**
+         * Render part of the label. The graphics context uses label coordinates and is clipped to the tile, so
+         * the renderer may draw the whole label.
+         *
+         * @param graphics graphics context of tile, white background and black color
+         * @param x first column of tile
+         * @param width width of tile
+         */
+        void render(Graphics2D graphics, int x, int width);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print.layout;
+
+/**
+ * 1-bit drawing surface in tape orientation. Every column is a {@code long}, the most significant bit is the top
+ * pixel and a set bit means ink, so tapes up to 64 pixel are supported.
+ */
+final class Canvas {
+
+    static final int MAX_HEIGHT = Long.SIZE;
+
+    private final long[] columns;
+    private final int height;
+    private final long mask;
+
+    Canvas(int width, int height) {
+        this.columns = new long[width];
+        this.height = height;
+        this.mask = height == MAX_HEIGHT ? -1L : ~(-1L >>> height);
+    }
+
+    int getWidth() {
+        return columns.length;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Set pixels of a column.
+     *
+     * @param x column
+     * @param y row of the most significant bit of the pixels
+     * @param pixels pixels, most significant bit first
+     */
+    void draw(int x, int y, long pixels) {
+        if (x < 0 || x >= columns.length || y >= MAX_HEIGHT || y <= -MAX_HEIGHT) {
+            return;
+        }
+        columns[x] |= (y >= 0 ? pixels >>> y : pixels << -y) & mask;
+    }
+
+    /**
+     * Set pixels of several columns.
+     *
+     * @param x first column
+     * @param y row of the most significant bits
+     * @param bitmap pixels per column, most significant bit first
+     */
+    void draw(int x, int y, long[] bitmap) {
+        for (int i = 0; i < bitmap.length; i++) {
+            draw(x + i, y, bitmap[i]);
+        }
+    }
+
+    void fill(int x, int width, int y, int height) {
+        if (height <= 0) {
+            return;
+        }
+        long pixels = height >= MAX_HEIGHT ? -1L : ~(-1L >>> height);
+        for (int i = x; i < x + width; i++) {
+            draw(i, y, pixels);
+        }
+    }
+
+    long getColumn(int x) {
+        return columns[x];
+    }
+}
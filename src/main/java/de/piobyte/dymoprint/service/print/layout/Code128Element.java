@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print.layout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Code 128 barcode over the full label height with a quiet zone of 10 modules on both sides. Printable ASCII is
+ * encoded in code set B, runs of digits in code set C.
+ */
+class Code128Element implements LayoutElement {
+
+    private static final String[] PATTERNS = {
+            "212222", "222122", "222221", "121223", "121322", "131222", "122213", "122312",
+            "132212", "221213", "221312", "231212", "112232", "122132", "122231", "113222",
+            "123122", "123221", "223211", "221132", "221231", "213212", "223112", "312131",
+            "311222", "321122", "321221", "312212", "322112", "322211", "212123", "212321",
+            "232121", "111323", "131123", "131321", "112313", "132113", "132311", "211313",
+            "231113", "231311", "112133", "112331", "132131", "113123", "113321", "133121",
+            "313121", "211331", "231131", "213113", "213311", "213131", "311123", "311321",
+            "331121", "312113", "312311", "332111", "314111", "221411", "431111", "111224",
+            "111422", "121124", "121421", "141122", "141221", "112214", "112412", "122114",
+            "122411", "142112", "142211", "241211", "221114", "413111", "241112", "134111",
+            "111242", "121142", "121241", "114212", "124112", "124211", "411212", "421112",
+            "421211", "212141", "214121", "412121", "111143", "111341", "131141", "114113",
+            "114311", "411113", "411311", "113141", "114131", "311141", "411131", "211412",
+            "211214", "211232", "2331112"
+    };
+    private static final int CODE_C = 99;
+    private static final int CODE_B = 100;
+    private static final int START_B = 104;
+    private static final int START_C = 105;
+    private static final int STOP = 106;
+    private static final int QUIET_ZONE_MODULES = 10;
+
+    private final int moduleWidth;
+    private final boolean[] modules;
+
+    Code128Element(String content, int moduleWidth) {
+        if (content.isEmpty() || moduleWidth < 1) {
+            throw new IllegalArgumentException("Invalid barcode! content=" + content + ", moduleWidth=" + moduleWidth);
+        }
+        this.moduleWidth = moduleWidth;
+        this.modules = toModules(encode(content));
+    }
+
+    @Override
+    public int getWidth(LabelRenderer renderer, int height) {
+        return (modules.length + 2 * QUIET_ZONE_MODULES) * moduleWidth;
+    }
+
+    @Override
+    public void draw(LabelRenderer renderer, Canvas canvas, int x) {
+        int moduleX = x + QUIET_ZONE_MODULES * moduleWidth;
+        for (boolean bar : modules) {
+            if (bar) {
+                canvas.fill(moduleX, moduleWidth, 0, canvas.getHeight());
+            }
+            moduleX += moduleWidth;
+        }
+    }
+
+    /**
+     * Encode content into symbol values including start, checksum and stop symbol.
+     */
+    static List<Integer> encode(String content) {
+        List<Integer> codes = new ArrayList<>();
+        int leadingDigits = digits(content, 0);
+        boolean codeSetC = leadingDigits % 2 == 0 && (leadingDigits >= 4 || leadingDigits == content.length());
+        codes.add(codeSetC ? START_C : START_B);
+
+        int i = 0;
+        while (i < content.length()) {
+            if (codeSetC) {
+                if (digits(content, i) >= 2) {
+                    codes.add(Integer.parseInt(content.substring(i, i + 2)));
+                    i += 2;
+                } else {
+                    codes.add(CODE_B);
+                    codeSetC = false;
+                }
+                continue;
+            }
+
+            int digits = digits(content, i);
+            if (digits % 2 == 0 && (digits >= 6 || digits >= 4 && i + digits == content.length())) {
+                codes.add(CODE_C);
+                codeSetC = true;
+                continue;
+            }
+            char character = content.charAt(i);
+            if (character < ' ' || character > '~') {
+                throw new IllegalArgumentException("Only printable ASCII characters are supported! content="
+                        + content);
+            }
+            codes.add(character - ' ');
+            i++;
+        }
+
+        int checksum = codes.get(0);
+        for (int position = 1; position < codes.size(); position++) {
+            checksum += codes.get(position) * position;
+        }
+        codes.add(checksum % 103);
+        codes.add(STOP);
+        return codes;
+    }
+
+    private static boolean[] toModules(List<Integer> codes) {
+        StringBuilder widths = new StringBuilder();
+        codes.forEach(code -> widths.append(PATTERNS[code]));
+
+        int length = 0;
+        for (int i = 0; i < widths.length(); i++) {
+            length += widths.charAt(i) - '0';
+        }
+        boolean[] modules = new boolean[length];
+        int module = 0;
+        for (int i = 0; i < widths.length(); i++) {
+            int width = widths.charAt(i) - '0';
+            // elements alternate between bar and space, starting with a bar
+            if (i % 2 == 0) {
+                for (int j = 0; j < width; j++) {
+                    modules[module + j] = true;
+                }
+            }
+            module += width;
+        }
+        return modules;
+    }
+
+    private static int digits(String content, int from) {
+        int i = from;
+        while (i < content.length() && content.charAt(i) >= '0' && content.charAt(i) <= '9') {
+            i++;
+        }
+        return i - from;
+    }
+}
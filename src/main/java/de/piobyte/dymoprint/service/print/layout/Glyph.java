@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print.layout;
+
+import lombok.Value;
+
+/**
+ * Rasterized glyph in tape orientation (see {@link Canvas}).
+ */
+@Value
+class Glyph {
+    /**
+     * Offset of the first column from the pen position.
+     */
+    int left;
+    /**
+     * Offset of the top row from the baseline, negative above the baseline.
+     */
+    int top;
+    /**
+     * Horizontal advance of the pen.
+     */
+    float advance;
+    /**
+     * Pixels per column.
+     */
+    long[] columns;
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print.layout;
+
+import de.piobyte.dymoprint.service.print.LabelConverter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+/**
+ * Image, vertically centered. The image is converted once when the element is created.
+ */
+class ImageElement implements LayoutElement {
+
+    private final int height;
+    private final long[] columns;
+
+    ImageElement(BufferedImage image) {
+        if (image.getHeight() > Canvas.MAX_HEIGHT) {
+            throw new IllegalArgumentException("Image is too high! height=" + image.getHeight());
+        }
+        Raster raster = new LabelConverter().toBinaryImage(image).getRaster();
+        this.height = image.getHeight();
+        this.columns = new long[image.getWidth()];
+        for (int x = 0; x < columns.length; x++) {
+            for (int y = 0; y < height; y++) {
+                // palette index 0 is black
+                if (raster.getSample(x, y, 0) == 0) {
+                    columns[x] |= Long.MIN_VALUE >>> y;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getWidth(LabelRenderer renderer, int height) {
+        return columns.length;
+    }
+
+    @Override
+    public void draw(LabelRenderer renderer, Canvas canvas, int x) {
+        canvas.draw(x, (canvas.getHeight() - height) / 2, columns);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print.layout;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+
+import lombok.NonNull;
+
+import java.awt.Font;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Composition of text, barcodes and images placed from left to right on a label. Layouts are immutable and are
+ * rendered by a {@link LabelRenderer}.
+ * <pre>
+ * LabelLayout layout = LabelLayout.builder(configuration, Tape.D1_12_MM)
+ *         .code128("p004711")
+ *         .text("Apple iPhone X Pro", font)
+ *         .build();
+ * </pre>
+ */
+public final class LabelLayout {
+
+    private static final String QR_CODE_ENCODER = "com.google.zxing.qrcode.encoder.Encoder";
+    private static final int DEFAULT_GAP = 8;
+    private static final int DEFAULT_MODULE_WIDTH = 2;
+
+    private final int height;
+    private final int gap;
+    private final List<LayoutElement> elements;
+
+    private LabelLayout(Builder builder) {
+        this.height = builder.height;
+        this.gap = builder.gap;
+        this.elements = Collections.unmodifiableList(new ArrayList<>(builder.elements));
+    }
+
+    /**
+     * Create builder of a layout for the tape of a printer.
+     *
+     * @param configuration printer configuration
+     * @param tape tape
+     * @return builder
+     */
+    public static Builder builder(@NonNull PrinterConfiguration configuration, @NonNull Tape tape) {
+        Integer bytesPerLine = configuration.getSupportedTapes().get(tape);
+        if (bytesPerLine == null) {
+            throw new IllegalArgumentException("Tape is not supported by printer! tape=" + tape);
+        }
+        return builder(bytesPerLine * Byte.SIZE);
+    }
+
+    /**
+     * Create builder of a layout.
+     *
+     * @param height label height in pixel, a multiple of 8 up to 64
+     * @return builder
+     */
+    public static Builder builder(int height) {
+        if (height <= 0 || height > Canvas.MAX_HEIGHT || height % Byte.SIZE != 0) {
+            throw new IllegalArgumentException("Unsupported label height! height=" + height);
+        }
+        return new Builder(height);
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    int getGap() {
+        return gap;
+    }
+
+    List<LayoutElement> getElements() {
+        return elements;
+    }
+
+    public static final class Builder {
+        private final int height;
+        private final List<LayoutElement> elements = new ArrayList<>();
+        private int gap = DEFAULT_GAP;
+
+        private Builder(int height) {
+            this.height = height;
+        }
+
+        /**
+         * Set space between elements.
+         *
+         * @param gap space in pixel
+         * @return this builder
+         */
+        public Builder gap(int gap) {
+            if (gap < 0) {
+                throw new IllegalArgumentException("Gap must not be negative! gap=" + gap);
+            }
+            this.gap = gap;
+            return this;
+        }
+
+        /**
+         * Add single line of text, vertically centered.
+         *
+         * @param text text
+         * @param font font, should fit the label height
+         * @return this builder
+         */
+        public Builder text(@NonNull String text, @NonNull Font font) {
+            elements.add(new TextElement(text, font));
+            return this;
+        }
+
+        /**
+         * Add Code 128 barcode with bars of 2 pixel per module.
+         *
+         * @param content printable ASCII characters
+         * @return this builder
+         */
+        public Builder code128(@NonNull String content) {
+            return code128(content, DEFAULT_MODULE_WIDTH);
+        }
+
+        /**
+         * Add Code 128 barcode.
+         *
+         * @param content printable ASCII characters
+         * @param moduleWidth width of the narrowest bar in pixel
+         * @return this builder
+         */
+        public Builder code128(@NonNull String content, int moduleWidth) {
+            elements.add(new Code128Element(content, moduleWidth));
+            return this;
+        }
+
+        /**
+         * Add QR code. Requires the optional dependency {@code com.google.zxing:core}.
+         *
+         * @param content content
+         * @return this builder
+         */
+        public Builder qrCode(@NonNull String content) {
+            try {
+                Class.forName(QR_CODE_ENCODER, false, LabelLayout.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("QR codes require com.google.zxing:core on the class path!", e);
+            }
+            elements.add(new QrCodeElement(content, height));
+            return this;
+        }
+
+        /**
+         * Add image, vertically centered.
+         *
+         * @param image image not higher than the label
+         * @return this builder
+         */
+        public Builder image(@NonNull BufferedImage image) {
+            if (image.getHeight() > height) {
+                throw new IllegalArgumentException("Image is higher than the label! imageHeight="
+                        + image.getHeight() + ", height=" + height);
+            }
+            elements.add(new ImageElement(image));
+            return this;
+        }
+
+        /**
+         * Add empty space in addition to the gap.
+         *
+         * @param width space in pixel
+         * @return this builder
+         */
+        public Builder space(int width) {
+            if (width < 0) {
+                throw new IllegalArgumentException("Space must not be negative! width=" + width);
+            }
+            elements.add(new SpaceElement(width));
+            return this;
+        }
+
+        public LabelLayout build() {
+            return new LabelLayout(this);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print.layout;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Renders {@link LabelLayout}s directly into tape lines. Glyphs are rasterized once per font and character and
+ * are kept for the lifetime of the renderer, so a renderer should be shared. Instances are thread-safe.
+ */
+public class LabelRenderer {
+
+    private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, false, true);
+
+    private final Map<GlyphKey, Glyph> glyphs = new ConcurrentHashMap<>();
+    private final Map<Font, LineMetrics> lineMetrics = new ConcurrentHashMap<>();
+
+    /**
+     * Render layout.
+     *
+     * @param layout layout
+     * @return rendered label
+     */
+    public RenderedLabel render(@NonNull LabelLayout layout) {
+        int height = layout.getHeight();
+        List<LayoutElement> elements = layout.getElements();
+        int[] widths = new int[elements.size()];
+        int width = 0;
+        for (int i = 0; i < elements.size(); i++) {
+            widths[i] = elements.get(i).getWidth(this, height);
+            width += widths[i] + (i > 0 ? layout.getGap() : 0);
+        }
+
+        Canvas canvas = new Canvas(width, height);
+        int x = 0;
+        for (int i = 0; i < elements.size(); i++) {
+            elements.get(i).draw(this, canvas, x);
+            x += widths[i] + layout.getGap();
+        }
+        return new RenderedLabel(canvas);
+    }
+
+    /**
+     * Get number of cached glyphs.
+     *
+     * @return number of glyphs
+     */
+    public int getGlyphCount() {
+        return glyphs.size();
+    }
+
+    Glyph getGlyph(Font font, int codePoint) {
+        return glyphs.computeIfAbsent(new GlyphKey(font, codePoint), LabelRenderer::rasterize);
+    }
+
+    int getBaseline(Font font, int height) {
+        LineMetrics metrics = lineMetrics.computeIfAbsent(font, key -> key.getLineMetrics("Xg", FONT_RENDER_CONTEXT));
+        return Math.round((height - metrics.getAscent() - metrics.getDescent()) / 2 + metrics.getAscent());
+    }
+
+    private static Glyph rasterize(GlyphKey key) {
+        GlyphVector vector = key.getFont().createGlyphVector(FONT_RENDER_CONTEXT,
+                new String(Character.toChars(key.getCodePoint())));
+        Rectangle bounds = vector.getPixelBounds(FONT_RENDER_CONTEXT, 0, 0);
+        float advance = (float) vector.getLogicalBounds().getWidth();
+        if (bounds.isEmpty()) {
+            return new Glyph(0, 0, advance, new long[0]);
+        }
+
+        BufferedImage image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+            graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, bounds.width, bounds.height);
+            graphics.setColor(Color.BLACK);
+            graphics.drawGlyphVector(vector, -bounds.x, -bounds.y);
+        } finally {
+            graphics.dispose();
+        }
+
+        Raster raster = image.getRaster();
+        long[] columns = new long[bounds.width];
+        int rows = Math.min(bounds.height, Canvas.MAX_HEIGHT);
+        for (int x = 0; x < columns.length; x++) {
+            for (int y = 0; y < rows; y++) {
+                // palette index 0 is black
+                if (raster.getSample(x, y, 0) == 0) {
+                    columns[x] |= Long.MIN_VALUE >>> y;
+                }
+            }
+        }
+        return new Glyph(bounds.x, bounds.y, advance, columns);
+    }
+
+    @Value
+    private static class GlyphKey {
+        Font font;
+        int codePoint;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print.layout;
+
+/**
+ * Part of a {@link LabelLayout}, placed right of the previous element.
+ */
+interface LayoutElement {
+
+    /**
+     * Get width of element.
+     *
+     * @param renderer renderer providing cached glyphs
+     * @param height label height in pixel
+     * @return width in pixel
+     */
+    int getWidth(LabelRenderer renderer, int height);
+
+    /**
+     * Draw element.
+     *
+     * @param renderer renderer providing cached glyphs
+     * @param canvas target
+     * @param x first column of element
+     */
+    void draw(LabelRenderer renderer, Canvas canvas, int x);
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print.layout;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+
+/**
+ * QR code with the largest module size fitting the label height and a quiet zone of 4 modules on both sides.
+ * Requires the optional dependency {@code com.google.zxing:core}.
+ */
+class QrCodeElement implements LayoutElement {
+
+    private static final int QUIET_ZONE_MODULES = 4;
+
+    private final boolean[][] matrix;
+
+    QrCodeElement(String content, int height) {
+        ByteMatrix byteMatrix;
+        try {
+            byteMatrix = Encoder.encode(content, ErrorCorrectionLevel.M).getMatrix();
+        } catch (WriterException e) {
+            throw new IllegalArgumentException("Could not encode QR code! content=" + content, e);
+        }
+        if (byteMatrix.getHeight() > height) {
+            throw new IllegalArgumentException("QR code does not fit the label! size=" + byteMatrix.getHeight()
+                    + ", height=" + height);
+        }
+        matrix = new boolean[byteMatrix.getWidth()][byteMatrix.getHeight()];
+        for (int x = 0; x < byteMatrix.getWidth(); x++) {
+            for (int y = 0; y < byteMatrix.getHeight(); y++) {
+                matrix[x][y] = byteMatrix.get(x, y) == 1;
+            }
+        }
+    }
+
+    @Override
+    public int getWidth(LabelRenderer renderer, int height) {
+        return (matrix.length + 2 * QUIET_ZONE_MODULES) * moduleSize(height);
+    }
+
+    @Override
+    public void draw(LabelRenderer renderer, Canvas canvas, int x) {
+        int moduleSize = moduleSize(canvas.getHeight());
+        int top = (canvas.getHeight() - matrix.length * moduleSize) / 2;
+        int left = x + QUIET_ZONE_MODULES * moduleSize;
+        for (int moduleX = 0; moduleX < matrix.length; moduleX++) {
+            for (int moduleY = 0; moduleY < matrix[moduleX].length; moduleY++) {
+                if (matrix[moduleX][moduleY]) {
+                    canvas.fill(left + moduleX * moduleSize, moduleSize, top + moduleY * moduleSize, moduleSize);
+                }
+            }
+        }
+    }
+
+    private int moduleSize(int height) {
+        return height / matrix.length;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print.layout;
+
+import de.piobyte.dymoprint.service.hid.LabelSource;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+
+/**
+ * Label rendered by a {@link LabelRenderer} in the bit-matrix format sent to the printer.
+ */
+public final class RenderedLabel {
+
+    private final int width;
+    private final int height;
+    private final int bytesPerLine;
+    private final byte[] data;
+
+    RenderedLabel(Canvas canvas) {
+        this.width = canvas.getWidth();
+        this.height = canvas.getHeight();
+        this.bytesPerLine = height / Byte.SIZE;
+        this.data = new byte[width * bytesPerLine];
+
+        // the first tape line is the rightmost column
+        int offset = 0;
+        for (int x = width - 1; x >= 0; x--) {
+            long column = canvas.getColumn(x);
+            for (int i = 0; i < bytesPerLine; i++) {
+                data[offset++] = (byte) (column >>> (Long.SIZE - Byte.SIZE * (i + 1)));
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Get tape lines, see {@link de.piobyte.dymoprint.service.print.LabelConverter#convert(BufferedImage)}.
+     *
+     * @return copy of bit-matrix
+     */
+    public byte[] getData() {
+        return data.clone();
+    }
+
+    /**
+     * Create source reading the tape lines, e.g. to print the label.
+     *
+     * @return new label source
+     */
+    public LabelSource toLabelSource() {
+        return new LabelSource() {
+            private int position;
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public int readLines(byte[] buffer) {
+                int length = Math.min(buffer.length / bytesPerLine * bytesPerLine, data.length - position);
+                System.arraycopy(data, position, buffer, 0, length);
+                position += length;
+                return length / bytesPerLine;
+            }
+        };
+    }
+
+    /**
+     * Create black and white image of the label, e.g. for a preview.
+     *
+     * @return image
+     */
+    public BufferedImage toImage() {
+        BufferedImage image = new BufferedImage(Math.max(width, 1), height, BufferedImage.TYPE_BYTE_BINARY);
+        WritableRaster raster = image.getRaster();
+        for (int line = 0; line < width; line++) {
+            int x = width - 1 - line;
+            for (int y = 0; y < height; y++) {
+                boolean ink = (data[line * bytesPerLine + y / Byte.SIZE] & 0x80 >>> y % Byte.SIZE) != 0;
+                raster.setSample(x, y, 0, ink ? 0 : 1);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print.layout;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Empty columns.
+ */
+@RequiredArgsConstructor
+class SpaceElement implements LayoutElement {
+
+    private final int width;
+
+    @Override
+    public int getWidth(LabelRenderer renderer, int height) {
+        return width;
+    }
+
+    @Override
+    public void draw(LabelRenderer renderer, Canvas canvas, int x) {
+    }
+}
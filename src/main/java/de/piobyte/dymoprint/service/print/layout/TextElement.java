@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print.layout;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.awt.Font;
+
+/**
+ * Single line of text, vertically centered. Glyphs are placed at their advance without kerning or ligatures.
+ */
+@RequiredArgsConstructor
+class TextElement implements LayoutElement {
+
+    @NonNull
+    private final String text;
+    @NonNull
+    private final Font font;
+
+    @Override
+    public int getWidth(LabelRenderer renderer, int height) {
+        float pen = 0;
+        int right = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            Glyph glyph = renderer.getGlyph(font, codePoint);
+            right = Math.max(right, Math.round(pen) + glyph.getLeft() + glyph.getColumns().length);
+            pen += glyph.getAdvance();
+            i += Character.charCount(codePoint);
+        }
+        return Math.max(right, (int) Math.ceil(pen));
+    }
+
+    @Override
+    public void draw(LabelRenderer renderer, Canvas canvas, int x) {
+        int baseline = renderer.getBaseline(font, canvas.getHeight());
+        float pen = x;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            Glyph glyph = renderer.getGlyph(font, codePoint);
+            canvas.draw(Math.round(pen) + glyph.getLeft(), baseline + glyph.getTop(), glyph.getColumns());
+            pen += glyph.getAdvance();
+            i += Character.charCount(codePoint);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads which dispatch print jobs.
+ * <p>
+ * Java 21 version of the multi-release JAR, see {@code src/main/java} for the Java 11 version.
+ */
+final class JobThreads {
+
+    private JobThreads() {
+    }
+
+    static boolean isVirtualAvailable() {
+        return true;
+    }
+
+    static ThreadFactory factory(String name, boolean virtual) {
+        if (virtual) {
+            return Thread.ofVirtual().name(name).factory();
+        }
+        return Thread.ofPlatform().name(name).daemon(true).factory();
+    }
+}
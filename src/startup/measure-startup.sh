@@ -0,0 +1,79 @@
+#!/usr/bin/env bash
+#
+# Copyright (C) 2021 piobyte GmbH
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+# Time to first label of the command line client: every run starts a process which reads the label, encodes the
+# print job and exits, i.e. everything up to the point where the job is ready to be sent to the printer.
+#
+#   mvn -Pappcds verify -DskipTests   # jar, target/lib and the AppCDS archive
+#   mvn -Pnative package -DskipTests  # optional, target/dymo-print (needs GraalVM)
+#   src/startup/measure-startup.sh [runs] [label]
+#
+# Compares plain JVM, JVM with the AppCDS archive and the native executable (if built). The label defaults to the
+# PBM test label, pass an image (e.g. PNG) to include the AWT conversion.
+
+set -euo pipefail
+
+cd "$(dirname "$0")/../.."
+
+RUNS=${1:-20}
+LABEL=${2:-src/test/resources/test.pbm}
+TAPE=${TAPE:-D1_12_MM}
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+JAR=$(ls target/dymo-print-*.jar | grep -v -e sources -e javadoc | head -1)
+ARCHIVE=target/dymo-print.jsa
+NATIVE=target/dymo-print
+OUTPUT=$(mktemp)
+trap 'rm -f "$OUTPUT" "$OUTPUT.reference"' EXIT
+
+if [[ ! -f "$JAR" || ! -f "$ARCHIVE" ]]; then
+    echo "Jar or AppCDS archive missing, run: mvn -Pappcds verify -DskipTests" >&2
+    exit 1
+fi
+
+# prints the wall-clock times of all runs in milliseconds, sorted
+measure() {
+    for ((i = 0; i < RUNS; i++)); do
+        local start end
+        start=$(date +%s%N)
+        "$@" encode "$TAPE" "$LABEL" "$OUTPUT"
+        end=$(date +%s%N)
+        echo $(((end - start) / 1000000))
+    done | sort -n
+}
+
+report() {
+    local name=$1
+    shift
+    "$@" encode "$TAPE" "$LABEL" "$OUTPUT"
+    if [[ -f "$OUTPUT.reference" ]]; then
+        cmp -s "$OUTPUT" "$OUTPUT.reference" || { echo "$name: encoded job differs!" >&2; exit 1; }
+    else
+        cp "$OUTPUT" "$OUTPUT.reference"
+    fi
+    measure "$@" | awk -v name="$name" '
+        { times[NR] = $1; sum += $1 }
+        END { printf "%-8s runs=%d min=%dms median=%dms mean=%.1fms max=%dms\n",
+                name, NR, times[1], times[int((NR + 1) / 2)], sum / NR, times[NR] }'
+}
+
+echo "label=$LABEL tape=$TAPE java=$("$JAVA" -version 2>&1 | head -1)"
+report jvm "$JAVA" -Xshare:auto -jar "$JAR"
+report appcds "$JAVA" -XX:SharedArchiveFile="$ARCHIVE" -jar "$JAR"
+if [[ -x "$NATIVE" ]]; then
+    report native "$NATIVE"
+else
+    echo "native   skipped, run: mvn -Pnative package -DskipTests"
+fi
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.cli;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.impl.CommandEncoder;
+import de.piobyte.dymoprint.service.print.LabelConverter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+class DymoPrintCliTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Test
+    void encodePbmLabel(@TempDir Path directory) throws Exception {
+        Path output = directory.resolve("job.bin");
+
+        int exitCode = run("encode", "D1_12_MM", resource("/test.pbm").toString(), output.toString());
+
+        assertEquals(0, exitCode, err.toString());
+        assertArrayEquals(expectedJob(false), Files.readAllBytes(output));
+    }
+
+    @Test
+    void encodeImageLabelToStdout() throws Exception {
+        int exitCode = run("encode", "--compact", "d1_12_mm", resource("/test.png").toString());
+
+        assertEquals(0, exitCode, err.toString());
+        assertArrayEquals(expectedJob(true), out.toByteArray());
+    }
+
+    @Test
+    void encodePackedLines(@TempDir Path directory) throws Exception {
+        Path label = Files.write(directory.resolve("label.bin"), convert());
+
+        int exitCode = run("encode", "D1_12_MM", label.toString());
+
+        assertEquals(0, exitCode, err.toString());
+        assertArrayEquals(expectedJob(false), out.toByteArray());
+    }
+
+    @Test
+    void rejectWrongHeight() throws Exception {
+        int exitCode = run("encode", "D1_6_MM", resource("/test.pbm").toString());
+
+        assertEquals(1, exitCode);
+        assertTrue(err.toString().contains("Wrong image height!"));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    void printUsage() {
+        assertEquals(2, run());
+        assertEquals(2, run("encode", "D1_12_MM"));
+        assertEquals(2, run("unknown"));
+        assertTrue(err.toString().startsWith("Usage:"));
+    }
+
+    @Test
+    void rejectUnknownTape() throws Exception {
+        assertEquals(1, run("encode", "D1_24_MM", resource("/test.pbm").toString()));
+        assertTrue(err.toString().contains("Unknown tape! tape=D1_24_MM"));
+    }
+
+    private int run(String... args) {
+        return DymoPrintCli.run(args, new PrintStream(out), new PrintStream(err));
+    }
+
+    private byte[] expectedJob(boolean compact) throws Exception {
+        return CommandEncoder.encode(new LabelManagerPnPConfiguration(), Tape.D1_12_MM, convert(), compact);
+    }
+
+    private byte[] convert() throws Exception {
+        return new LabelConverter().convert(ImageIO.read(getClass().getResourceAsStream("/test.png")));
+    }
+
+    private Path resource(String name) throws URISyntaxException {
+        return Path.of(getClass().getResource(name).toURI());
+    }
+}
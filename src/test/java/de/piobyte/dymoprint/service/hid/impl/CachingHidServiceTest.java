@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.HidDevice;
+import de.piobyte.dymoprint.service.hid.HidService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+class CachingHidServiceTest {
+
+    private final List<HidDevice> attachedDevices = new CopyOnWriteArrayList<>();
+    private final AtomicInteger scans = new AtomicInteger();
+    private final HidService scanner = () -> {
+        scans.incrementAndGet();
+        return List.copyOf(attachedDevices);
+    };
+    private final CachingHidService service = new CachingHidService(scanner, Duration.ofHours(1));
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void lookupsAreAnsweredFromRegistry() {
+        TestDevice device = new TestDevice("ABC");
+        attachedDevices.add(device);
+
+        for (int i = 0; i < 10; i++) {
+            assertSame(device, service.findPrinterDevice("abc").orElseThrow());
+        }
+
+        assertEquals(1, scans.get());
+        RegistryStatistics statistics = service.getStatistics();
+        assertEquals(10, statistics.getHits());
+        assertEquals(0, statistics.getMisses());
+        assertEquals(1, statistics.getRefreshes());
+    }
+
+    @Test
+    void unknownSerialNumberTriggersScan() {
+        try (CachingHidService service = new CachingHidService(scanner, Duration.ofHours(1), Duration.ZERO)) {
+            assertTrue(service.findPrinterDevice("ABC").isEmpty());
+
+            TestDevice device = new TestDevice("ABC");
+            attachedDevices.add(device);
+
+            assertSame(device, service.findPrinterDevice("ABC").orElseThrow());
+            assertEquals(2, service.getStatistics().getMisses());
+            assertEquals(3, scans.get());
+        }
+    }
+
+    @Test
+    void scansOfUnknownSerialNumbersAreRateLimited() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(service.findPrinterDevice("UNKNOWN").isEmpty());
+        }
+
+        assertEquals(10, service.getStatistics().getMisses());
+        assertEquals(1, scans.get());
+    }
+
+    @Test
+    void removedDeviceIsInvalidated() {
+        TestDevice device = new TestDevice("ABC");
+        attachedDevices.add(device);
+        assertSame(device, service.findPrinterDevice("ABC").orElseThrow());
+
+        attachedDevices.clear();
+        device.removalListener.accept(device);
+
+        assertTrue(service.findPrinterDevice("ABC").isEmpty());
+        assertTrue(service.listPrinterDevices().isEmpty());
+    }
+
+    @Test
+    void refreshKeepsKnownDevices() {
+        TestDevice device = new TestDevice("ABC");
+        attachedDevices.add(device);
+        service.listPrinterDevices();
+
+        attachedDevices.set(0, new TestDevice("ABC"));
+        service.refresh();
+
+        assertSame(device, service.findPrinterDevice("ABC").orElseThrow());
+    }
+
+    @Test
+    void registryIsNotLockedDuringScan() throws Exception {
+        CountDownLatch scanStarted = new CountDownLatch(1);
+        CountDownLatch scanReleased = new CountDownLatch(1);
+        HidService blockingScanner = () -> {
+            if (scans.incrementAndGet() > 1) {
+                scanStarted.countDown();
+                try {
+                    scanReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return List.copyOf(attachedDevices);
+        };
+        TestDevice device = new TestDevice("ABC");
+        attachedDevices.add(device);
+        try (CachingHidService service = new CachingHidService(blockingScanner, Duration.ofHours(1))) {
+            assertSame(device, service.findPrinterDevice("ABC").orElseThrow());
+
+            CompletableFuture<Void> refresh = CompletableFuture.runAsync(service::refresh);
+            scanStarted.await();
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> device.removalListener.accept(device));
+            assertTrue(service.listPrinterDevices().isEmpty());
+
+            scanReleased.countDown();
+            refresh.get();
+            assertEquals(2, service.getStatistics().getRefreshes());
+        }
+    }
+
+    private static class TestDevice implements HidDevice {
+        private final String serialNumber;
+        private final PrinterConfiguration configuration = new LabelManagerPnPConfiguration();
+        private Consumer<HidDevice> removalListener;
+
+        TestDevice(String serialNumber) {
+            this.serialNumber = serialNumber;
+        }
+
+        @Override
+        public String getSerialNumber() {
+            return serialNumber;
+        }
+
+        @Override
+        public PrinterConfiguration getPrinterConfiguration() {
+            return configuration;
+        }
+
+        @Override
+        public String getPath() {
+            return "/dev/" + serialNumber;
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void write(Tape tape, byte[] bytes) {
+        }
+
+        @Override
+        public void setRemovalListener(Consumer<HidDevice> listener) {
+            removalListener = listener;
+        }
+    }
+}
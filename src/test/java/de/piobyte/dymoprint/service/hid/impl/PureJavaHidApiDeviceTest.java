@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.EncodedLabel;
+import de.piobyte.dymoprint.service.hid.LabelSource;
+import de.piobyte.dymoprint.service.hid.PrinterStatus;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+class PureJavaHidApiDeviceTest {
+
+    // status bits assumed by PrinterStatus
+    private static final int BUSY_BIT = 0x01;
+    private static final int TAPE_OUT_BIT = 0x02;
+
+    private final PrinterConfiguration configuration = new LabelManagerPnPConfiguration();
+
+    @Test
+    void reportsMatchReferenceEncoding() throws Exception {
+        for (Tape tape : Tape.values()) {
+            int bytesPerLine = configuration.getSupportedTapes().get(tape);
+            for (int lines : new int[]{0, 1, 7, 8, 9, 42, 100, 1000}) {
+                byte[] label = randomLabel(lines, bytesPerLine);
+                RecordingHidDevice hidDevice = new RecordingHidDevice(true);
+
+                createDevice(hidDevice).write(tape, label);
+
+                List<byte[]> expected = referenceReports(tape, label);
+                assertEquals(expected.size(), hidDevice.getReports().size(), "tape=" + tape + ", lines=" + lines);
+                for (int i = 0; i < expected.size(); i++) {
+                    assertArrayEquals(expected.get(i), hidDevice.getReports().get(i),
+                            "tape=" + tape + ", lines=" + lines + ", report=" + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void labelSourceMatchesLabelData() throws Exception {
+        byte[] label = randomLabel(777, 4);
+        RecordingHidDevice expected = new RecordingHidDevice(true);
+        RecordingHidDevice actual = new RecordingHidDevice(true);
+
+        createDevice(expected).write(Tape.D1_6_MM, label);
+        createDevice(actual).write(Tape.D1_6_MM, new LabelSource() {
+            private int position;
+
+            @Override
+            public int getHeight() {
+                return 32;
+            }
+
+            @Override
+            public int readLines(byte[] buffer) {
+                int length = Math.min(buffer.length, label.length - position);
+                System.arraycopy(label, position, buffer, 0, length);
+                position += length;
+                return length / 4;
+            }
+        });
+
+        assertArrayEquals(concat(expected.getReports()), concat(actual.getReports()));
+        assertEquals(expected.getReports().size(), actual.getReports().size());
+    }
+
+    @Test
+    void batchSendsTapeSettingsOnce() throws Exception {
+        RecordingHidDevice hidDevice = new RecordingHidDevice(true);
+        PureJavaHidApiDevice device = createDevice(hidDevice);
+        byte[] first = randomLabel(100, 8);
+        byte[] second = randomLabel(50, 8);
+
+        device.write(Tape.D1_12_MM, List.of(first, second).iterator());
+
+        byte[] stream = concat(hidDevice.getReports());
+        assertEquals(1, count(stream, new byte[]{0x1B, 0x43}));
+        assertEquals(1, count(stream, new byte[]{0x1B, 0x42}));
+        assertEquals(2, count(stream, new byte[]{0x1B, 0x44, 8}));
+    }
+
+    @Test
+    void batchWithOneLabelMatchesSingleWrite() throws Exception {
+        byte[] label = randomLabel(300, 6);
+        RecordingHidDevice single = new RecordingHidDevice(true);
+        RecordingHidDevice batch = new RecordingHidDevice(true);
+
+        createDevice(single).write(Tape.D1_9_MM, label);
+        createDevice(batch).write(Tape.D1_9_MM, List.of(label).iterator());
+
+        assertEquals(single.getReports().size(), batch.getReports().size());
+        for (int i = 0; i < single.getReports().size(); i++) {
+            assertArrayEquals(single.getReports().get(i), batch.getReports().get(i));
+        }
+    }
+
+    @Test
+    void encodedLabelMatchesSingleWrite() throws Exception {
+        byte[] label = randomLabel(500, 8);
+        RecordingHidDevice single = new RecordingHidDevice(true);
+        RecordingHidDevice encoded = new RecordingHidDevice(true);
+
+        createDevice(single).write(Tape.D1_12_MM, label);
+        PureJavaHidApiDevice device = createDevice(encoded);
+        EncodedLabel encodedLabel = device.encode(Tape.D1_12_MM, label);
+        device.write(encodedLabel);
+
+        assertEquals(single.getReports().size(), encoded.getReports().size());
+        for (int i = 0; i < single.getReports().size(); i++) {
+            assertArrayEquals(single.getReports().get(i), encoded.getReports().get(i));
+        }
+    }
+
+    @Test
+    void flowControlRequestsStatusBetweenLines() throws Exception {
+        byte[] label = randomLabel(1000, 8);
+        RecordingHidDevice plain = new RecordingHidDevice(true);
+        RecordingHidDevice controlled = new RecordingHidDevice(true);
+        controlled.replyToStatusRequests(configuration, () -> 0);
+
+        createDevice(plain).write(Tape.D1_12_MM, label);
+        createDevice(controlled, flowControl(4)).write(Tape.D1_12_MM, label);
+
+        // removing the status requests restores the plain command stream
+        long requests = controlled.getStatusRequests();
+        assertTrue(requests >= plain.getReports().size() / 5, "requests=" + requests);
+        byte[] stream = concat(controlled.getReports());
+        assertEquals(requests, count(stream, new byte[]{0x1B, 0x41}));
+        assertArrayEquals(concat(plain.getReports()), removeStatusRequests(stream));
+    }
+
+    @Test
+    void flowControlWaitsForBusyPrinter() throws Exception {
+        int[] replies = {BUSY_BIT, BUSY_BIT, BUSY_BIT};
+        int[] replyCount = {0};
+        RecordingHidDevice hidDevice = new RecordingHidDevice(false);
+        hidDevice.replyToStatusRequests(configuration, () -> replyCount[0] < replies.length
+                ? replies[replyCount[0]++]
+                : 0);
+
+        createDevice(hidDevice, flowControl(100)).write(Tape.D1_12_MM, randomLabel(1000, 8));
+
+        // the first request is repeated while the printer is busy
+        assertEquals(3, replyCount[0]);
+        assertTrue(hidDevice.getStatusRequests() > 3);
+    }
+
+    @Test
+    void flowControlStopsWhenTapeIsOut() {
+        RecordingHidDevice hidDevice = new RecordingHidDevice(false);
+        hidDevice.replyToStatusRequests(configuration, () -> TAPE_OUT_BIT);
+        PureJavaHidApiDevice device = createDevice(hidDevice, flowControl(4));
+
+        IOException exception = assertThrows(IOException.class,
+                () -> device.write(Tape.D1_12_MM, randomLabel(1000, 8)));
+        assertEquals("Tape out!", exception.getMessage());
+        assertEquals(1, hidDevice.getStatusRequests());
+    }
+
+    @Test
+    void statusIsReadFromInputReport() throws Exception {
+        RecordingHidDevice hidDevice = new RecordingHidDevice(false);
+        PureJavaHidApiDevice device = createDevice(hidDevice, DeviceOptions.builder()
+                .statusTimeout(Duration.ofMillis(50))
+                .build());
+
+        assertThrows(IOException.class, device::getStatus);
+
+        hidDevice.replyToStatusRequests(configuration, () -> BUSY_BIT);
+        assertEquals(PrinterStatus.BUSY, device.getStatus());
+        assertEquals(PrinterStatus.BUSY, device.getLastStatus());
+    }
+
+    /**
+     * Encoding as implemented by the first releases of {@link PureJavaHidApiDevice}.
+     */
+    private List<byte[]> referenceReports(Tape tape, byte[] labelData) {
+        byte bytesPerLine = configuration.getSupportedTapes().get(tape).byteValue();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.writeBytes(new byte[]{0x1B, 0x43, (byte) configuration.getColor()});
+        stream.writeBytes(new byte[]{0x1B, 0x42, (byte) (tape == Tape.D1_6_MM ? 2 : tape == Tape.D1_9_MM ? 1 : 0)});
+        stream.writeBytes(new byte[]{0x1B, 0x44, 0, 0x16, 0x16});
+        stream.writeBytes(new byte[]{0x1B, 0x44, bytesPerLine});
+        for (int i = 0; i < labelData.length; i++) {
+            if (i % bytesPerLine == 0) {
+                stream.write(0x16);
+            }
+            stream.write(labelData[i]);
+        }
+        stream.writeBytes(new byte[]{0x1B, 0x44, 0});
+        for (int i = 0; i < configuration.getLeftMargin(); i++) {
+            stream.write(0x16);
+        }
+
+        byte[] source = stream.toByteArray();
+        List<byte[]> reports = new ArrayList<>();
+        for (int start = 0; start < source.length; start += 64) {
+            reports.add(Arrays.copyOfRange(source, start, Math.min(source.length, start + 64)));
+        }
+        return reports;
+    }
+
+    private PureJavaHidApiDevice createDevice(RecordingHidDevice hidDevice) {
+        return new PureJavaHidApiDevice(RecordingHidDevice.deviceInfo(configuration, "TEST"), configuration,
+                hidDevice);
+    }
+
+    private PureJavaHidApiDevice createDevice(RecordingHidDevice hidDevice, DeviceOptions options) {
+        return new PureJavaHidApiDevice(RecordingHidDevice.deviceInfo(configuration, "TEST"), configuration,
+                hidDevice, options);
+    }
+
+    private static DeviceOptions flowControl(int statusInterval) {
+        return DeviceOptions.builder()
+                .flowControl(true)
+                .statusInterval(statusInterval)
+                .build();
+    }
+
+    private static byte[] removeStatusRequests(byte[] stream) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (int i = 0; i < stream.length; i++) {
+            if (stream[i] == 0x1B && i + 1 < stream.length && stream[i + 1] == 0x41) {
+                i++;
+            } else {
+                result.write(stream[i]);
+            }
+        }
+        return result.toByteArray();
+    }
+
+    private static byte[] randomLabel(int lines, int bytesPerLine) {
+        byte[] label = new byte[lines * bytesPerLine];
+        new Random(lines).nextBytes(label);
+        for (int i = 0; i < label.length; i++) {
+            // keep ESC out of the label data, so commands can be counted
+            if (label[i] == 0x1B) {
+                label[i] = 0;
+            }
+        }
+        return label;
+    }
+
+    private static byte[] concat(List<byte[]> reports) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        reports.forEach(stream::writeBytes);
+        return stream.toByteArray();
+    }
+
+    private static int count(byte[] stream, byte[] command) {
+        int count = 0;
+        for (int i = 0; i + command.length <= stream.length; i++) {
+            boolean match = true;
+            for (int j = 0; j < command.length && match; j++) {
+                match = stream[i + j] == command[j];
+            }
+            if (match) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
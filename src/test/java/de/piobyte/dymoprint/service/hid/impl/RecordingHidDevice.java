@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.impl;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.service.hid.sim.CommandDecoder;
+
+import io.github.jna4usb.purejavahidapi.HidDevice;
+import io.github.jna4usb.purejavahidapi.HidDeviceInfo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * In-memory HID device which records the output reports instead of sending them to a printer. It can answer
+ * status requests with input reports like a printer.
+ */
+class RecordingHidDevice extends HidDevice {
+
+    private final boolean recording;
+    private final List<byte[]> reports = new ArrayList<>();
+    private int reportCount;
+    private CommandDecoder decoder;
+    private IntSupplier statusReplies;
+
+    RecordingHidDevice(boolean recording) {
+        this.recording = recording;
+        this.m_Open = true;
+    }
+
+    static HidDeviceInfo deviceInfo(PrinterConfiguration configuration, String serialNumber) {
+        return new HidDeviceInfo() {
+            {
+                m_VendorId = configuration.getVendorId();
+                m_ProductId = configuration.getProductId();
+                m_SerialNumberString = serialNumber;
+                m_Path = "/dev/hidraw-" + serialNumber;
+            }
+        };
+    }
+
+    /**
+     * Answer every status request with an input report.
+     *
+     * @param configuration printer configuration
+     * @param statusReplies supplier of the status byte of the next reply
+     */
+    void replyToStatusRequests(PrinterConfiguration configuration, IntSupplier statusReplies) {
+        this.decoder = new CommandDecoder(configuration, label -> {
+        });
+        this.statusReplies = statusReplies;
+    }
+
+    long getStatusRequests() {
+        return decoder == null ? 0 : decoder.getStatusRequests();
+    }
+
+    List<byte[]> getReports() {
+        return reports;
+    }
+
+    int getReportCount() {
+        return reportCount;
+    }
+
+    @Override
+    public int setOutputReport(byte reportID, byte[] data, int length) {
+        reportCount++;
+        if (recording) {
+            reports.add(Arrays.copyOf(data, length));
+        }
+        if (decoder != null) {
+            long requests = decoder.getStatusRequests();
+            try {
+                decoder.accept(data, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            for (; requests < decoder.getStatusRequests(); requests++) {
+                byte[] reply = {(byte) statusReplies.getAsInt(), 0, 0, 0, 0, 0, 0, 0};
+                m_InputReportListener.onInputReport(this, (byte) 0, reply, reply.length);
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public int setFeatureReport(byte reportId, byte[] data, int length) {
+        return length;
+    }
+
+    @Override
+    public int setFeatureReport(byte[] data, int length) {
+        return length;
+    }
+
+    @Override
+    public int getFeatureReport(byte[] data, int length) {
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        m_Open = false;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.hid.sim;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.PrinterStatus;
+import de.piobyte.dymoprint.service.print.ImageLabelSource;
+import de.piobyte.dymoprint.service.print.LabelConverter;
+import de.piobyte.dymoprint.service.print.PrintService;
+import de.piobyte.dymoprint.service.print.PrintServiceOptions;
+import de.piobyte.dymoprint.service.print.PrinterNotFoundException;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+class SimulatedHidServiceTest {
+
+    private final PrinterConfiguration configuration = new LabelManagerPnPConfiguration();
+    private final LabelConverter converter = new LabelConverter();
+    private long elapsedMillis;
+
+    @Test
+    void receivedLabelsMatchPrintedImages() throws Exception {
+        SimulatedHidService hidService = SimulatedHidService.create(1, configuration, SimulationSettings.instant());
+        SimulatedHidDevice device = hidService.getDevices().get(0);
+        PrintService service = new PrintService(hidService, PrintServiceOptions.builder()
+                .labelCacheSize(1024 * 1024)
+                .build());
+        BufferedImage image = ImageIO.read(getClass().getResourceAsStream("/test.png"));
+        BufferedImage longImage = ImageIO.read(getClass().getResourceAsStream("/test-long.png"));
+
+        service.printLabel("SIM-0001", Tape.D1_12_MM, image);
+        service.printLabel("SIM-0001", Tape.D1_12_MM, image);
+        service.printLabel("SIM-0001", Tape.D1_12_MM, new ImageLabelSource(longImage));
+        service.printLabels("SIM-0001", Tape.D1_12_MM, List.of(image, longImage));
+
+        List<SimulatedLabel> labels = device.getLabels();
+        assertEquals(5, labels.size());
+        for (int i : new int[]{0, 1, 3}) {
+            assertEquals(Tape.D1_12_MM, labels.get(i).getTape());
+            assertArrayEquals(converter.convert(image), labels.get(i).getData());
+        }
+        assertArrayEquals(converter.convert(longImage), labels.get(2).getData());
+        assertArrayEquals(converter.convert(longImage), labels.get(4).getData());
+        assertArrayEquals(converter.convert(image), converter.convert(labels.get(0).toImage()));
+    }
+
+    @Test
+    void reportLatencyLimitsTransfer() throws Exception {
+        SimulatedHidDevice device = print(SimulationSettings.builder()
+                .reportLatency(Duration.ofMillis(2))
+                .printSpeed(Map.of(Tape.D1_12_MM, 1_000_000))
+                .build(), 200);
+
+        long minimumMillis = device.getReportCount() * 2;
+        assertTrue(elapsedMillis >= minimumMillis * 0.9, "elapsed=" + elapsedMillis + ", min=" + minimumMillis);
+    }
+
+    @Test
+    void printSpeedLimitsTransferOnceBufferIsFull() throws Exception {
+        SimulatedHidDevice device = print(SimulationSettings.builder()
+                .reportLatency(Duration.ZERO)
+                .printSpeed(Map.of(Tape.D1_12_MM, 1000))
+                .bufferLines(0)
+                .build(), 300);
+
+        // label lines, leading empty lines and margin
+        long minimumMillis = 300 + 2 + configuration.getLeftMargin();
+        assertEquals(1, device.getLabelCount());
+        assertTrue(elapsedMillis >= minimumMillis * 0.9, "elapsed=" + elapsedMillis + ", min=" + minimumMillis);
+    }
+
+    @Test
+    void compactEncodingPrintsSameLabelWithFewerReports() throws Exception {
+        BufferedImage image = new BufferedImage(400, 64, BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 400, 64);
+        graphics.setColor(Color.BLACK);
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 24));
+        graphics.drawString("Shelf 12 - Box 7", 10, 30);
+        graphics.dispose();
+        SimulatedHidDevice device = new SimulatedHidDevice("SIM", configuration, SimulationSettings.instant());
+        SimulatedHidDevice compactDevice = new SimulatedHidDevice("COMPACT", configuration,
+                SimulationSettings.builder().timeScale(0).compactEncoding(true).build());
+        PrintService service = new PrintService(new SimulatedHidService(List.of(device, compactDevice)));
+
+        service.printLabel("SIM", Tape.D1_12_MM, image);
+        service.printLabel("COMPACT", Tape.D1_12_MM, image);
+
+        // blank lines at the edges are fed as tape, but are not part of the decoded label
+        byte[] labelData = converter.convert(image);
+        assertArrayEquals(labelData, device.getLabels().get(0).getData());
+        assertArrayEquals(LabelConverter.trim(labelData, 8), compactDevice.getLabels().get(0).getData());
+        assertTrue(compactDevice.getReportCount() < device.getReportCount(),
+                "compact=" + compactDevice.getReportCount() + ", reports=" + device.getReportCount());
+    }
+
+    @Test
+    void trimWhitespaceRemovesBlankEdges() throws Exception {
+        SimulatedHidService hidService = SimulatedHidService.create(1, configuration, SimulationSettings.instant());
+        PrintService service = new PrintService(hidService, PrintServiceOptions.builder()
+                .trimWhitespace(true)
+                .build());
+        BufferedImage image = new BufferedImage(100, 64, BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 100, 64);
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(30, 10, 20, 20);
+        graphics.dispose();
+
+        service.printLabel("SIM-0001", Tape.D1_12_MM, image);
+
+        SimulatedLabel label = hidService.getDevices().get(0).getLabels().get(0);
+        assertEquals(20, label.getWidth());
+        assertArrayEquals(converter.convert(image.getSubimage(30, 0, 20, 64)), label.getData());
+    }
+
+    @Test
+    void flowControlWaitsForPrintHead() throws Exception {
+        SimulatedHidDevice device = print(SimulationSettings.builder()
+                .reportLatency(Duration.ofMillis(1))
+                .printSpeed(Map.of(Tape.D1_12_MM, 1000))
+                .bufferLines(50)
+                .flowControl(true)
+                .build(), 300);
+
+        // label lines beyond the buffer are waited for by polling the status every 16 reports (about 112 lines)
+        long minimumMillis = 300 - 50 - 112;
+        assertEquals(1, device.getLabelCount());
+        assertEquals(300, device.getLabels().get(0).getWidth());
+        assertTrue(device.getStatusRequests() > 1, "statusRequests=" + device.getStatusRequests());
+        assertTrue(elapsedMillis >= minimumMillis * 0.9, "elapsed=" + elapsedMillis + ", min=" + minimumMillis);
+    }
+
+    @Test
+    void tapeOutStopsPrinting() throws Exception {
+        SimulatedHidService hidService = SimulatedHidService.create(1, configuration, SimulationSettings.builder()
+                .timeScale(0)
+                .flowControl(true)
+                .build());
+        SimulatedHidDevice device = hidService.getDevices().get(0);
+        PrintService service = new PrintService(hidService);
+        BufferedImage image = new BufferedImage(500, 64, BufferedImage.TYPE_BYTE_BINARY);
+
+        device.setTapeOut(true);
+        assertEquals(PrinterStatus.TAPE_OUT, service.getPrinterStatus("SIM-0001"));
+        assertThrows(IOException.class, () -> service.printLabel("SIM-0001", Tape.D1_12_MM, image));
+        assertEquals(0, device.getLabelCount());
+
+        device.setTapeOut(false);
+        assertEquals(PrinterStatus.READY, service.getPrinterStatus("SIM-0001"));
+        service.printLabel("SIM-0001", Tape.D1_12_MM, image);
+        assertEquals(1, device.getLabelCount());
+    }
+
+    @Test
+    void detachedPrinterIsRemoved() throws Exception {
+        SimulatedHidService hidService = SimulatedHidService.create(2, configuration, SimulationSettings.instant());
+        PrintService service = new PrintService(hidService);
+        hidService.getDevices().get(0).detach();
+
+        assertEquals(1, service.listAvailablePrinters().size());
+        assertThrows(PrinterNotFoundException.class, () -> service.printLabel("SIM-0001", Tape.D1_12_MM,
+                new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY)));
+    }
+
+    @Test
+    void invalidCommandFails() {
+        CommandDecoder decoder = new CommandDecoder(configuration, label -> {
+        });
+
+        assertThrows(IOException.class, () -> decoder.accept(new byte[]{0x1B, 0x5A}, 2));
+    }
+
+    private SimulatedHidDevice print(SimulationSettings settings, int width) throws Exception {
+        SimulatedHidDevice device = new SimulatedHidDevice("SIM", configuration, settings);
+        PrintService service = new PrintService(new SimulatedHidService(List.of(device)));
+        BufferedImage image = new BufferedImage(width, 64, BufferedImage.TYPE_BYTE_BINARY);
+
+        long start = System.nanoTime();
+        service.printLabel("SIM", Tape.D1_12_MM, image);
+        elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return device;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+class BinarizationTest {
+
+    @ParameterizedTest
+    @EnumSource(Binarization.class)
+    void blackAndWhitePixelsAreKept(Binarization binarization) {
+        for (int imageType : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+                BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_3BYTE_BGR}) {
+            BufferedImage image = new BufferedImage(101, 16, imageType);
+            Graphics2D graphics = image.createGraphics();
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, 101, 16);
+            graphics.setColor(Color.BLACK);
+            graphics.drawString("Label 42", 2, 14);
+            graphics.fillRect(80, 3, 15, 9);
+            graphics.dispose();
+
+            assertArrayEquals(new LabelConverter().convert(image), new LabelConverter(binarization).convert(image),
+                    "imageType=" + imageType);
+        }
+    }
+
+    @Test
+    void thresholdSplitsAtHalfGray() {
+        BufferedImage image = gradient(256);
+
+        byte[] labelData = new LabelConverter(Binarization.THRESHOLD).convert(image);
+
+        // last line is the leftmost column, gray value 0
+        for (int x = 0; x < 256; x++) {
+            int line = 255 - x;
+            assertEquals(x < 128 ? (byte) 0xFF : 0, labelData[line], "x=" + x);
+        }
+    }
+
+    @Test
+    void transparentPixelsAreWhite() {
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0x00000000);
+        image.setRGB(1, 0, 0xFF000000);
+        image.setRGB(2, 0, 0x40000000);
+        image.setRGB(3, 0, 0xC0000000);
+
+        byte[] labelData = new LabelConverter(Binarization.THRESHOLD).convert(image);
+
+        assertEquals(0, labelData[7]);
+        assertEquals((byte) 0x80, labelData[6]);
+        assertEquals(0, labelData[5]);
+        assertEquals((byte) 0x80, labelData[4]);
+    }
+
+    @Test
+    void otsuSeparatesLowContrastText() {
+        BufferedImage image = new BufferedImage(64, 8, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(230, 230, 230));
+        graphics.fillRect(0, 0, 64, 8);
+        graphics.setColor(new Color(170, 170, 170));
+        graphics.fillRect(10, 2, 20, 4);
+        graphics.dispose();
+
+        assertEquals(0, inkCount(new LabelConverter(Binarization.THRESHOLD).convert(image)));
+        assertEquals(80, inkCount(new LabelConverter(Binarization.OTSU).convert(image)));
+    }
+
+    @Test
+    void ditheringKeepsGrayLevel() {
+        for (int level : new int[]{64, 128, 192}) {
+            BufferedImage image = new BufferedImage(128, 32, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D graphics = image.createGraphics();
+            graphics.setColor(new Color(level, level, level));
+            graphics.fillRect(0, 0, 128, 32);
+            graphics.dispose();
+            double expected = (255 - level) / 255.0;
+
+            for (Binarization binarization : new Binarization[]{Binarization.BAYER,
+                    Binarization.FLOYD_STEINBERG}) {
+                double ink = inkCount(new LabelConverter(binarization).convert(image)) / (128.0 * 32);
+                assertEquals(expected, ink, 0.03, "level=" + level + ", binarization=" + binarization);
+            }
+        }
+    }
+
+    @Test
+    void parallelBayerMatchesSequential() {
+        BufferedImage image = gradient(3001);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            byte[] expected = new LabelConverter(Binarization.BAYER).convert(image);
+
+            assertArrayEquals(expected, new LabelConverter(Binarization.BAYER, pool, 0).convert(image));
+            assertTrue(inkCount(expected) > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static BufferedImage gradient(int width) {
+        BufferedImage image = new BufferedImage(width, 8, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            int gray = x % 256;
+            for (int y = 0; y < 8; y++) {
+                image.setRGB(x, y, new Color(gray, gray, gray).getRGB());
+            }
+        }
+        return image;
+    }
+
+    private static int inkCount(byte[] labelData) {
+        int count = 0;
+        for (byte value : labelData) {
+            count += Integer.bitCount(value & 0xFF);
+        }
+        return count;
+    }
+}
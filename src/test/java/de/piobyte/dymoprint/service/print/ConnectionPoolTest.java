@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.time.Duration;
+
+class ConnectionPoolTest {
+
+    private static final ConnectionPool.DeviceOperation NO_OPERATION = device -> {
+    };
+
+    private final FakeHidDevice device = new FakeHidDevice("FIRST", 0);
+    private final BufferedImage label = new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY);
+    private PrintService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    @Test
+    void connectionIsReusedAcrossJobs() throws Exception {
+        service = createService(Duration.ofMinutes(1));
+
+        for (int i = 0; i < 5; i++) {
+            service.printLabel("FIRST", Tape.D1_12_MM, label);
+        }
+
+        assertEquals(5, device.getLabels().size());
+        assertEquals(1, device.getOpenCount());
+        assertTrue(device.isOpen());
+    }
+
+    @Test
+    void detachedConnectionIsReopened() throws Exception {
+        service = createService(Duration.ofMinutes(1));
+        service.printLabel("FIRST", Tape.D1_12_MM, label);
+
+        device.detach();
+        service.printLabel("FIRST", Tape.D1_12_MM, label);
+
+        assertEquals(2, device.getLabels().size());
+        assertEquals(2, device.getOpenCount());
+    }
+
+    @Test
+    void failedWriteOnReusedConnectionIsRetried() throws Exception {
+        service = createService(Duration.ofMinutes(1));
+        service.printLabel("FIRST", Tape.D1_12_MM, label);
+
+        device.failNextWrite();
+        service.printLabel("FIRST", Tape.D1_12_MM, label);
+
+        assertEquals(2, device.getLabels().size());
+        assertEquals(2, device.getOpenCount());
+    }
+
+    @Test
+    void writeFailedAfterSentReportsIsNotRetried() throws Exception {
+        service = createService(Duration.ofMinutes(1));
+        service.printLabel("FIRST", Tape.D1_12_MM, label);
+
+        device.failNextWriteAfterReport();
+        assertThrows(IOException.class, () -> service.printLabel("FIRST", Tape.D1_12_MM, label));
+
+        assertEquals(1, device.getLabels().size());
+        assertEquals(1, device.getOpenCount());
+    }
+
+    @Test
+    void idleConnectionIsClosed() throws Exception {
+        service = createService(Duration.ofMillis(50));
+        service.printLabel("FIRST", Tape.D1_12_MM, label);
+
+        Thread.sleep(500);
+
+        assertFalse(device.isOpen());
+    }
+
+    @Test
+    void closedServiceClosesConnections() throws Exception {
+        service = createService(Duration.ofMinutes(1));
+        service.printLabel("FIRST", Tape.D1_12_MM, label);
+
+        service.close();
+
+        assertFalse(device.isOpen());
+    }
+
+    @Test
+    void closedIdleConnectionIsRemoved() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(Duration.ofMillis(50))) {
+            pool.execute(device, NO_OPERATION, true);
+            assertEquals(1, pool.getConnectionCount());
+
+            Thread.sleep(500);
+
+            assertEquals(0, pool.getConnectionCount());
+        }
+    }
+
+    @Test
+    void reattachedDeviceReplacesConnection() throws Exception {
+        FakeHidDevice reattachedDevice = new FakeHidDevice("first", 0);
+        try (ConnectionPool pool = new ConnectionPool(Duration.ofMinutes(1))) {
+            pool.execute(device, NO_OPERATION, true);
+            pool.execute(reattachedDevice, NO_OPERATION, true);
+
+            assertFalse(device.isOpen());
+            assertTrue(reattachedDevice.isOpen());
+            assertEquals(1, pool.getConnectionCount());
+        }
+    }
+
+    @Test
+    void failedConnectionIsRemoved() {
+        try (ConnectionPool pool = new ConnectionPool(Duration.ofMinutes(1))) {
+            assertThrows(IOException.class, () -> pool.execute(device, d -> {
+                throw new IOException("Failed!");
+            }, false));
+
+            assertFalse(device.isOpen());
+            assertEquals(0, pool.getConnectionCount());
+        }
+    }
+
+    private PrintService createService(Duration idleTimeout) {
+        return new PrintService(new FakeHidService(device), PrintServiceOptions.builder()
+                .keepConnectionOpen(true)
+                .connectionIdleTimeout(idleTimeout)
+                .build());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.EncodedLabel;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import javax.imageio.ImageIO;
+
+class EncodedLabelCacheTest {
+
+    private final PrinterConfiguration configuration = new LabelManagerPnPConfiguration();
+
+    @Test
+    void evictsLeastRecentlyUsedLabelsBySize() {
+        EncodedLabelCache cache = new EncodedLabelCache(250);
+        LabelCacheKey first = key(1);
+        LabelCacheKey second = key(2);
+        LabelCacheKey third = key(3);
+
+        cache.put(first, label(100));
+        cache.put(second, label(100));
+        assertNotNull(cache.get(first));
+        cache.put(third, label(100));
+
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+
+        LabelCacheStatistics statistics = cache.getStatistics();
+        assertEquals(3, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(1, statistics.getEvictions());
+        assertEquals(2, statistics.getLabels());
+        assertEquals(200, statistics.getBytes());
+    }
+
+    @Test
+    void doesNotStoreLabelsLargerThanCache() {
+        EncodedLabelCache cache = new EncodedLabelCache(50);
+
+        cache.put(key(1), label(100));
+
+        assertNull(cache.get(key(1)));
+        assertEquals(0, cache.getStatistics().getBytes());
+    }
+
+    @Test
+    void keyDependsOnPixelsTapeAndConfiguration() {
+        BufferedImage image = image(0);
+
+        assertEquals(key(image, Tape.D1_12_MM), key(image(0), Tape.D1_12_MM));
+        assertNotEquals(key(image, Tape.D1_12_MM), key(image(1), Tape.D1_12_MM));
+        assertNotEquals(key(image, Tape.D1_12_MM), key(image, Tape.D1_9_MM));
+        assertNotEquals(key(image, Tape.D1_12_MM),
+                LabelCacheKey.of(image, Tape.D1_12_MM, new LabelManagerPnPConfiguration(), FakeHidDevice.class));
+    }
+
+    @Test
+    void keyOfSubimageCoversOnlyItsRegion() {
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR,
+                BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_BINARY}) {
+            BufferedImage parent = new BufferedImage(200, 64, type);
+            Graphics2D graphics = parent.createGraphics();
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, 200, 64);
+            graphics.setColor(Color.BLACK);
+            graphics.fillRect(50, 10, 20, 20);
+            graphics.dispose();
+            BufferedImage subimage = parent.getSubimage(40, 0, 96, 64);
+            BufferedImage copy = new BufferedImage(96, 64, type);
+            Graphics2D copyGraphics = copy.createGraphics();
+            copyGraphics.drawImage(subimage, 0, 0, null);
+            copyGraphics.dispose();
+
+            LabelCacheKey key = key(subimage, Tape.D1_12_MM);
+            assertEquals(key(copy, Tape.D1_12_MM), key, "type=" + type);
+
+            parent.setRGB(0, 0, Color.BLACK.getRGB());
+            parent.setRGB(150, 63, Color.BLACK.getRGB());
+            assertEquals(key, key(subimage, Tape.D1_12_MM), "type=" + type);
+
+            parent.setRGB(41, 0, Color.BLACK.getRGB());
+            assertNotEquals(key, key(subimage, Tape.D1_12_MM), "type=" + type);
+        }
+    }
+
+    @Test
+    void printServiceSendsCachedLabel() throws Exception {
+        FakeHidDevice device = new FakeHidDevice("FIRST", 0);
+        PrintService service = new PrintService(new FakeHidService(device), PrintServiceOptions.builder()
+                .labelCacheSize(1024 * 1024)
+                .build());
+        BufferedImage image = ImageIO.read(getClass().getResourceAsStream("/test.png"));
+
+        service.printLabel("FIRST", Tape.D1_12_MM, image);
+        service.printLabel("FIRST", Tape.D1_12_MM, image);
+        image.setRGB(0, 0, ~image.getRGB(0, 0));
+        service.printLabel("FIRST", Tape.D1_12_MM, image);
+
+        assertEquals(3, device.getLabels().size());
+        assertSame(device.getLabels().get(0), device.getLabels().get(1));
+        assertArrayEquals(new LabelConverter().convert(image), device.getLabels().get(2));
+        LabelCacheStatistics statistics = service.getLabelCacheStatistics().orElseThrow();
+        assertEquals(1, statistics.getHits());
+        assertEquals(2, statistics.getMisses());
+    }
+
+    private LabelCacheKey key(int seed) {
+        return key(image(seed), Tape.D1_12_MM);
+    }
+
+    private LabelCacheKey key(BufferedImage image, Tape tape) {
+        return LabelCacheKey.of(image, tape, configuration, FakeHidDevice.class);
+    }
+
+    private static EncodedLabel label(int size) {
+        return new EncodedLabel(Tape.D1_12_MM, new byte[size]);
+    }
+
+    private static BufferedImage image(int seed) {
+        BufferedImage image = new BufferedImage(100, 64, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 100, 64);
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(seed, 10, 20, 20);
+        graphics.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.HidDevice;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory printer which remembers the written labels and simulates the transfer time.
+ */
+class FakeHidDevice implements HidDevice {
+
+    private final String serialNumber;
+    private final PrinterConfiguration configuration = new LabelManagerPnPConfiguration();
+    private final long writeMillis;
+    private final List<byte[]> labels = new CopyOnWriteArrayList<>();
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final AtomicInteger activeWrites = new AtomicInteger();
+    private final AtomicInteger maxActiveWrites = new AtomicInteger();
+    private volatile boolean open;
+    private final AtomicLong reportCount = new AtomicLong();
+    private volatile boolean failNextWrite;
+    private volatile boolean failNextWriteAfterReport;
+
+    FakeHidDevice(String serialNumber, long writeMillis) {
+        this.serialNumber = serialNumber;
+        this.writeMillis = writeMillis;
+    }
+
+    List<byte[]> getLabels() {
+        return labels;
+    }
+
+    int getOpenCount() {
+        return openCount.get();
+    }
+
+    int getMaxActiveWrites() {
+        return maxActiveWrites.get();
+    }
+
+    void detach() {
+        open = false;
+    }
+
+    void failNextWrite() {
+        failNextWrite = true;
+    }
+
+    /**
+     * Fail the next write after a report reached the device, like a transfer interrupted in the middle of a label.
+     */
+    void failNextWriteAfterReport() {
+        failNextWriteAfterReport = true;
+    }
+
+    @Override
+    public long getReportCount() {
+        return reportCount.get();
+    }
+
+    @Override
+    public String getSerialNumber() {
+        return serialNumber;
+    }
+
+    @Override
+    public PrinterConfiguration getPrinterConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public String getPath() {
+        return "/dev/fake-" + serialNumber;
+    }
+
+    @Override
+    public void open() {
+        openCount.incrementAndGet();
+        open = true;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void write(Tape tape, byte[] bytes) throws IOException {
+        if (!open) {
+            throw new IOException("Connection is not open!");
+        }
+        if (failNextWrite) {
+            failNextWrite = false;
+            throw new IOException("Broken pipe");
+        }
+        reportCount.incrementAndGet();
+        if (failNextWriteAfterReport) {
+            failNextWriteAfterReport = false;
+            throw new IOException("Broken pipe");
+        }
+        maxActiveWrites.accumulateAndGet(activeWrites.incrementAndGet(), Math::max);
+        try {
+            if (writeMillis > 0) {
+                Thread.sleep(writeMillis);
+            }
+            labels.add(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted!", e);
+        } finally {
+            activeWrites.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import de.piobyte.dymoprint.service.hid.HidDevice;
+import de.piobyte.dymoprint.service.hid.HidService;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+class FakeHidService implements HidService {
+
+    private final List<HidDevice> devices = new CopyOnWriteArrayList<>();
+
+    FakeHidService(HidDevice... devices) {
+        this.devices.addAll(List.of(devices));
+    }
+
+    void remove(HidDevice device) {
+        devices.remove(device);
+    }
+
+    @Override
+    public List<HidDevice> listPrinterDevices() {
+        return List.copyOf(devices);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.imageio.ImageIO;
+
+class LabelConverterTest {
+
+    private final LabelConverter converter = new LabelConverter();
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/test.png", "/test-long.png", "/test-9mm.png", "/test-6mm.png", "/logo-height-32.png"})
+    void convertMatchesReferenceForResources(String resourcePath) throws IOException {
+        BufferedImage image = ImageIO.read(getClass().getResourceAsStream(resourcePath));
+
+        assertArrayEquals(referenceConvert(image), converter.convert(image));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_BYTE_GRAY,
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_BINARY})
+    void convertMatchesReferenceForRandomImages(int imageType) {
+        Random random = new Random(imageType);
+        for (int width : new int[]{1, 7, 8, 9, 63, 64, 65, 333}) {
+            for (int height : new int[]{8, 32, 48, 64}) {
+                BufferedImage image = randomImage(random, width, height, imageType);
+
+                assertArrayEquals(referenceConvert(image), converter.convert(image),
+                        "width=" + width + ", height=" + height);
+            }
+        }
+    }
+
+    @Test
+    void convertMatchesReferenceForSubImage() {
+        BufferedImage image = randomImage(new Random(42), 200, 80, BufferedImage.TYPE_BYTE_BINARY);
+        BufferedImage subImage = image.getSubimage(13, 5, 150, 64);
+
+        assertArrayEquals(referenceConvert(subImage), converter.convert(subImage));
+    }
+
+    @Test
+    void packColumnRangesMatchesFullConversion() {
+        BufferedImage image = converter.toBinaryImage(randomImage(new Random(7), 101, 64, BufferedImage.TYPE_INT_RGB));
+        byte[] expected = converter.convert(image);
+        int bytesPerLine = LabelConverter.bytesPerLine(image.getHeight());
+
+        byte[] actual = new byte[expected.length];
+        int[] stripes = {0, 3, 8, 40, 41, 99, 101};
+        for (int i = stripes.length - 1; i > 0; i--) {
+            int offset = (image.getWidth() - stripes[i]) * bytesPerLine;
+            converter.pack(image, stripes[i - 1], stripes[i], actual, offset);
+        }
+
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    void toBinaryImageKeepsPackableImage() {
+        BufferedImage image = new BufferedImage(16, 8, BufferedImage.TYPE_BYTE_BINARY);
+
+        assertSame(image, converter.toBinaryImage(image));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_BINARY})
+    void parallelConversionMatchesSequential(int imageType) {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            LabelConverter parallelConverter = new LabelConverter(pool, 0);
+            Random random = new Random(imageType);
+            for (int width : new int[]{1, 255, 256, 257, 1000, 2051, 5000}) {
+                BufferedImage image = randomImage(random, width, 64, imageType);
+
+                assertArrayEquals(converter.convert(image), parallelConverter.convert(image), "width=" + width);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void trimRemovesBlankLinesAtEdges() {
+        byte[] label = {0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 2, 0, 0, 0, 0, 0};
+
+        assertArrayEquals(new byte[]{0, 1, 0, 0, 0, 0, 2, 0}, LabelConverter.trim(label, 2));
+        assertArrayEquals(new byte[]{0, 1, 0, 0, 0, 0, 2, 0}, LabelConverter.trim(label, 4));
+        assertEquals(0, LabelConverter.trim(new byte[8], 4).length);
+        byte[] filled = {1, 0, 0, 1};
+        assertSame(filled, LabelConverter.trim(filled, 2));
+    }
+
+    private BufferedImage randomImage(Random random, int width, int height, int imageType) {
+        BufferedImage image = new BufferedImage(width, height, imageType);
+        Graphics2D graphic = image.createGraphics();
+        graphic.setColor(Color.WHITE);
+        graphic.fillRect(0, 0, width, height);
+        graphic.dispose();
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int value = random.nextInt(4);
+                if (value == 0) {
+                    image.setRGB(x, y, 0xFF000000 | random.nextInt(0x1000000));
+                } else if (value == 1 && image.getColorModel().hasAlpha()) {
+                    image.setRGB(x, y, random.nextInt());
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Conversion as implemented by the first releases of {@link PrintService}.
+     */
+    private byte[] referenceConvert(BufferedImage originalLabel) {
+        BufferedImage label = new BufferedImage(originalLabel.getWidth(), originalLabel.getHeight(),
+                BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D graphic = label.createGraphics();
+        graphic.drawImage(originalLabel, 0, 0, Color.WHITE, null);
+        graphic.dispose();
+
+        var targetByteCount = (label.getHeight() * label.getWidth()) / 8;
+        byte[] labelData = new byte[targetByteCount];
+
+        int bytePosition = 0;
+        BitSet bitSet = new BitSet(8);
+        for (int x = label.getWidth() - 1; x >= 0; x--) {
+            for (int y = 0; y < label.getHeight(); y++) {
+                int bitPosition = 7 - (y % 8);
+                bitSet.set(bitPosition, label.getRGB(x, y) != Color.WHITE.getRGB());
+
+                if (bitPosition == 0) {
+                    byte[] byteArray = bitSet.toByteArray();
+                    labelData[bytePosition++] = byteArray.length == 0 ? 0 : byteArray[0];
+                    bitSet.clear();
+                }
+            }
+        }
+        return labelData;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.service.hid.LabelSource;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+class LabelSourceTest {
+
+    private final LabelConverter converter = new LabelConverter();
+
+    @Test
+    void imageLabelSourceMatchesConversion() throws IOException {
+        BufferedImage image = ImageIO.read(getClass().getResourceAsStream("/test-long.png"));
+
+        for (int bufferLines : new int[]{1, 3, 64, 1000}) {
+            byte[] lines = readAll(new ImageLabelSource(image), bufferLines);
+
+            assertArrayEquals(converter.convert(image), lines, "bufferLines=" + bufferLines);
+        }
+    }
+
+    @Test
+    void imageLabelSourceUsesBinarization() throws IOException {
+        BufferedImage image = ImageIO.read(getClass().getResourceAsStream("/test-long.png"));
+
+        for (Binarization binarization : new Binarization[]{Binarization.THRESHOLD, Binarization.BAYER}) {
+            byte[] lines = readAll(new ImageLabelSource(image, binarization), 3);
+
+            assertArrayEquals(new LabelConverter(binarization).convert(image), lines, binarization.name());
+        }
+    }
+
+    @Test
+    void imageLabelSourceMatchesConversionOfBinaryImage() throws IOException {
+        BufferedImage image = converter.toBinaryImage(ImageIO.read(getClass().getResourceAsStream("/test.png")));
+
+        assertArrayEquals(converter.convert(image), readAll(new ImageLabelSource(image), 7));
+    }
+
+    @Test
+    void tiledLabelSourceMatchesConversion() throws IOException {
+        int width = 1000;
+        int height = 64;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.BLACK);
+        draw(graphics);
+        graphics.dispose();
+
+        TiledLabelSource labelSource = new TiledLabelSource(width, height, 100, (tileGraphics, x, tileWidth) ->
+                draw(tileGraphics));
+
+        assertArrayEquals(converter.convert(image), readAll(labelSource, 64));
+    }
+
+    @Test
+    void printLabelSource() throws Exception {
+        FakeHidDevice device = new FakeHidDevice("FIRST", 0);
+        PrintService service = new PrintService(new FakeHidService(device));
+        BufferedImage image = ImageIO.read(getClass().getResourceAsStream("/test.png"));
+
+        service.printLabel("FIRST", Tape.D1_12_MM, new ImageLabelSource(image));
+
+        assertEquals(1, device.getLabels().size());
+        assertArrayEquals(converter.convert(image), device.getLabels().get(0));
+    }
+
+    private static void draw(Graphics2D graphics) {
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 30));
+        for (int x = 0; x < 1000; x += 90) {
+            graphics.drawString("Label " + x, x, 45);
+            graphics.fillRect(x + 3, 50, 40, 5);
+        }
+    }
+
+    private static byte[] readAll(LabelSource labelSource, int bufferLines) throws IOException {
+        int bytesPerLine = labelSource.getHeight() / 8;
+        byte[] buffer = new byte[bufferLines * bytesPerLine];
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        int lineCount;
+        while ((lineCount = labelSource.readLines(buffer)) > 0) {
+            lines.write(buffer, 0, lineCount * bytesPerLine);
+        }
+        return lines.toByteArray();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.service.hid.LabelSource;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class LabelTemplateTest {
+
+    private static final Rectangle SERIAL = new Rectangle(150, 13, 190, 38);
+    private static final Rectangle CODE = new Rectangle(20, 0, 60, 64);
+    private static final Font FONT = new Font(Font.SANS_SERIF, Font.BOLD, 24);
+
+    private final LabelConverter converter = new LabelConverter();
+    private final LabelTemplate template = LabelTemplate.builder(background())
+            .field("serial", SERIAL)
+            .field("code", CODE)
+            .build();
+
+    @Test
+    void filledTemplateMatchesRenderedImage() throws Exception {
+        for (int bufferLines : new int[]{1, 7, 64, 1000}) {
+            LabelSource labelSource = template.fill(Map.of("serial", serialRenderer("SN-4711"), "code",
+                    (graphics, width, height) -> graphics.fillRect(5, 5, width - 10, height - 10)));
+
+            BufferedImage expected = background();
+            Graphics2D graphics = expected.createGraphics();
+            fill(graphics, SERIAL, serialRenderer("SN-4711"));
+            fill(graphics, CODE, (fieldGraphics, width, height) -> fieldGraphics.fillRect(5, 5, width - 10,
+                    height - 10));
+            graphics.dispose();
+
+            assertArrayEquals(converter.convert(expected), readAll(labelSource, bufferLines),
+                    "bufferLines=" + bufferLines);
+        }
+    }
+
+    @Test
+    void unfilledFieldsShowBackground() throws Exception {
+        assertArrayEquals(converter.convert(background()), readAll(template.fill(Map.of()), 100));
+    }
+
+    @Test
+    void templateCanBeFilledConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String serial = "SN-" + i;
+                results.add(executor.submit(() -> readAll(template.fill("serial", serialRenderer(serial)), 50)));
+            }
+            for (int i = 0; i < 100; i++) {
+                assertArrayEquals(readAll(template.fill("serial", serialRenderer("SN-" + i)), 1000),
+                        results.get(i).get(), "i=" + i);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void printFilledTemplate() throws Exception {
+        FakeHidDevice device = new FakeHidDevice("FIRST", 0);
+        PrintService service = new PrintService(new FakeHidService(device));
+
+        service.printLabel("FIRST", Tape.D1_12_MM, template.fill("serial", serialRenderer("SN-1")));
+
+        assertEquals(1, device.getLabels().size());
+        assertEquals(template.getWidth() * 8, device.getLabels().get(0).length);
+    }
+
+    @Test
+    void invalidFieldsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> template.fill("unknown", (graphics, width, height) -> {
+        }));
+        assertThrows(IllegalArgumentException.class, () -> LabelTemplate.builder(background())
+                .field("outside", new Rectangle(390, 0, 20, 64)));
+        assertThrows(IllegalArgumentException.class, () -> LabelTemplate.builder(background())
+                .field("serial", SERIAL)
+                .field("serial", CODE));
+    }
+
+    private static LabelTemplate.FieldRenderer serialRenderer(String serial) {
+        return (graphics, width, height) -> {
+            graphics.setFont(FONT);
+            graphics.drawString(serial, 2, 28);
+        };
+    }
+
+    private static void fill(Graphics2D graphics, Rectangle bounds, LabelTemplate.FieldRenderer renderer) {
+        Graphics2D fieldGraphics = (Graphics2D) graphics.create(bounds.x, bounds.y, bounds.width, bounds.height);
+        fieldGraphics.setColor(Color.WHITE);
+        fieldGraphics.fillRect(0, 0, bounds.width, bounds.height);
+        fieldGraphics.setColor(Color.BLACK);
+        renderer.render(fieldGraphics, bounds.width, bounds.height);
+        fieldGraphics.dispose();
+    }
+
+    private static BufferedImage background() {
+        BufferedImage image = new BufferedImage(400, 64, BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 400, 64);
+        graphics.setColor(Color.BLACK);
+        graphics.drawRect(0, 0, 399, 63);
+        graphics.fillRect(100, 5, 40, 54);
+        graphics.setFont(FONT);
+        graphics.drawString("ACME", 340, 40);
+        graphics.drawString("____________", 150, 30);
+        graphics.dispose();
+        return image;
+    }
+
+    private static byte[] readAll(LabelSource labelSource, int bufferLines) throws IOException {
+        int bytesPerLine = labelSource.getHeight() / 8;
+        byte[] buffer = new byte[bufferLines * bytesPerLine];
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        int lineCount;
+        while ((lineCount = labelSource.readLines(buffer)) > 0) {
+            lines.write(buffer, 0, lineCount * bytesPerLine);
+        }
+        return lines.toByteArray();
+    }
+}
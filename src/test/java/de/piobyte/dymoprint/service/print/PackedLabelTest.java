@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+class PackedLabelTest {
+
+    private final LabelConverter converter = new LabelConverter();
+    private final FakeHidDevice device = new FakeHidDevice("FIRST", 0);
+    private final PrintService service = new PrintService(new FakeHidService(device));
+
+    @Test
+    void printByteArrayWithoutCopy() throws Exception {
+        byte[] labelData = converter.convert(ImageIO.read(getClass().getResourceAsStream("/test.png")));
+
+        service.printLabel("FIRST", Tape.D1_12_MM, PackedLabel.of(labelData, 64));
+
+        assertSame(labelData, device.getLabels().get(0));
+    }
+
+    @Test
+    void printDirectBuffer() throws Exception {
+        byte[] labelData = converter.convert(ImageIO.read(getClass().getResourceAsStream("/test.png")));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(labelData.length + 3);
+        buffer.put(new byte[]{1, 2, 3}).put(labelData).flip().position(3);
+
+        PackedLabel label = PackedLabel.of(buffer, 64);
+        service.printLabel("FIRST", Tape.D1_12_MM, label);
+        service.printLabel("FIRST", Tape.D1_12_MM, label);
+
+        assertEquals(labelData.length / 8, label.getLines());
+        assertArrayEquals(labelData, device.getLabels().get(0));
+        assertArrayEquals(labelData, device.getLabels().get(1));
+    }
+
+    @Test
+    void printMappedRawFile(@TempDir Path directory) throws Exception {
+        byte[] labelData = converter.convert(ImageIO.read(getClass().getResourceAsStream("/test.png")));
+        Path file = Files.write(directory.resolve("label.raw"), labelData);
+
+        service.printLabel("FIRST", Tape.D1_12_MM, PackedLabel.map(file, 64));
+
+        assertArrayEquals(labelData, device.getLabels().get(0));
+    }
+
+    @Test
+    void printMappedPbmInTapeLineOrder(@TempDir Path directory) throws Exception {
+        byte[] labelData = converter.convert(ImageIO.read(getClass().getResourceAsStream("/test.png")));
+        ByteArrayOutputStream pbm = new ByteArrayOutputStream();
+        pbm.write(("P4\n# tape lines\n64 " + labelData.length / 8 + "\n").getBytes(StandardCharsets.US_ASCII));
+        pbm.write(labelData);
+        Path file = Files.write(directory.resolve("label.pbm"), pbm.toByteArray());
+
+        PackedLabel label = PackedLabel.mapPbm(file);
+        service.printLabel("FIRST", Tape.D1_12_MM, label);
+
+        assertEquals(64, label.getHeight());
+        assertArrayEquals(labelData, device.getLabels().get(0));
+    }
+
+    @Test
+    void rejectLabelNotMatchingTape() {
+        PackedLabel label = PackedLabel.of(new byte[6 * 10], 48);
+
+        assertThrows(InvalidParameterException.class, () -> service.printLabel("FIRST", Tape.D1_12_MM, label));
+        assertEquals(0, device.getLabels().size());
+    }
+
+    @Test
+    void rejectInvalidData(@TempDir Path directory) throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> PackedLabel.of(new byte[10], 64));
+        assertThrows(IllegalArgumentException.class, () -> PackedLabel.of(new byte[8], 60));
+        Path png = directory.resolve("label.png");
+        ImageIO.write(new BufferedImage(8, 64, BufferedImage.TYPE_BYTE_BINARY), "png", png.toFile());
+        assertThrows(IllegalArgumentException.class, () -> PackedLabel.mapPbm(png));
+        Path shortPbm = Files.write(directory.resolve("short.pbm"),
+                "P4 64 10\n12345678".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IllegalArgumentException.class, () -> PackedLabel.mapPbm(shortPbm));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.sim.SimulatedHidDevice;
+import de.piobyte.dymoprint.service.hid.sim.SimulatedHidService;
+import de.piobyte.dymoprint.service.hid.sim.SimulationSettings;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+class PrintMetricsTest {
+
+    private final SimulatedHidService hidService = SimulatedHidService.create(1, new LabelManagerPnPConfiguration(),
+            SimulationSettings.instant());
+    private final SimulatedHidDevice device = hidService.getDevices().get(0);
+    private final BufferedImage label = new BufferedImage(100, 64, BufferedImage.TYPE_BYTE_BINARY);
+
+    @Test
+    void recordsStagesOfPrintLabel() throws Exception {
+        RecordingMetrics metrics = new RecordingMetrics();
+        PrintService service = new PrintService(hidService, PrintServiceOptions.builder().metrics(metrics).build());
+
+        service.printLabel("SIM-0001", Tape.D1_12_MM, label);
+
+        assertEquals(List.of(PrintMetrics.Stage.LOOKUP, PrintMetrics.Stage.CONVERSION, PrintMetrics.Stage.OPEN,
+                PrintMetrics.Stage.TRANSFER, PrintMetrics.Stage.CLOSE), metrics.stages());
+        assertEquals(List.of(800), metrics.labelBytes);
+        assertEquals(List.of(device.getReportCount()), metrics.reports);
+    }
+
+    @Test
+    void recordsEncodingAndQueueWait() throws Exception {
+        RecordingMetrics metrics = new RecordingMetrics();
+        PrintService service = new PrintService(hidService, PrintServiceOptions.builder()
+                .metrics(metrics)
+                .keepConnectionOpen(true)
+                .labelCacheSize(1024 * 1024)
+                .build());
+        PrintQueue queue = new PrintQueue(service);
+
+        queue.submit("SIM-0001", Tape.D1_12_MM, label).get();
+        queue.submit("SIM-0001", Tape.D1_12_MM, label).get();
+        queue.close();
+        service.close();
+
+        List<PrintMetrics.Stage> stages = metrics.stages();
+        assertEquals(1, stages.stream().filter(PrintMetrics.Stage.ENCODING::equals).count());
+        assertEquals(1, stages.stream().filter(PrintMetrics.Stage.OPEN::equals).count());
+        assertEquals(2, stages.stream().filter(PrintMetrics.Stage.TRANSFER::equals).count());
+        assertEquals(2, stages.stream().filter(PrintMetrics.Stage.QUEUE_WAIT::equals).count());
+        assertEquals(2, stages.stream().filter(PrintMetrics.Stage.JOB::equals).count());
+    }
+
+    @Test
+    void micrometerRegistryReceivesTimers() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PrintService service = new PrintService(hidService, PrintServiceOptions.builder()
+                .metrics(new MicrometerPrintMetrics(registry))
+                .build());
+
+        service.printLabel("SIM-0001", Tape.D1_12_MM, label);
+        service.printLabel("SIM-0001", Tape.D1_12_MM, label);
+
+        assertEquals(2, registry.get("dymo.print.stage")
+                .tags("stage", "transfer", "serial", "SIM-0001", "tape", "D1_12_MM")
+                .timer().count());
+        assertEquals(2, registry.get("dymo.print.stage").tags("stage", "open", "tape", "none").timer().count());
+        assertEquals(800, registry.get("dymo.print.label.bytes").summary().max());
+        assertTrue(registry.get("dymo.print.reports").summary().totalAmount() > 0);
+    }
+
+    private static class RecordingMetrics implements PrintMetrics {
+        private final List<Stage> stages = new ArrayList<>();
+        private final List<Integer> labelBytes = new ArrayList<>();
+        private final List<Long> reports = new ArrayList<>();
+
+        @Override
+        public synchronized void recordTime(Stage stage, String serialNumber, Tape tape, long nanos) {
+            assertEquals("SIM-0001", serialNumber);
+            assertTrue(nanos >= 0);
+            stages.add(stage);
+        }
+
+        @Override
+        public synchronized void recordLabelBytes(String serialNumber, Tape tape, int bytes) {
+            labelBytes.add(bytes);
+        }
+
+        @Override
+        public synchronized void recordReports(String serialNumber, Tape tape, long reports) {
+            this.reports.add(reports);
+        }
+
+        synchronized List<Stage> stages() {
+            return new ArrayList<>(stages);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class PrintQueueTest {
+
+    private final FakeHidDevice first = new FakeHidDevice("FIRST", 50);
+    private final FakeHidDevice second = new FakeHidDevice("SECOND", 50);
+    private final PrintService service = new PrintService(new FakeHidService(first, second));
+    private PrintQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        queue.close();
+    }
+
+    @Test
+    void jobsOfSamePrinterKeepOrder() throws Exception {
+        queue = new PrintQueue(service);
+        List<BufferedImage> labels = new ArrayList<>();
+        List<CompletableFuture<PrintResult>> results = new ArrayList<>();
+        for (int width = 1; width <= 5; width++) {
+            BufferedImage label = new BufferedImage(width, 64, BufferedImage.TYPE_BYTE_BINARY);
+            labels.add(label);
+            results.add(queue.submit("first", Tape.D1_12_MM, label));
+        }
+
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get();
+
+        assertEquals(labels.size(), first.getLabels().size());
+        for (int i = 0; i < labels.size(); i++) {
+            assertEquals(labels.get(i).getWidth() * 8, first.getLabels().get(i).length);
+        }
+        assertEquals("first", results.get(0).get().getSerialNumber());
+    }
+
+    @Test
+    void jobsOfDifferentPrintersRunInParallel() throws Exception {
+        queue = new PrintQueue(service);
+        BufferedImage label = new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<PrintResult>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(queue.submit("FIRST", Tape.D1_12_MM, label));
+            results.add(queue.submit("SECOND", Tape.D1_12_MM, label));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(4, first.getLabels().size());
+        assertEquals(4, second.getLabels().size());
+        assertTrue(elapsedMillis < 8 * 50, "elapsed=" + elapsedMillis);
+    }
+
+    @Test
+    void virtualThreadsPrintJobsOnAnyJavaVersion() throws Exception {
+        PrintService virtualService = new PrintService(new FakeHidService(first),
+                PrintServiceOptions.builder().virtualThreads(true).build());
+        queue = new PrintQueue(virtualService);
+        BufferedImage label = new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY);
+
+        List<CompletableFuture<PrintResult>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(queue.submit("FIRST", Tape.D1_12_MM, label));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get();
+
+        assertEquals(3, first.getLabels().size());
+        assertEquals(Runtime.version().feature() >= 21, JobThreads.isVirtualAvailable());
+        assertEquals(JobThreads.isVirtualAvailable(), virtualService.isVirtualThreads());
+        assertEquals("dymo-print-FIRST", JobThreads.factory("dymo-print-FIRST", true).newThread(() -> {
+        }).getName());
+    }
+
+    @Test
+    void fullQueueRejectsJobs() throws Exception {
+        queue = new PrintQueue(service, 2, PrintQueue.OverflowPolicy.REJECT);
+        BufferedImage label = new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY);
+
+        CompletableFuture<PrintResult> running = queue.submit("FIRST", Tape.D1_12_MM, label);
+        CompletableFuture<PrintResult> waiting = queue.submit("FIRST", Tape.D1_12_MM, label);
+        CompletableFuture<PrintResult> rejected = queue.submit("FIRST", Tape.D1_12_MM, label);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        running.get();
+        waiting.get();
+        assertEquals(0, queue.getQueueDepth("FIRST"));
+    }
+
+    @Test
+    void errorFailsJobAndReleasesCapacity() throws Exception {
+        FakeHidDevice broken = new FakeHidDevice("BROKEN", 0) {
+            @Override
+            public void write(Tape tape, byte[] bytes) {
+                throw new LinkageError("Native library missing!");
+            }
+        };
+        queue = new PrintQueue(new PrintService(new FakeHidService(broken)), 1, PrintQueue.OverflowPolicy.REJECT);
+        BufferedImage label = new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY);
+
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<PrintResult> failed = queue.submit("BROKEN", Tape.D1_12_MM, label);
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> failed.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(LinkageError.class, exception.getCause());
+        }
+        assertEquals(0, queue.getQueueDepth("BROKEN"));
+    }
+
+    @Test
+    void cancelledJobIsNotPrinted() throws Exception {
+        queue = new PrintQueue(service);
+        BufferedImage label = new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY);
+
+        CompletableFuture<PrintResult> running = queue.submit("FIRST", Tape.D1_12_MM, label);
+        CompletableFuture<PrintResult> cancelled = queue.submit("FIRST", Tape.D1_12_MM, label);
+        CompletableFuture<PrintResult> last = queue.submit("FIRST", Tape.D1_12_MM, label);
+        cancelled.cancel(false);
+
+        running.get();
+        last.get();
+        assertThrows(CancellationException.class, cancelled::get);
+        assertEquals(2, first.getLabels().size());
+    }
+
+    @Test
+    void unknownPrinterFailsJob() {
+        queue = new PrintQueue(service);
+        BufferedImage label = new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY);
+
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> queue.submit("UNKNOWN", Tape.D1_12_MM, label).get());
+        assertInstanceOf(PrinterNotFoundException.class, exception.getCause());
+    }
+}
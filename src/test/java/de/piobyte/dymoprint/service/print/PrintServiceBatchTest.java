@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.stream.IntStream;
+
+class PrintServiceBatchTest {
+
+    private final FakeHidDevice device = new FakeHidDevice("FIRST", 5);
+    private final PrintService service = new PrintService(new FakeHidService(device));
+
+    @Test
+    void printLabelsInOneSession() throws Exception {
+        BatchPrintResult result = service.printLabels("FIRST", Tape.D1_12_MM,
+                IntStream.rangeClosed(1, 10).mapToObj(width -> new BufferedImage(width, 64,
+                        BufferedImage.TYPE_BYTE_BINARY)));
+
+        assertEquals(1, device.getOpenCount());
+        assertEquals(10, device.getLabels().size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals((i + 1) * 8, device.getLabels().get(i).length);
+        }
+        assertEquals(10, result.getLabelCount());
+        assertEquals(55 * 8, result.getLabelBytes());
+        assertTrue(result.getLabelsPerSecond() > 0);
+        assertTrue(result.getLabelsPerSecond(0) > 0);
+    }
+
+    @Test
+    void emptyBatchDoesNotOpenDevice() throws Exception {
+        BatchPrintResult result = service.printLabels("FIRST", Tape.D1_12_MM, List.of());
+
+        assertEquals(0, result.getLabelCount());
+        assertEquals(0, device.getOpenCount());
+    }
+
+    @Test
+    void wrongImageHeightFailsBatch() {
+        List<BufferedImage> labels = List.of(
+                new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY),
+                new BufferedImage(10, 32, BufferedImage.TYPE_BYTE_BINARY));
+
+        assertThrows(InvalidParameterException.class, () -> service.printLabels("FIRST", Tape.D1_12_MM, labels));
+        assertEquals(1, device.getLabels().size());
+    }
+
+    @Test
+    void failedBatchReportsSentLabels() {
+        // the source is read one label ahead, so requesting the fourth label arms the failure of the third
+        BatchPrintException exception = assertThrows(BatchPrintException.class, () -> service.printLabels("FIRST",
+                Tape.D1_12_MM, IntStream.range(0, 5).mapToObj(i -> {
+                    if (i == 3) {
+                        device.failNextWriteAfterReport();
+                    }
+                    return new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY);
+                })));
+
+        assertEquals(2, device.getLabels().size());
+        assertEquals(2, exception.getResult().getLabelCount());
+        assertEquals(2 * 10 * 8, exception.getResult().getLabelBytes());
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.PrinterConfiguration;
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.HidDevice;
+import de.piobyte.dymoprint.service.hid.HidService;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class PrintServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int PRINTERS = 4;
+    private static final int LABELS_PER_THREAD = 50;
+
+    @Test
+    void concurrentJobsDoNotShareDeviceHandle() throws Exception {
+        Map<String, Handle> handles = IntStream.range(0, PRINTERS)
+                .mapToObj(i -> "PRINTER-" + i)
+                .collect(Collectors.toMap(serialNumber -> serialNumber, serialNumber -> new Handle()));
+        // like the USB backend without registry, every lookup creates a new device object
+        HidService hidService = () -> handles.keySet().stream()
+                .map(serialNumber -> (HidDevice) new HandleDevice(serialNumber, handles.get(serialNumber)))
+                .collect(Collectors.toList());
+        PrintService service = new PrintService(hidService);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int threadNumber = thread;
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < LABELS_PER_THREAD; i++) {
+                    String serialNumber = "PRINTER-" + (threadNumber + i) % PRINTERS;
+                    service.printLabel(serialNumber, Tape.D1_12_MM, label(threadNumber * LABELS_PER_THREAD + i));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int labels = 0;
+        for (Handle handle : handles.values()) {
+            assertEquals(0, handle.conflicts.get(), "conflicting access to device handle");
+            for (byte[] label : handle.labels) {
+                for (byte value : label) {
+                    assertEquals(label[0], value, "label data of several jobs mixed up");
+                }
+            }
+            labels += handle.labels.size();
+        }
+        assertEquals(THREADS * LABELS_PER_THREAD, labels);
+    }
+
+    @Test
+    void tryPrintLabelGivesUpOnBusyPrinter() throws Exception {
+        FakeHidDevice device = new FakeHidDevice("FIRST", 500);
+        PrintService service = new PrintService(new FakeHidService(device));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> slowJob = executor.submit(() -> {
+                service.printLabel("FIRST", Tape.D1_12_MM, label(1));
+                return null;
+            });
+            while (device.getOpenCount() == 0) {
+                Thread.sleep(1);
+            }
+
+            long listStart = System.nanoTime();
+            assertEquals(1, service.listAvailablePrinters().size());
+            assertTrue(System.nanoTime() - listStart < TimeUnit.MILLISECONDS.toNanos(200),
+                    "listing printers waited for print job");
+
+            assertFalse(service.tryPrintLabel("FIRST", Tape.D1_12_MM, label(2), Duration.ofMillis(10)));
+            assertTrue(service.tryPrintLabel("FIRST", Tape.D1_12_MM, label(3), Duration.ofSeconds(5)));
+            slowJob.get();
+            assertEquals(2, device.getLabels().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static BufferedImage label(int number) {
+        // uniform pattern per job, so mixed up jobs are detected
+        BufferedImage image = new BufferedImage(50 + number % 7, 64, BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(number % 2 == 0 ? Color.WHITE : Color.BLACK);
+        graphics.fillRect(0, 0, image.getWidth(), 64);
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * Underlying device handle shared by all device objects of a printer.
+     */
+    private static class Handle {
+        private final AtomicReference<HandleDevice> owner = new AtomicReference<>();
+        private final AtomicInteger conflicts = new AtomicInteger();
+        private final List<byte[]> labels = new CopyOnWriteArrayList<>();
+    }
+
+    private static class HandleDevice implements HidDevice {
+        private final String serialNumber;
+        private final Handle handle;
+        private final PrinterConfiguration configuration = new LabelManagerPnPConfiguration();
+
+        HandleDevice(String serialNumber, Handle handle) {
+            this.serialNumber = serialNumber;
+            this.handle = handle;
+        }
+
+        @Override
+        public String getSerialNumber() {
+            return serialNumber;
+        }
+
+        @Override
+        public PrinterConfiguration getPrinterConfiguration() {
+            return configuration;
+        }
+
+        @Override
+        public String getPath() {
+            return "/dev/shared-" + serialNumber;
+        }
+
+        @Override
+        public void open() {
+            if (!handle.owner.compareAndSet(null, this)) {
+                handle.conflicts.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void close() {
+            handle.owner.compareAndSet(this, null);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return handle.owner.get() == this;
+        }
+
+        @Override
+        public void write(Tape tape, byte[] bytes) throws IOException {
+            byte[] received = new byte[bytes.length];
+            for (int position = 0; position < bytes.length; position += 64) {
+                if (handle.owner.get() != this) {
+                    handle.conflicts.incrementAndGet();
+                    throw new IOException("Device handle is used by another job!");
+                }
+                System.arraycopy(bytes, position, received, position, Math.min(64, bytes.length - position));
+                Thread.yield();
+            }
+            handle.labels.add(received);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+class PrintSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    private final LabelConverter converter = new LabelConverter();
+
+    @Test
+    void printSpooledLabels() throws Exception {
+        FakeHidDevice device = new FakeHidDevice("FIRST", 0);
+        BufferedImage image = ImageIO.read(getClass().getResourceAsStream("/test.png"));
+
+        try (PrintSpool spool = new PrintSpool(new PrintService(new FakeHidService(device)),
+                directory.resolve("spool.journal"))) {
+            List<CompletableFuture<PrintResult>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(spool.submit("first", Tape.D1_12_MM, image));
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+            assertEquals(0, spool.getPendingJobCount());
+            assertEquals("first", results.get(0).get().getSerialNumber());
+        }
+        assertEquals(3, device.getLabels().size());
+        assertArrayEquals(converter.convert(image), device.getLabels().get(0));
+    }
+
+    @Test
+    void retryFailedJob() throws Exception {
+        FakeHidDevice device = new FakeHidDevice("FIRST", 0);
+        device.failNextWrite();
+
+        try (PrintSpool spool = new PrintSpool(new PrintService(new FakeHidService(device)),
+                directory.resolve("spool.journal"), Duration.ofMillis(10))) {
+            spool.submit("FIRST", Tape.D1_12_MM, label(20)).get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(1, device.getLabels().size());
+    }
+
+    @Test
+    void partiallySentJobIsNotRetried() throws Exception {
+        Path journal = directory.resolve("spool.journal");
+        FakeHidDevice device = new FakeHidDevice("FIRST", 0);
+        device.failNextWriteAfterReport();
+
+        try (PrintSpool spool = new PrintSpool(new PrintService(new FakeHidService(device)), journal,
+                Duration.ofMillis(10))) {
+            CompletableFuture<PrintResult> failed = spool.submit("FIRST", Tape.D1_12_MM, label(20));
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                    () -> failed.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(PartialPrintException.class, exception.getCause());
+
+            spool.submit("FIRST", Tape.D1_12_MM, label(30)).get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(1, device.getLabels().size());
+        assertEquals(30 * 8, device.getLabels().get(0).length);
+
+        try (PrintSpool spool = new PrintSpool(new PrintService(new FakeHidService(device)), journal)) {
+            assertEquals(0, spool.getPendingJobCount());
+        }
+    }
+
+    @Test
+    void sendJobsLeftInJournalAfterRestart() throws Exception {
+        Path journal = directory.resolve("spool.journal");
+        FakeHidDevice slowDevice = new FakeHidDevice("FIRST", 2000);
+        try (PrintSpool spool = new PrintSpool(new PrintService(new FakeHidService(slowDevice)), journal)) {
+            for (int width = 1; width <= 3; width++) {
+                spool.submit("FIRST", Tape.D1_12_MM, label(width));
+            }
+            assertEquals(3, spool.getPendingJobCount());
+        }
+        assertEquals(0, slowDevice.getLabels().size());
+
+        FakeHidDevice device = new FakeHidDevice("FIRST", 0);
+        try (PrintSpool spool = new PrintSpool(new PrintService(new FakeHidService(device)), journal)) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (spool.getPendingJobCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+        }
+        assertEquals(3, device.getLabels().size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals((i + 1) * 8, device.getLabels().get(i).length);
+        }
+
+        FakeHidDevice unusedDevice = new FakeHidDevice("FIRST", 0);
+        try (PrintSpool spool = new PrintSpool(new PrintService(new FakeHidService(unusedDevice)), journal)) {
+            assertEquals(0, spool.getPendingJobCount());
+        }
+    }
+
+    @Test
+    void closeCancelsUnsentJobs() throws Exception {
+        Path journal = directory.resolve("spool.journal");
+        FakeHidDevice slowDevice = new FakeHidDevice("FIRST", 2000);
+        PrintSpool spool = new PrintSpool(new PrintService(new FakeHidService(slowDevice)), journal);
+        List<CompletableFuture<PrintResult>> results = new ArrayList<>();
+        for (int width = 1; width <= 3; width++) {
+            results.add(spool.submit("FIRST", Tape.D1_12_MM, label(width)));
+        }
+
+        spool.close();
+
+        for (CompletableFuture<PrintResult> result : results) {
+            assertTrue(result.isDone());
+            assertThrows(CancellationException.class, result::join);
+        }
+        assertThrows(RejectedExecutionException.class, () -> spool.submit("FIRST", Tape.D1_12_MM, label(1)));
+        try (PrintSpool reopenedSpool = new PrintSpool(new PrintService(new FakeHidService()), journal)) {
+            assertEquals(3, reopenedSpool.getPendingJobCount());
+        }
+    }
+
+    private static BufferedImage label(int width) {
+        return new BufferedImage(width, 64, BufferedImage.TYPE_BYTE_BINARY);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.sim.SimulatedHidService;
+import de.piobyte.dymoprint.service.hid.sim.SimulationSettings;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+class PrintTracerTest {
+
+    private final SimulatedHidService hidService = SimulatedHidService.create(2, new LabelManagerPnPConfiguration(),
+            SimulationSettings.instant());
+    private final PrintService service = new PrintService(hidService);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tracesSampledJobsOfEnabledPrinter() throws Exception {
+        BufferedImage label = new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY);
+        service.getTracer().enable("sim-0001", 3, directory);
+
+        for (int i = 0; i < 7; i++) {
+            service.printLabel("SIM-0001", Tape.D1_12_MM, label);
+            service.printLabel("SIM-0002", Tape.D1_12_MM, label);
+        }
+        service.getTracer().disable("SIM-0001");
+        service.printLabel("SIM-0001", Tape.D1_12_MM, label);
+
+        assertEquals(3, service.getTracer().getTraceCount());
+        assertEquals(3, traceFiles().size());
+        assertTrue(traceFiles().stream().allMatch(file -> file.getFileName().toString().startsWith("SIM-0001")));
+    }
+
+    @Test
+    void traceContainsImageAndCommandStream() throws Exception {
+        BufferedImage label = ImageIO.read(getClass().getResourceAsStream("/test.png"));
+        service.getTracer().enable("SIM-0001", 1, directory);
+
+        service.printLabel("SIM-0001", Tape.D1_12_MM, label);
+
+        Path file = traceFiles().get(0);
+        List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+        assertEquals("P1", lines.get(0));
+        assertTrue(lines.contains("# tape=D1_12_MM"));
+        // tape color and height
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("# 00000000  1b 43 00 1b 42 00")), lines.get(6));
+
+        LabelConverter converter = new LabelConverter();
+        BufferedImage traced = parsePbm(lines);
+        assertArrayEquals(converter.convert(label), converter.convert(traced));
+    }
+
+    private List<Path> traceFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static BufferedImage parsePbm(List<String> lines) {
+        List<String> data = lines.stream().skip(1).filter(line -> !line.startsWith("#")).collect(Collectors.toList());
+        String[] size = data.get(0).split(" ");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+        String pixels = String.join("", data.subList(1, data.size()));
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.getRaster().setSample(x, y, 0, pixels.charAt(y * width + x) == '1' ? 0 : 1);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.Tape;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+class PrinterPoolTest {
+
+    private static final int WRITE_MILLIS = 20;
+    private static final int JOBS = 48;
+
+    @Test
+    void jobsAreSpreadAcrossPrinters() throws Exception {
+        // an even spread keeps all printers busy, measuring the speedup would depend on the load of the machine
+        for (int printers : new int[]{1, 2, 4}) {
+            printJobs(printers);
+        }
+    }
+
+    @Test
+    void removedPrinterFailsOver() throws Exception {
+        FakeHidDevice first = new FakeHidDevice("FIRST", WRITE_MILLIS);
+        FakeHidDevice second = new FakeHidDevice("SECOND", WRITE_MILLIS);
+        FakeHidService hidService = new FakeHidService(first, second);
+        PrinterPool pool = new PrinterPool(new PrintService(hidService));
+
+        List<CompletableFuture<PrintResult>> results = submit(pool, 10);
+        hidService.remove(first);
+        results.addAll(submit(pool, 10));
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get();
+        pool.close();
+
+        assertEquals(20, first.getLabels().size() + second.getLabels().size());
+        assertTrue(first.getLabels().size() < 10, "first=" + first.getLabels().size());
+    }
+
+    @Test
+    void partiallySentJobDoesNotFailOver() throws Exception {
+        FakeHidDevice first = new FakeHidDevice("FIRST", WRITE_MILLIS);
+        FakeHidDevice second = new FakeHidDevice("SECOND", WRITE_MILLIS);
+        first.failNextWriteAfterReport();
+        second.failNextWriteAfterReport();
+        PrinterPool pool = new PrinterPool(new PrintService(new FakeHidService(first, second)));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () ->
+                pool.submit(Tape.D1_12_MM, new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY)).get());
+        pool.close();
+
+        assertInstanceOf(PartialPrintException.class, exception.getCause());
+        assertEquals(1, first.getReportCount() + second.getReportCount());
+    }
+
+    @Test
+    void affinityKeepsOrderOnOnePrinter() throws Exception {
+        FakeHidDevice first = new FakeHidDevice("FIRST", WRITE_MILLIS);
+        FakeHidDevice second = new FakeHidDevice("SECOND", WRITE_MILLIS);
+        PrinterPool pool = new PrinterPool(new PrintService(new FakeHidService(first, second)));
+
+        List<CompletableFuture<PrintResult>> results = new ArrayList<>();
+        for (int width = 1; width <= 6; width++) {
+            results.add(pool.submitWithAffinity("station-1", Tape.D1_12_MM,
+                    new BufferedImage(width, 64, BufferedImage.TYPE_BYTE_BINARY)));
+            results.add(pool.submit(Tape.D1_12_MM, new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY)));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get();
+        pool.close();
+
+        String serialNumber = results.get(0).get().getSerialNumber();
+        FakeHidDevice device = serialNumber.equals("FIRST") ? first : second;
+        int width = 1;
+        for (byte[] label : device.getLabels()) {
+            if (label.length == width * 8) {
+                width++;
+            }
+        }
+        assertEquals(7, width);
+        for (int i = 0; i < results.size(); i += 2) {
+            assertEquals(serialNumber, results.get(i).get().getSerialNumber());
+        }
+    }
+
+    @Test
+    void noPrinterFailsJob() {
+        PrinterPool pool = new PrinterPool(new PrintService(new FakeHidService()));
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () ->
+                pool.submit(Tape.D1_12_MM, new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY)).get());
+        assertInstanceOf(PrinterNotFoundException.class, exception.getCause());
+        pool.close();
+    }
+
+    private static void printJobs(int printers) throws Exception {
+        List<FakeHidDevice> devices = new ArrayList<>();
+        for (int i = 0; i < printers; i++) {
+            devices.add(new FakeHidDevice("PRINTER-" + i, WRITE_MILLIS));
+        }
+        PrinterPool pool = new PrinterPool(new PrintService(new FakeHidService(devices.toArray(new FakeHidDevice[0]))));
+
+        CompletableFuture.allOf(submit(pool, JOBS).toArray(new CompletableFuture[0])).get();
+        pool.close();
+
+        for (FakeHidDevice device : devices) {
+            // jobs finishing while the others are submitted shift the balance slightly
+            assertEquals(JOBS / printers, device.getLabels().size(), 2, device.getSerialNumber());
+        }
+    }
+
+    private static List<CompletableFuture<PrintResult>> submit(PrinterPool pool, int jobs) {
+        List<CompletableFuture<PrintResult>> results = new ArrayList<>();
+        for (int i = 0; i < jobs; i++) {
+            results.add(pool.submit(Tape.D1_12_MM, new BufferedImage(10, 64, BufferedImage.TYPE_BYTE_BINARY)));
+        }
+        return results;
+    }
+}
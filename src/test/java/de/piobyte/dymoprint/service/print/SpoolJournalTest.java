@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.service.hid.EncodedLabel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class SpoolJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoverPendingJobs() throws IOException {
+        Path file = directory.resolve("spool.journal");
+        try (SpoolJournal journal = new SpoolJournal(file)) {
+            journal.append("FIRST", label(Tape.D1_12_MM, 1, 2, 3));
+            SpoolJournal.Entry done = journal.append("SECOND", label(Tape.D1_9_MM, 4));
+            journal.append("THIRD", label(Tape.D1_6_MM, 5, 6));
+            journal.complete(done);
+        }
+
+        try (SpoolJournal journal = new SpoolJournal(file)) {
+            List<SpoolJournal.Entry> pending = journal.getPendingEntries();
+
+            assertEquals(2, pending.size());
+            assertEquals(1, pending.get(0).getJobId());
+            assertEquals("FIRST", pending.get(0).getSerialNumber());
+            assertEquals(Tape.D1_12_MM, pending.get(0).getLabel().getTape());
+            assertArrayEquals(new byte[]{1, 2, 3}, pending.get(0).getLabel().getData());
+            assertEquals("THIRD", pending.get(1).getSerialNumber());
+            assertEquals(4, journal.append("FOURTH", label(Tape.D1_12_MM, 7)).getJobId());
+        }
+    }
+
+    @Test
+    void completeAfterCloseIsIgnored() throws IOException {
+        Path file = directory.resolve("spool.journal");
+        SpoolJournal journal = new SpoolJournal(file);
+        SpoolJournal.Entry entry = journal.append("FIRST", label(Tape.D1_12_MM, 1));
+        journal.close();
+
+        journal.complete(entry);
+        assertThrows(IOException.class, () -> journal.append("SECOND", label(Tape.D1_12_MM, 2)));
+
+        try (SpoolJournal reopenedJournal = new SpoolJournal(file)) {
+            assertEquals(1, reopenedJournal.getPendingEntries().size());
+        }
+    }
+
+    @Test
+    void ignoreTornRecord() throws IOException {
+        Path file = directory.resolve("spool.journal");
+        long end;
+        try (SpoolJournal journal = new SpoolJournal(file)) {
+            journal.append("FIRST", label(Tape.D1_12_MM, 1, 2, 3));
+            journal.append("SECOND", label(Tape.D1_12_MM, 4, 5, 6));
+            end = journal.size();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // last byte of the second record never reached the disk
+            channel.write(ByteBuffer.wrap(new byte[]{0}), end - 1);
+        }
+
+        try (SpoolJournal journal = new SpoolJournal(file)) {
+            assertEquals(1, journal.getPendingEntries().size());
+            journal.append("THIRD", label(Tape.D1_12_MM, 7));
+        }
+        try (SpoolJournal journal = new SpoolJournal(file)) {
+            List<SpoolJournal.Entry> pending = journal.getPendingEntries();
+            assertEquals(2, pending.size());
+            assertEquals("THIRD", pending.get(1).getSerialNumber());
+        }
+    }
+
+    @Test
+    void compactDoneJobs() throws IOException {
+        Path file = directory.resolve("spool.journal");
+        try (SpoolJournal journal = new SpoolJournal(file, 4096)) {
+            List<SpoolJournal.Entry> entries = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                entries.add(journal.append("FIRST", label(Tape.D1_12_MM, new byte[200])));
+            }
+            long sizeBefore = journal.size();
+            for (int i = 0; i < 99; i++) {
+                journal.complete(entries.get(i));
+            }
+
+            assertTrue(journal.size() < sizeBefore / 10, "size=" + journal.size());
+            journal.complete(journal.append("FIRST", label(Tape.D1_12_MM, 9)));
+        }
+        assertTrue(Files.notExists(directory.resolve("spool.journal.compact")));
+
+        try (SpoolJournal journal = new SpoolJournal(file)) {
+            List<SpoolJournal.Entry> pending = journal.getPendingEntries();
+            assertEquals(1, pending.size());
+            assertEquals(100, pending.get(0).getJobId());
+            assertEquals(102, journal.append("FIRST", label(Tape.D1_12_MM, 1)).getJobId());
+        }
+    }
+
+    @Test
+    void failedCompactionIsNotRepeated() throws IOException {
+        Path file = directory.resolve("spool.journal");
+        Path compacted = Files.createDirectory(directory.resolve("spool.journal.compact"));
+        try (SpoolJournal journal = new SpoolJournal(file, 4096)) {
+            List<SpoolJournal.Entry> entries = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                entries.add(journal.append("FIRST", label(Tape.D1_12_MM, new byte[200])));
+            }
+            for (int i = 0; i < 50; i++) {
+                journal.complete(entries.get(i));
+            }
+            // the first compaction failed and removed the blocking directory
+            assertTrue(Files.notExists(compacted));
+            long sizeAfterFailure = journal.size();
+
+            for (int i = 50; i < 99; i++) {
+                journal.complete(entries.get(i));
+            }
+            assertTrue(journal.size() > sizeAfterFailure, "size=" + journal.size());
+        }
+
+        try (SpoolJournal journal = new SpoolJournal(file, 4096)) {
+            long sizeBefore = journal.size();
+            journal.complete(journal.getPendingEntries().get(0));
+            assertTrue(journal.size() < sizeBefore / 10, "size=" + journal.size());
+        }
+    }
+
+    @Test
+    void concurrentAppendsShareSync() throws Exception {
+        Path file = directory.resolve("spool.journal");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (SpoolJournal journal = new SpoolJournal(file)) {
+            List<Future<?>> appends = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                appends.add(executor.submit(() -> {
+                    SpoolJournal.Entry entry = journal.append("FIRST", label(Tape.D1_12_MM, new byte[1000]));
+                    journal.sync(entry.getSequence());
+                    return null;
+                }));
+            }
+            for (Future<?> append : appends) {
+                append.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        try (SpoolJournal journal = new SpoolJournal(file)) {
+            assertEquals(200, journal.getPendingEntries().size());
+        }
+    }
+
+    @Test
+    void rejectForeignFile() throws IOException {
+        Path file = Files.write(directory.resolve("other"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        assertThrows(IOException.class, () -> new SpoolJournal(file));
+    }
+
+    private static EncodedLabel label(Tape tape, byte[] data) {
+        return new EncodedLabel(tape, data);
+    }
+
+    private static EncodedLabel label(Tape tape, int... values) {
+        byte[] data = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            data[i] = (byte) values[i];
+        }
+        return label(tape, data);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2021 piobyte GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.piobyte.dymoprint.service.print.layout;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.Result;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+
+import de.piobyte.dymoprint.printer.Tape;
+import de.piobyte.dymoprint.printer.impl.LabelManagerPnPConfiguration;
+import de.piobyte.dymoprint.service.hid.LabelSource;
+import de.piobyte.dymoprint.service.print.LabelConverter;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+class LabelRendererTest {
+
+    private final LabelRenderer renderer = new LabelRenderer();
+    private final Font font = new Font(Font.SANS_SERIF, Font.BOLD, 24);
+
+    @Test
+    void code128IsReadable() throws Exception {
+        for (String content : List.of("p004711", "12345678", "ABC-1234567", "7", "Label 42!")) {
+            RenderedLabel label = renderer.render(LabelLayout.builder(64).code128(content).build());
+
+            Result result = decode(label, BarcodeFormat.CODE_128);
+
+            assertEquals(content, result.getText());
+        }
+    }
+
+    @Test
+    void code128UsesCodeSetCForDigits() {
+        // start C, 12, 34, checksum, stop
+        assertEquals(List.of(105, 12, 34, (105 + 12 + 2 * 34) % 103, 106), Code128Element.encode("1234"));
+        assertThrows(IllegalArgumentException.class, () -> Code128Element.encode("tab\t"));
+    }
+
+    @Test
+    void qrCodeIsReadable() throws Exception {
+        RenderedLabel label = renderer.render(LabelLayout.builder(64).qrCode("https://piobyte.de").build());
+
+        assertEquals("https://piobyte.de", decode(label, BarcodeFormat.QR_CODE).getText());
+    }
+
+    @Test
+    void textIsCenteredAndGlyphsAreCached() {
+        LabelLayout layout = LabelLayout.builder(new LabelManagerPnPConfiguration(), Tape.D1_12_MM)
+                .text("Hello", font)
+                .build();
+
+        RenderedLabel label = renderer.render(layout);
+        int glyphs = renderer.getGlyphCount();
+        renderer.render(LabelLayout.builder(64).text("Hello Hello", font).build());
+
+        assertEquals(4, glyphs);
+        assertEquals(5, renderer.getGlyphCount());
+        BufferedImage image = label.toImage();
+        int top = 64;
+        int bottom = 0;
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                if ((image.getRGB(x, y) & 0xFFFFFF) == 0) {
+                    top = Math.min(top, y);
+                    bottom = Math.max(bottom, y);
+                }
+            }
+        }
+        assertTrue(top > 10 && bottom < 54, "top=" + top + ", bottom=" + bottom);
+        assertTrue(label.getWidth() > 40 && label.getWidth() < 100, "width=" + label.getWidth());
+    }
+
+    @Test
+    void renderedDataMatchesConvertedImage() throws IOException {
+        BufferedImage logo = ImageIO.read(getClass().getResourceAsStream("/logo-height-28.png"));
+        RenderedLabel label = renderer.render(LabelLayout.builder(32)
+                .image(logo)
+                .text("Ag", new Font(Font.SERIF, Font.ITALIC, 20))
+                .code128("42")
+                .build());
+
+        assertArrayEquals(new LabelConverter().convert(label.toImage()), label.getData());
+        assertArrayEquals(label.getData(), readAll(label.toLabelSource()));
+    }
+
+    private static Result decode(RenderedLabel label, BarcodeFormat format) throws Exception {
+        // white border around the label, like the tape around the printed area
+        BufferedImage image = new BufferedImage(label.getWidth() + 40, label.getHeight() + 40,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.drawImage(label.toImage(), 20, 20, null);
+        graphics.dispose();
+
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+        return new MultiFormatReader().decode(bitmap, Map.of(DecodeHintType.POSSIBLE_FORMATS, List.of(format),
+                DecodeHintType.PURE_BARCODE, Boolean.FALSE));
+    }
+
+    private static byte[] readAll(LabelSource labelSource) throws IOException {
+        byte[] buffer = new byte[5 * labelSource.getHeight() / 8];
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        int lineCount;
+        while ((lineCount = labelSource.readLines(buffer)) > 0) {
+            lines.write(buffer, 0, lineCount * labelSource.getHeight() / 8);
+        }
+        return lines.toByteArray();
+    }
+}